@@ -0,0 +1,22 @@
+package com.ls.spring.bench.noop;
+
+import com.ls.spring.framework.annotation.MyController;
+import com.ls.spring.framework.annotation.MyResquestMapping;
+
+// 空处理方法：没有参数、不写响应，用于测分发器本身的开销；三个路由只是经过的拦截器个数不同，见NoopInterceptors
+@MyController
+@MyResquestMapping("/noop")
+public class NoopController {
+
+    @MyResquestMapping("/i0")
+    public void i0() {
+    }
+
+    @MyResquestMapping("/i1")
+    public void i1() {
+    }
+
+    @MyResquestMapping("/i5")
+    public void i5() {
+    }
+}
@@ -0,0 +1,31 @@
+package com.ls.spring.bench.noop;
+
+import com.ls.spring.framework.annotation.MyInterceptor;
+import com.ls.spring.framework.v2.MyHandlerInterceptor;
+
+// 什么都不做的拦截器，测拦截器链本身的开销：/noop/i1经过1个，/noop/i5经过5个，/noop/i0不经过
+public final class NoopInterceptors {
+
+    private NoopInterceptors() {
+    }
+
+    @MyInterceptor(value = {"/noop/i1", "/noop/i5"}, order = 1)
+    public static class First implements MyHandlerInterceptor {
+    }
+
+    @MyInterceptor(value = "/noop/i5", order = 2)
+    public static class Second implements MyHandlerInterceptor {
+    }
+
+    @MyInterceptor(value = "/noop/i5", order = 3)
+    public static class Third implements MyHandlerInterceptor {
+    }
+
+    @MyInterceptor(value = "/noop/i5", order = 4)
+    public static class Fourth implements MyHandlerInterceptor {
+    }
+
+    @MyInterceptor(value = "/noop/i5", order = 5)
+    public static class Fifth implements MyHandlerInterceptor {
+    }
+}
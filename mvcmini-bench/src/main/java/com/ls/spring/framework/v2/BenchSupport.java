@@ -0,0 +1,94 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeMap;
+
+// 基准测试和压测共用：创建并初始化v1、v2两个版本的servlet，构造不经过网络的请求和响应
+// 放在框架的包中，直接使用包内的EmbeddedRequest、EmbeddedResponse作为轻量的请求、响应实现
+final class BenchSupport {
+
+    static final String CONFIG_LOCATION = "application.properties";
+
+    static final ServletConfig CONFIG = config(CONFIG_LOCATION);
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private BenchSupport() {
+    }
+
+    static MyDispacherServlet v2() {
+        return v2(CONFIG_LOCATION);
+    }
+
+    // 使用classpath下的其他配置文件，例如只扫描基准测试自己的组件
+    static MyDispacherServlet v2(String configLocation) {
+        MyDispacherServlet servlet = new MyDispacherServlet();
+        servlet.init(config(configLocation));
+        return servlet;
+    }
+
+    static V1Servlet v1() {
+        V1Servlet servlet = new V1Servlet();
+        try {
+            servlet.init(CONFIG);
+        } catch (javax.servlet.ServletException e) {
+            throw new IllegalStateException(e);
+        }
+        return servlet;
+    }
+
+    // 只提供配置文件位置的servlet初始化参数
+    static ServletConfig config(String configLocation) {
+        return new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "bench";
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return null;
+            }
+
+            @Override
+            public String getInitParameter(String name) {
+                return "contextConfigLocation".equals(name) ? configLocation : null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return Collections.enumeration(Collections.singletonList("contextConfigLocation"));
+            }
+        };
+    }
+
+    // GET请求，target为路径加查询串
+    static HttpServletRequest get(String target) {
+        return request("GET", target, null, EMPTY);
+    }
+
+    static HttpServletRequest request(String method, String target, String contentType, byte[] body) {
+        TreeMap<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (contentType != null) {
+            headers.put("Content-Type", Collections.singletonList(contentType));
+        }
+        return new EmbeddedRequest(method, target, "HTTP/1.1", headers, body, "127.0.0.1");
+    }
+
+    static EmbeddedResponse response() {
+        return new EmbeddedResponse();
+    }
+
+    // v1的doPost是protected，通过子类调用
+    static final class V1Servlet extends com.ls.spring.framework.v1.MyDispacherServlet {
+        void dispatch(HttpServletRequest req, HttpServletResponse resp) {
+            doPost(req, resp);
+        }
+    }
+}
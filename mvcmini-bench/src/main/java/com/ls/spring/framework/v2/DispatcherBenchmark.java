@@ -0,0 +1,133 @@
+package com.ls.spring.framework.v2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.TimeUnit;
+
+// 整个请求的分发耗时：路由、参数绑定、调用控制器和写出响应，v1和v2对同一路由并列比较
+// 只选两个版本都支持的路由；v2的sayHello标了@MyCacheable，测到的是缓存命中
+// v2Reused复用同一个请求和响应，配合-prof gc只统计分发器本身每次请求的分配：
+// mvn -pl mvcmini-bench -am package exec:exec@bench -Djmh.args="DispatcherBenchmark.v2Reused -prof gc"
+// v2Noop调用没有参数、不写响应的空方法，测到的是路由、指标、调用本身的开销，目标在100ns以内；
+// interceptors为经过的空拦截器个数，0个时走没有拦截器的分支；
+// metrics只测每个请求记录指标的开销
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatcherBenchmark {
+
+    // demo包中的路由
+    @State(Scope.Benchmark)
+    public static class Demo {
+
+        @Param({"/hello/add?a=1&b=2", "/hello/sayHello?name=bench"})
+        public String target;
+
+        private MyDispacherServlet v2;
+        private BenchSupport.V1Servlet v1;
+        private HttpServletRequest reusedRequest;
+        private EmbeddedResponse reusedResponse;
+
+        @Setup
+        public void setup() {
+            v2 = BenchSupport.v2();
+            v1 = BenchSupport.v1();
+            reusedRequest = BenchSupport.get(target);
+            reusedResponse = BenchSupport.response();
+        }
+
+        @TearDown
+        public void tearDown() {
+            v2.destroy();
+            v1.destroy();
+        }
+    }
+
+    // 基准测试自己的空处理方法，见bench-noop.properties
+    @State(Scope.Benchmark)
+    public static class Noop {
+
+        @Param({"0", "1", "5"})
+        public int interceptors;
+
+        private MyDispacherServlet v2;
+        private HttpServletRequest request;
+        private EmbeddedResponse response;
+
+        @Setup
+        public void setup() {
+            v2 = BenchSupport.v2("bench-noop.properties");
+            request = BenchSupport.get("/noop/i" + interceptors);
+            response = BenchSupport.response();
+        }
+
+        @TearDown
+        public void tearDown() {
+            v2.destroy();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Metrics {
+
+        private final DispatcherMetrics metrics = new DispatcherMetrics();
+        private final DispatcherMetrics.HandlerMetrics handler = metrics.handler("/noop/i0");
+    }
+
+    @Benchmark
+    public EmbeddedResponse v1(Demo demo) {
+        EmbeddedResponse resp = BenchSupport.response();
+        demo.v1.dispatch(BenchSupport.get(demo.target), resp);
+        return resp;
+    }
+
+    @Benchmark
+    public EmbeddedResponse v2(Demo demo) throws Exception {
+        EmbeddedResponse resp = BenchSupport.response();
+        demo.v2.doDispach(BenchSupport.get(demo.target), resp);
+        return resp;
+    }
+
+    @Benchmark
+    public EmbeddedResponse v2Reused(Demo demo) throws Exception {
+        demo.reusedResponse.reset();
+        demo.v2.doDispach(demo.reusedRequest, demo.reusedResponse);
+        return demo.reusedResponse;
+    }
+
+    @Benchmark
+    public EmbeddedResponse v2Noop(Noop noop) throws Exception {
+        noop.response.reset();
+        noop.v2.doDispach(noop.request, noop.response);
+        return noop.response;
+    }
+
+    // 与分发器每个请求记录指标的调用相同：路由查找、开始、绑定、调用、结束，包括其中的System.nanoTime
+    @Benchmark
+    public DispatcherMetrics.HandlerMetrics metrics(Metrics state) {
+        long start = System.nanoTime();
+        DispatcherMetrics.HandlerMetrics handler = state.handler;
+        long routed = System.nanoTime();
+        state.metrics.recordRouteLookup(routed - start, true);
+        handler.begin();
+        long bound = System.nanoTime();
+        handler.recordBind(bound - routed);
+        handler.recordInvoke(System.nanoTime() - bound);
+        handler.end(start, false);
+        return handler;
+    }
+}
@@ -0,0 +1,71 @@
+package com.ls.spring.framework.v2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// 启动耗时：扫描、实例化、依赖注入和建立路由，每次调用创建新的servlet
+// 每个fork只测少量几次，包含类加载等冷启动开销
+// v1、v2为demo包；v1Classes、v2Scan、v2Index为生成的1000、10000个类，每次在新的类加载器中初始化，
+// v2Index使用构建期生成的组件索引，跳过扫描
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 5)
+@Fork(5)
+public class InitBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Classes {
+
+        @Param({"1000", "10000"})
+        public int count;
+
+        private InitFixtures fixtures;
+
+        @Setup
+        public void setup() throws IOException {
+            fixtures = InitFixtures.create(count);
+        }
+    }
+
+    @Benchmark
+    public Object v1() {
+        BenchSupport.V1Servlet servlet = BenchSupport.v1();
+        servlet.destroy();
+        return servlet;
+    }
+
+    @Benchmark
+    public Object v2() {
+        MyDispacherServlet servlet = BenchSupport.v2();
+        servlet.destroy();
+        return servlet;
+    }
+
+    @Benchmark
+    public void v1Classes(Classes classes) throws Exception {
+        InitFixtures.initAndDestroy(classes.fixtures.scanRoot(), "com.ls.spring.framework.v1.MyDispacherServlet");
+    }
+
+    @Benchmark
+    public void v2Scan(Classes classes) throws Exception {
+        InitFixtures.initAndDestroy(classes.fixtures.scanRoot(), MyDispacherServlet.class.getName());
+    }
+
+    @Benchmark
+    public void v2Index(Classes classes) throws Exception {
+        InitFixtures.initAndDestroy(classes.fixtures.indexRoot(), MyDispacherServlet.class.getName());
+    }
+}
@@ -0,0 +1,220 @@
+package com.ls.spring.framework.v2;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+// InitBenchmark的生成类：每4个类中1个服务、1个注入该服务的控制器（两个路由），其余2个是没有注解的普通类，扫描时应跳过
+// 源码生成后用运行基准测试的JDK编译到java.io.tmpdir下，按类的个数缓存，各个fork共用
+final class InitFixtures {
+
+    static final String PACKAGE = "com.ls.spring.bench.init";
+    static final String CONFIG_LOCATION = "init-bench.properties";
+
+    private static final String COMPLETE = "complete";
+
+    private final Path scanRoot;
+    private final Path indexRoot;
+
+    private InitFixtures(Path scanRoot, Path indexRoot) {
+        this.scanRoot = scanRoot;
+        this.indexRoot = indexRoot;
+    }
+
+    // scan下只有class文件和配置文件，index下另有组件索引
+    static InitFixtures create(int count) throws IOException {
+        Path base = Paths.get(System.getProperty("java.io.tmpdir"), "mymvc-init-fixtures", String.valueOf(count));
+        InitFixtures fixtures = new InitFixtures(base.resolve("scan"), base.resolve("index"));
+        if (Files.exists(base.resolve(COMPLETE))) {
+            return fixtures;
+        }
+        delete(base);
+        Path sources = base.resolve("src");
+        Path dir = sources.resolve(PACKAGE.replace('.', File.separatorChar));
+        Files.createDirectories(dir);
+        Files.createDirectories(fixtures.scanRoot);
+        List<File> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = className(i);
+            Path file = dir.resolve(name + ".java");
+            Files.write(file, source(i, name).getBytes(StandardCharsets.UTF_8));
+            files.add(file.toFile());
+        }
+        compile(files, fixtures.scanRoot);
+        try (Writer writer = Files.newBufferedWriter(fixtures.scanRoot.resolve(CONFIG_LOCATION), StandardCharsets.UTF_8)) {
+            writer.write("package-scan:" + PACKAGE + "\n");
+            writer.write("generated-registry:false\n");
+        }
+        copy(fixtures.scanRoot, fixtures.indexRoot);
+        ComponentScanner.main(new String[]{fixtures.indexRoot.toString(), PACKAGE});
+        Files.createFile(base.resolve(COMPLETE));
+        return fixtures;
+    }
+
+    Path scanRoot() {
+        return scanRoot;
+    }
+
+    Path indexRoot() {
+        return indexRoot;
+    }
+
+    // 在新的类加载器中创建servlet，初始化后销毁；框架和生成类都重新加载，包含冷启动的类加载开销
+    // 类加载器只包含root和当前classpath，父加载器不能加载框架和servlet-api，配置通过代理的ServletConfig传入
+    static void initAndDestroy(Path root, String servletClassName) throws Exception {
+        List<URL> urls = new ArrayList<>();
+        urls.add(root.toUri().toURL());
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(entry).toURI().toURL());
+        }
+        try (URLClassLoader loader = new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> configType = loader.loadClass("javax.servlet.ServletConfig");
+            Object config = Proxy.newProxyInstance(loader, new Class<?>[]{configType}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getInitParameter":
+                        return "contextConfigLocation".equals(args[0]) ? CONFIG_LOCATION : null;
+                    case "getInitParameterNames":
+                        return Collections.enumeration(Collections.singletonList("contextConfigLocation"));
+                    case "getServletName":
+                        return "bench";
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "bench";
+                    default:
+                        return null;
+                }
+            });
+            Class<?> servletClass = loader.loadClass(servletClassName);
+            Object servlet = servletClass.newInstance();
+            try {
+                servletClass.getMethod("init", configType).invoke(servlet, config);
+                servletClass.getMethod("destroy").invoke(servlet);
+            } catch (InvocationTargetException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+    }
+
+    private static String className(int i) {
+        switch (i % 4) {
+            case 0:
+                return "Service" + i;
+            case 1:
+                return "Controller" + i;
+            default:
+                return "Model" + i;
+        }
+    }
+
+    private static String source(int i, String name) {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("package ").append(PACKAGE).append(";\n\n");
+        switch (i % 4) {
+            case 0:
+                sb.append("@com.ls.spring.framework.annotation.MyService\n")
+                        .append("public class ").append(name).append(" {\n")
+                        .append("    public String greet(String name) {\n")
+                        .append("        return \"").append(name).append(":\" + name;\n")
+                        .append("    }\n")
+                        .append("}\n");
+                break;
+            case 1:
+                String service = "Service" + (i - 1);
+                sb.append("@com.ls.spring.framework.annotation.MyController\n")
+                        .append("@com.ls.spring.framework.annotation.MyResquestMapping(\"/c").append(i).append("\")\n")
+                        .append("public class ").append(name).append(" {\n")
+                        .append("    @com.ls.spring.framework.annotation.MyAutowired\n")
+                        .append("    ").append(service).append(' ').append(Character.toLowerCase(service.charAt(0)))
+                        .append(service.substring(1)).append(";\n\n")
+                        .append("    @com.ls.spring.framework.annotation.MyResquestMapping(\"/greet\")\n")
+                        .append("    public void greet(javax.servlet.http.HttpServletResponse response,\n")
+                        .append("                      @com.ls.spring.framework.annotation.MyRequestParam(\"name\") String name) throws java.io.IOException {\n")
+                        .append("        response.getWriter().write(name);\n")
+                        .append("    }\n\n")
+                        .append("    @com.ls.spring.framework.annotation.MyResquestMapping(\"/add\")\n")
+                        .append("    public void add(javax.servlet.http.HttpServletResponse response,\n")
+                        .append("                    @com.ls.spring.framework.annotation.MyRequestParam(\"a\") Integer a,\n")
+                        .append("                    @com.ls.spring.framework.annotation.MyRequestParam(\"b\") Integer b) throws java.io.IOException {\n")
+                        .append("        response.getWriter().write(String.valueOf(a + b));\n")
+                        .append("    }\n")
+                        .append("}\n");
+                break;
+            default:
+                sb.append("public class ").append(name).append(" {\n")
+                        .append("    private long id;\n")
+                        .append("    private String name;\n\n")
+                        .append("    public long getId() {\n")
+                        .append("        return id;\n")
+                        .append("    }\n\n")
+                        .append("    public String getName() {\n")
+                        .append("        return name;\n")
+                        .append("    }\n")
+                        .append("}\n");
+        }
+        return sb.toString();
+    }
+
+    private static void compile(List<File> files, Path output) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("生成InitBenchmark的测试类需要在JDK（而不是JRE）中运行！");
+        }
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            List<String> options = Arrays.asList("-proc:none", "-nowarn", "-encoding", "UTF-8",
+                    "-cp", System.getProperty("java.class.path"), "-d", output.toString());
+            Boolean success = compiler.getTask(null, fileManager, null, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(files)).call();
+            if (!Boolean.TRUE.equals(success)) {
+                throw new IllegalStateException("编译InitBenchmark的测试类失败！");
+            }
+        }
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        try (Stream<Path> paths = Files.walk(from)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path target = to.resolve(from.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    // 删除上次没有生成完的目录
+    private static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            List<Path> list = new ArrayList<>();
+            paths.forEach(list::add);
+            Collections.reverse(list);
+            for (Path path : list) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.ls.spring.framework.v2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 返回值JSON序列化的耗时：v2为预先生成字段访问器的序列化器，写到池化缓冲区；
+// reflective为常见的朴素做法，每次遍历getDeclaredFields、Field.get取值，拼成字符串后再编码为字节
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonSerializerBenchmark {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+    private Order order;
+    private JsonSerializers.Serializer serializer;
+
+    public static class Line {
+        String sku;
+        int quantity;
+        double price;
+
+        Line(String sku, int quantity, double price) {
+            this.sku = sku;
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+
+    public static class Order {
+        long id;
+        String customer;
+        boolean paid;
+        List<String> tags;
+        List<Line> lines;
+    }
+
+    @Setup
+    public void setup() {
+        order = new Order();
+        order.id = 10086;
+        order.customer = "bench \"quoted\" customer";
+        order.paid = true;
+        order.tags = Arrays.asList("express", "gift", "vip");
+        order.lines = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            order.lines.add(new Line("SKU-" + i, i + 1, 9.99 * (i + 1)));
+        }
+        serializer = JsonSerializers.forType(Order.class);
+    }
+
+    // 与ReturnValueWriters写出JSON的方式相同
+    @Benchmark
+    public int v2() throws Exception {
+        bytes.reset();
+        byte[] chunk = ReturnValueWriters.acquire();
+        try {
+            JsonOutput out = new JsonOutput(bytes, chunk);
+            serializer.write(order, out);
+            out.flush();
+        } finally {
+            ReturnValueWriters.release(chunk);
+        }
+        return bytes.size();
+    }
+
+    @Benchmark
+    public int reflective() throws Exception {
+        bytes.reset();
+        StringBuilder sb = new StringBuilder();
+        writeReflective(order, sb);
+        bytes.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        return bytes.size();
+    }
+
+    // 只处理本基准测试用到的类型
+    private static void writeReflective(Object value, StringBuilder sb) throws IllegalAccessException {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String) {
+            sb.append('"').append(((String) value).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Collection) {
+            sb.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                writeReflective(element, sb);
+            }
+            sb.append(']');
+        } else if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                writeReflective(String.valueOf(entry.getKey()), sb);
+                sb.append(':');
+                writeReflective(entry.getValue(), sb);
+            }
+            sb.append('}');
+        } else {
+            sb.append('{');
+            boolean first = true;
+            for (Field field : value.getClass().getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                writeReflective(field.getName(), sb);
+                sb.append(':');
+                writeReflective(field.get(value), sb);
+            }
+            sb.append('}');
+        }
+    }
+}
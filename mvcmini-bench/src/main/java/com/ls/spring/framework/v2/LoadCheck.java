@@ -0,0 +1,197 @@
+package com.ls.spring.framework.v2;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// CI用的压测客户端：启动内嵌服务器，每个线程一个keep-alive连接，按固定时长不停地发请求
+// 覆盖GET、HEAD、带Expect: 100-continue的表单POST和管线化的两个请求，每个响应都检查状态码和响应体；
+// 有任何不符、连接错误或服务端错误时以状态码1退出
+// 用法：LoadCheck [线程数] [秒数]
+public final class LoadCheck {
+
+    // 请求、期望的状态码和响应体前缀；HEAD请求期望没有响应体
+    private static final Case[] CASES = {
+            new Case("GET", "/hello/add?a=1&b=2", null, 200, "a + b = 3"),
+            new Case("GET", "/hello/sayHello?name=ci", null, 200, "Hello!My name is ci!"),
+            new Case("GET", "/hello/user/42", null, 200, "user:42"),
+            new Case("GET", "/hello/user/abc", null, 400, "400 Bad Request:"),
+            new Case("GET", "/hello/missing", null, 404, ""),
+            new Case("HEAD", "/hello/add?a=1&b=2", null, 200, ""),
+            new Case("POST", "/hello/add", "a=3&b=4", 200, "a + b = 7"),
+    };
+
+    private LoadCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        EmbeddedServer server = new EmbeddedServer(BenchSupport.CONFIG_LOCATION);
+        server.start(0);
+        int port = server.port();
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicLong requests = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try (Connection connection = new Connection(port)) {
+                    long n = 0;
+                    for (int i = offset; failure.get() == null && System.nanoTime() - end < 0; i++) {
+                        Case c = CASES[i % CASES.length];
+                        if (c.body == null && i % 2 == 0) {
+                            // 管线化：两个请求一次发出，再依次读两个响应
+                            Case next = CASES[(i + 1) % CASES.length];
+                            if (next.body == null) {
+                                connection.send(c, next);
+                                connection.check(c, failure);
+                                connection.check(next, failure);
+                                i++;
+                                n += 2;
+                                continue;
+                            }
+                        }
+                        connection.send(c);
+                        connection.check(c, failure);
+                        n++;
+                    }
+                    requests.addAndGet(n);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e.toString());
+                } finally {
+                    done.countDown();
+                }
+            }, "load-check-" + t);
+            worker.start();
+        }
+        done.await();
+        server.stop();
+
+        System.out.printf("线程数：%d，请求数：%d，吞吐量：%.0f req/s%n", threads, requests.get(), requests.get() / (double) seconds);
+        if (failure.get() != null) {
+            System.out.println("失败：" + failure.get());
+            System.exit(1);
+        }
+        System.out.println("全部通过");
+    }
+
+    private static final class Case {
+        final String method;
+        final String target;
+        final String body;
+        final int status;
+        final String prefix;
+
+        Case(String method, String target, String body, int status, String prefix) {
+            this.method = method;
+            this.target = target;
+            this.body = body;
+            this.status = status;
+            this.prefix = prefix;
+        }
+
+        byte[] head() {
+            StringBuilder sb = new StringBuilder(128).append(method).append(' ').append(target).append(" HTTP/1.1\r\nHost: localhost\r\n");
+            if (body != null) {
+                sb.append("Content-Type: application/x-www-form-urlencoded\r\nExpect: 100-continue\r\nContent-Length: ")
+                        .append(body.length()).append("\r\n");
+            }
+            return sb.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    // 一个keep-alive连接，按Content-Length读完响应
+    private static final class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+        private final StringBuilder line = new StringBuilder();
+        private int status;
+        private int contentLength;
+
+        Connection(int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(10000);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        // 没有请求体的请求可以一次发出多个；带请求体的请求先等100 Continue再发请求体
+        void send(Case... cases) throws IOException {
+            for (Case c : cases) {
+                out.write(c.head());
+            }
+            out.flush();
+            Case last = cases[cases.length - 1];
+            if (last.body != null) {
+                readHeaders();
+                if (status != 100) {
+                    throw new IOException(last.target + "：期望100 Continue，实际" + status);
+                }
+                out.write(last.body.getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+            }
+        }
+
+        void check(Case c, AtomicReference<String> failure) throws IOException {
+            readHeaders();
+            int length = "HEAD".equals(c.method) ? 0 : contentLength;
+            byte[] body = new byte[length];
+            for (int read = 0; read < length; ) {
+                int n = in.read(body, read, length - read);
+                if (n < 0) {
+                    throw new IOException("连接已关闭");
+                }
+                read += n;
+            }
+            String text = new String(body, StandardCharsets.UTF_8);
+            if (status != c.status || !text.startsWith(c.prefix)) {
+                failure.compareAndSet(null, c.method + " " + c.target + "：期望" + c.status + " " + c.prefix + "，实际" + status + " " + text);
+            }
+        }
+
+        // 读到空行为止，记下状态码和Content-Length
+        private void readHeaders() throws IOException {
+            status = -1;
+            contentLength = 0;
+            line.setLength(0);
+            for (;;) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new IOException("连接已关闭");
+                }
+                if (b != '\n') {
+                    if (b != '\r') {
+                        line.append((char) b);
+                    }
+                    continue;
+                }
+                if (line.length() == 0) {
+                    return;
+                }
+                String header = line.toString();
+                if (status < 0) {
+                    status = Integer.parseInt(header.substring(9, 12));
+                } else if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    contentLength = Integer.parseInt(header.substring(15).trim());
+                }
+                line.setLength(0);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
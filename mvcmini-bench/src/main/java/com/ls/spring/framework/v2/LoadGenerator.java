@@ -0,0 +1,188 @@
+package com.ls.spring.framework.v2;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// 闭环压测：每个线程发出一个请求、收到响应后再发下一个，轮流访问demo中HelloController的路由
+// 目标为v1、v2时在进程内直接调用servlet；为http时启动内嵌服务器，每个线程一个keep-alive连接
+// 预热阶段不计入结果，结束后按路由输出吞吐量和延迟分位数
+// 用法：LoadGenerator [v1|v2|http] [线程数] [秒数]
+public final class LoadGenerator {
+
+    // v1只支持字面量路由和Integer、String参数
+    private static final String[] V1_ROUTES = {"/hello/add?a=1&b=2", "/hello/sayHello?name=load"};
+    private static final String[] V2_ROUTES = {"/hello/add?a=1&b=2", "/hello/sayHello?name=load",
+            "/hello/jsonAdd?a=1&b=2", "/hello/user/42"};
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String target = args.length > 0 ? args[0] : "v2";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Math.min(Math.max(seconds / 5, 1), 5));
+        long measureNanos = TimeUnit.SECONDS.toNanos(seconds);
+
+        String[] routes = "v1".equals(target) ? V1_ROUTES : V2_ROUTES;
+        Client.Factory factory;
+        EmbeddedServer server = null;
+        if ("v1".equals(target)) {
+            BenchSupport.V1Servlet servlet = BenchSupport.v1();
+            factory = () -> route -> servlet.dispatch(BenchSupport.get(route), BenchSupport.response());
+        } else if ("v2".equals(target)) {
+            MyDispacherServlet servlet = BenchSupport.v2();
+            factory = () -> route -> servlet.doDispach(BenchSupport.get(route), BenchSupport.response());
+        } else if ("http".equals(target)) {
+            server = new EmbeddedServer(BenchSupport.CONFIG_LOCATION);
+            server.start(0);
+            int port = server.port();
+            factory = () -> new HttpClient(port);
+        } else {
+            throw new IllegalArgumentException("目标应为v1、v2或http：" + target);
+        }
+
+        LatencyHistogram[] histograms = new LatencyHistogram[routes.length];
+        for (int i = 0; i < routes.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = measureStart + measureNanos;
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try (Client client = factory.create()) {
+                    // 各线程从不同的路由开始，避免同时访问同一个路由
+                    for (int n = offset; ; n++) {
+                        int r = n % routes.length;
+                        long begin = System.nanoTime();
+                        if (begin - end >= 0) {
+                            break;
+                        }
+                        client.call(routes[r]);
+                        long finish = System.nanoTime();
+                        if (begin - measureStart >= 0) {
+                            histograms[r].record(finish - begin);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            worker.start();
+        }
+        done.await();
+        if (server != null) {
+            server.stop();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("压测失败", failure.get());
+        }
+        report(target, threads, measureNanos, routes, histograms);
+    }
+
+    private static void report(String target, int threads, long measureNanos, String[] routes, LatencyHistogram[] histograms) {
+        double seconds = measureNanos / 1e9;
+        System.out.printf("目标=%s 线程数=%d 统计时长=%.0fs%n", target, threads, seconds);
+        System.out.printf("%-28s %10s %10s %9s %9s %9s %9s %9s%n",
+                "route", "requests", "req/s", "p50(us)", "p90(us)", "p99(us)", "p999(us)", "max(us)");
+        long total = 0;
+        for (int i = 0; i < routes.length; i++) {
+            LatencyHistogram h = histograms[i];
+            long count = h.count();
+            total += count;
+            System.out.printf("%-28s %10d %10.0f %9.1f %9.1f %9.1f %9.1f %9.1f%n", routes[i], count, count / seconds,
+                    h.percentile(0.5) / 1e3, h.percentile(0.9) / 1e3, h.percentile(0.99) / 1e3,
+                    h.percentile(0.999) / 1e3, h.percentile(1.0) / 1e3);
+        }
+        System.out.printf("%-28s %10d %10.0f%n", "total", total, total / seconds);
+    }
+
+    // 一个压测线程使用的客户端
+    private interface Client extends AutoCloseable {
+        void call(String route) throws Exception;
+
+        @Override
+        default void close() throws IOException {
+        }
+
+        interface Factory {
+            Client create() throws IOException;
+        }
+    }
+
+    // 最简单的HTTP/1.1客户端：一个keep-alive连接，按Content-Length读完响应
+    private static final class HttpClient implements Client {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+
+        HttpClient(int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        @Override
+        public void call(String route) throws IOException {
+            out.write(("GET " + route + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            int contentLength = readHeaders();
+            for (int i = 0; i < contentLength; i++) {
+                if (in.read() < 0) {
+                    throw new IOException("连接已关闭");
+                }
+            }
+        }
+
+        // 读到空行为止，返回Content-Length
+        private int readHeaders() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int contentLength = 0;
+            int status = -1;
+            for (;;) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new IOException("连接已关闭");
+                }
+                if (b != '\n') {
+                    if (b != '\r') {
+                        line.append((char) b);
+                    }
+                    continue;
+                }
+                if (line.length() == 0) {
+                    if (status >= 500) {
+                        throw new IOException("服务端错误：" + status);
+                    }
+                    return contentLength;
+                }
+                String header = line.toString();
+                if (status < 0) {
+                    status = Integer.parseInt(header.substring(9, 12));
+                } else if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    contentLength = Integer.parseInt(header.substring(15).trim());
+                }
+                line.setLength(0);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.annotation.MyRequestBody;
+import com.ls.spring.framework.annotation.MyRequestParam;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 参数绑定的耗时：v2在init时为每个形参创建绑定器，请求时直接取值转换；
+// v1在每次请求时读取形参注解，把参数数组转成字符串再用正则去掉括号和空白
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParamBinderBenchmark {
+
+    private static final byte[] JSON = "{\"name\":\"bench\",\"qty\":3,\"tags\":[1,2,3]}".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServletRequest request;
+    private Method sample;
+    private ParamBinder[] binders;
+    private ParamBinder listBinder;
+    private ParamBinder bodyBinder;
+
+    // 请求体的目标类型
+    public static class Item {
+        String name;
+        int qty;
+        List<Long> tags;
+    }
+
+    // 用于取得形参的类型和注解
+    public void sample(@MyRequestParam("a") Integer a, @MyRequestParam("b") Integer b) {
+    }
+
+    public void sampleList(@MyRequestParam("ids") List<Long> ids) {
+    }
+
+    public void sampleBody(@MyRequestBody Item item) {
+    }
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        request = BenchSupport.get("/bench?a=1&b=2&ids=1&ids=2&ids=3");
+        sample = getClass().getMethod("sample", Integer.class, Integer.class);
+        binders = binders(sample);
+        listBinder = binders(getClass().getMethod("sampleList", List.class))[0];
+        bodyBinder = binders(getClass().getMethod("sampleBody", Item.class))[0];
+    }
+
+    private static ParamBinder[] binders(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        ParamBinder[] binders = new ParamBinder[types.length];
+        for (int i = 0; i < types.length; i++) {
+            binders[i] = ParamBinders.create(types[i], method.getGenericParameterTypes()[i],
+                    method.getParameterAnnotations()[i], Collections.<String>emptyList());
+        }
+        return binders;
+    }
+
+    @Benchmark
+    public Object[] v2() throws Exception {
+        Object[] params = new Object[binders.length];
+        for (int i = 0; i < binders.length; i++) {
+            params[i] = binders[i].bind(request, null, PathVariables.NONE);
+        }
+        return params;
+    }
+
+    // 与v1的doDispach相同的做法（包括逐个形参遍历全部注解），只用于比较耗时，转换结果与v2不同
+    @Benchmark
+    public Object[] v1() {
+        Map<String, String[]> parameterMap = request.getParameterMap();
+        Class<?>[] parameterTypes = sample.getParameterTypes();
+        Object[] params = new Object[parameterTypes.length];
+        Annotation[][] paramAnnos = sample.getParameterAnnotations();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            // v1对每个形参都遍历全部形参的注解
+            for (Annotation[] paramAnno : paramAnnos) {
+                for (Annotation a : paramAnno) {
+                    if (a instanceof MyRequestParam) {
+                        String[] paramValues = parameterMap.get(((MyRequestParam) a).value());
+                        if (paramValues != null) {
+                            String paramValue = Arrays.toString(paramValues)
+                                    .replaceAll("\\[|\\]", "")
+                                    .replaceAll("\\s", "");
+                            params[i] = parameterTypes[i] == Integer.class ? Integer.valueOf(paramValue) : paramValue;
+                        }
+                    }
+                }
+            }
+        }
+        return params;
+    }
+
+    // 多值参数转换为List<Long>，v1不支持
+    @Benchmark
+    public Object v2List() throws Exception {
+        return listBinder.bind(request, null, PathVariables.NONE);
+    }
+
+    // @MyRequestBody：从输入流直接解析JSON为对象
+    @Benchmark
+    public Object jsonBody() throws Exception {
+        return bodyBinder.bind(BenchSupport.request("POST", "/bench", "application/json", JSON), null, PathVariables.NONE);
+    }
+}
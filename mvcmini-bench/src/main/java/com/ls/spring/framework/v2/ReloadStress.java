@@ -0,0 +1,71 @@
+package com.ls.spring.framework.v2;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// 热加载压力测试：多个线程不停地经过service分发请求，同时主线程不停地重新构建并替换快照
+// 每个响应都检查状态码和响应体，包括由@MyExceptionHandler处理的异常和404；有任何不符时以状态码1退出
+// 用法：ReloadStress [线程数] [秒数]
+public final class ReloadStress {
+
+    // 路由、期望的状态码和响应体前缀
+    private static final String[][] CASES = {
+            {"/hello/add?a=1&b=2", "200", "a + b = 3"},
+            {"/hello/sayHello?name=stress", "200", "Hello!My name is stress!"},
+            {"/hello/user/42", "200", "user:42"},
+            {"/hello/user/abc", "400", "400 Bad Request:"},
+            {"/hello/missing", "404", ""},
+    };
+
+    private ReloadStress() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        MyDispacherServlet servlet = BenchSupport.v2();
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicLong requests = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    long n = 0;
+                    for (int i = offset; failure.get() == null && System.nanoTime() - end < 0; i++, n++) {
+                        String[] c = CASES[i % CASES.length];
+                        EmbeddedResponse resp = BenchSupport.response();
+                        servlet.service(BenchSupport.get(c[0]), resp);
+                        String body = resp.bodyAsString();
+                        if (resp.getStatus() != Integer.parseInt(c[1]) || !body.startsWith(c[2])) {
+                            failure.compareAndSet(null, c[0] + "：期望" + c[1] + " " + c[2] + "，实际" + resp.getStatus() + " " + body);
+                        }
+                    }
+                    requests.addAndGet(n);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e.toString());
+                } finally {
+                    done.countDown();
+                }
+            }, "reload-stress-" + t);
+            worker.start();
+        }
+        int reloads = 0;
+        while (done.getCount() > 0) {
+            servlet.reload();
+            reloads++;
+        }
+        done.await();
+        servlet.destroy();
+
+        System.out.println("线程数：" + threads + "，请求数：" + requests.get() + "，重新加载次数：" + reloads);
+        if (failure.get() != null) {
+            System.out.println("失败：" + failure.get());
+            System.exit(1);
+        }
+        System.out.println("全部通过");
+    }
+}
@@ -0,0 +1,117 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.annotation.MyRequestMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+// 按url查找handler的耗时，路由数量不同时比较三种方式：
+// v1的HashMap精确查找（不支持路径变量）、原先v2的正则列表逐个匹配、现在的RequestRouter
+// 一半路由是字面量，一半带路径变量；请求的url依次轮换，避免只测到同一个url
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouterBenchmark {
+
+    private static final MyRequestMethod[] ANY = {};
+
+    @Param({"10", "100", "1000"})
+    public int routes;
+
+    private Map<String, Object> exactMap;
+    private List<Pattern> regexList;
+    private RequestRouter<Object> router;
+    private int[] offsets;
+    private String[] literalUris;
+    private String[] templateUris;
+    private int next;
+
+    @Setup
+    public void setup() {
+        exactMap = new HashMap<>();
+        regexList = new ArrayList<>();
+        router = new RequestRouter<>();
+        List<String> literals = new ArrayList<>();
+        List<String> templates = new ArrayList<>();
+        for (int i = 0; i < routes / 2; i++) {
+            String literal = "/api/r" + i + "/items";
+            String template = "/api/r" + i + "/items/{id}";
+            Object value = i;
+            exactMap.put(literal, value);
+            regexList.add(Pattern.compile(literal));
+            regexList.add(Pattern.compile(RouteTrie.templateRegex(template)));
+            router.add(ANY, literal, Pattern.compile(literal), value);
+            router.add(ANY, template, Pattern.compile(RouteTrie.templateRegex(template)), value);
+            literals.add(literal);
+            templates.add("/api/r" + i + "/items/" + (1000 + i));
+        }
+        // 打乱顺序，避免按注册顺序访问；固定种子保证每次运行一致
+        Collections.shuffle(literals, new Random(42));
+        Collections.shuffle(templates, new Random(42));
+        literalUris = literals.toArray(new String[0]);
+        templateUris = templates.toArray(new String[0]);
+        router.freeze();
+        offsets = new int[Math.max(router.offsetsLength(), 1)];
+    }
+
+    private int nextIndex() {
+        int i = next++;
+        if (next == literalUris.length) {
+            next = 0;
+        }
+        return i;
+    }
+
+    @Benchmark
+    public Object literalExactMap() {
+        return exactMap.get(literalUris[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object literalRegexList() {
+        return scan(literalUris[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object literalRouter() {
+        return router.match("GET", literalUris[nextIndex()], offsets);
+    }
+
+    @Benchmark
+    public Object templateRegexList() {
+        return scan(templateUris[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object templateRouter() {
+        return router.match("GET", templateUris[nextIndex()], offsets);
+    }
+
+    private Object scan(String uri) {
+        for (Pattern pattern : regexList) {
+            if (pattern.matcher(uri).matches()) {
+                return pattern;
+            }
+        }
+        return null;
+    }
+}
@@ -2,23 +2,47 @@ package com.ls.spring.demo.comtroller;
 
 import com.ls.spring.demo.service.IHelloServie;
 import com.ls.spring.framework.annotation.MyAutowired;
+import com.ls.spring.framework.annotation.MyCacheable;
 import com.ls.spring.framework.annotation.MyController;
+import com.ls.spring.framework.annotation.MyExceptionHandler;
+import com.ls.spring.framework.annotation.MyPathVariable;
+import com.ls.spring.framework.annotation.MyRequestBody;
+import com.ls.spring.framework.annotation.MyRequestMethod;
 import com.ls.spring.framework.annotation.MyRequestParam;
+import com.ls.spring.framework.annotation.MyRequestPart;
+import com.ls.spring.framework.annotation.MyResponseBody;
 import com.ls.spring.framework.annotation.MyResquestMapping;
+import com.ls.spring.framework.v2.MyEventStream;
+import com.ls.spring.framework.v2.MyPart;
+import com.ls.spring.framework.v2.MySseEvent;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @MyController
 @MyResquestMapping("/hello")
 public class HelloController {
 
+    // 定时产生事件，所有订阅共用一个线程
+    private static final ScheduledExecutorService TICKER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hello-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     @MyAutowired
-    private IHelloServie helloService;
+    IHelloServie helloService;
 
+    @MyCacheable(ttl = 30)
     @MyResquestMapping("/sayHello")
-    public void sayHello(HttpServletRequest request, HttpServletResponse response, @MyRequestParam("name") String name) {
+    public void sayHello(HttpServletResponse response, @MyRequestParam("name") String name) {
         String result = "Hello!My name is " + name + "!";
         try {
             response.getWriter().write(result);
@@ -39,4 +63,78 @@ public class HelloController {
         }
     }
 
+    // 异步返回结果，框架在结果完成后写出并结束请求
+    @MyResquestMapping("/asyncHello")
+    public CompletableFuture<String> asyncHello(@MyRequestParam("name") String name) {
+        return CompletableFuture.supplyAsync(() -> "Hello!My name is " + name + "!");
+    }
+
+    // 返回值序列化为JSON
+    @MyResponseBody
+    @MyResquestMapping("/jsonAdd")
+    public Map<String, Integer> jsonAdd(@MyRequestParam("a") int a, @MyRequestParam("b") int b) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("a", a);
+        result.put("b", b);
+        result.put("sum", a + b);
+        return result;
+    }
+
+    // 路径变量
+    @MyResquestMapping("/user/{id}")
+    public String user(@MyPathVariable("id") long id) {
+        return "user:" + id;
+    }
+
+    // 请求体为JSON或表单，原样以JSON返回
+    @MyResponseBody
+    @MyResquestMapping(value = "/echo", method = MyRequestMethod.POST)
+    public Map<String, Object> echo(@MyRequestBody Map<String, Object> body) {
+        return body;
+    }
+
+    // 文件上传：返回文件的大小和保存位置（内存或临时文件）
+    @MyResponseBody
+    @MyResquestMapping(value = "/upload", method = MyRequestMethod.POST)
+    public Map<String, Object> upload(@MyRequestPart("file") MyPart file,
+                                      @MyRequestPart(value = "description", required = false) String description) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("filename", file.getFilename());
+        result.put("contentType", file.getContentType());
+        result.put("size", file.getSize());
+        result.put("inMemory", file.isInMemory());
+        result.put("description", description);
+        return result;
+    }
+
+    // Server-Sent Events：每秒推送一个事件，共count个；客户端断开后不再继续
+    @MyResquestMapping("/ticks")
+    public MyEventStream<MySseEvent> ticks(@MyRequestParam("count") int count) {
+        MyEventStream<MySseEvent> stream = new MyEventStream<>();
+        tick(stream, 1, count);
+        return stream;
+    }
+
+    private void tick(MyEventStream<MySseEvent> stream, int n, int count) {
+        if (stream.isCancelled()) {
+            return;
+        }
+        if (n > count) {
+            stream.complete();
+            return;
+        }
+        Map<String, Object> tick = new LinkedHashMap<>();
+        tick.put("n", n);
+        tick.put("time", System.currentTimeMillis());
+        stream.send(new MySseEvent(String.valueOf(n), "tick", tick));
+        TICKER.schedule(() -> tick(stream, n + 1, count), 1, TimeUnit.SECONDS);
+    }
+
+    // 参数不合法（类型转换失败、请求体格式错误等）返回400
+    @MyExceptionHandler(IllegalArgumentException.class)
+    public String badRequest(IllegalArgumentException e, HttpServletResponse response) {
+        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        return "400 Bad Request:" + e.getMessage();
+    }
+
 }
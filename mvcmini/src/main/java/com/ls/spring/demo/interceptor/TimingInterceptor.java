@@ -0,0 +1,27 @@
+package com.ls.spring.demo.interceptor;
+
+import com.ls.spring.framework.annotation.MyInterceptor;
+import com.ls.spring.framework.v2.MyHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+
+// 控制器方法耗时写到响应头中，只拦截/hello/user/{id}
+@MyInterceptor("/hello/user/*")
+public class TimingInterceptor implements MyHandlerInterceptor {
+
+    private static final String START = TimingInterceptor.class.getName() + ".start";
+
+    @Override
+    public boolean preHandle(HttpServletRequest req, HttpServletResponse resp, Method handler) {
+        req.setAttribute(START, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest req, HttpServletResponse resp, Method handler, Object returnValue) {
+        long start = (Long) req.getAttribute(START);
+        resp.setHeader("X-Handler-Micros", String.valueOf((System.nanoTime() - start) / 1000));
+    }
+}
@@ -2,7 +2,8 @@ package com.ls.spring.framework.annotation;
 
 import java.lang.annotation.*;
 
-@Target(ElementType.FIELD)
+// 字段注入；标在构造方法上时按构造方法注入，参数上可指定组件名
+@Target({ElementType.FIELD, ElementType.CONSTRUCTOR, ElementType.PARAMETER})
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface MyAutowired {
@@ -0,0 +1,12 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// 舱壁隔离：同时处理中的请求数上限，超出时返回503；application.properties中的bulkhead.<url>优先
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyBulkhead {
+    // 最大并发数
+    int value();
+}
@@ -0,0 +1,12 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// 缓存响应，只用于结果只取决于@MyRequestParam参数的方法
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyCacheable {
+    // 过期时间（秒）
+    long ttl() default 60;
+}
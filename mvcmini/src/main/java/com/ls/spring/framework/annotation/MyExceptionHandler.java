@@ -0,0 +1,12 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// 控制器中处理异常的方法，对所有路由生效；为空时取方法中Throwable类型的形参
+// 方法可以接收异常、HttpServletRequest、HttpServletResponse，返回值按@MyResponseBody等规则写出
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyExceptionHandler {
+    Class<? extends Throwable>[] value() default {};
+}
@@ -0,0 +1,18 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// 拦截器组件，类需要实现MyHandlerInterceptor；路径模式与路由注册的url模板比较，/**匹配任意多段，*匹配一段
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyInterceptor {
+    // 拦截的路径
+    String[] value() default {"/**"};
+
+    // 排除的路径
+    String[] exclude() default {};
+
+    // 执行顺序，小的先执行preHandle
+    int order() default 0;
+}
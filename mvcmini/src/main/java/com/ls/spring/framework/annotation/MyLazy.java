@@ -0,0 +1,10 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// 延迟创建，第一次获取时才实例化；按接口注入时注入的是代理，调用时才创建
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyLazy {
+}
@@ -0,0 +1,11 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// 绑定url中{name}路径变量的值
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyPathVariable {
+    String value() default "";
+}
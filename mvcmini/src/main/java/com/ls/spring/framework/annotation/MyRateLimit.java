@@ -0,0 +1,15 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// 限流：每秒允许的请求数，超出时返回429；application.properties中的rate-limit.<url>优先
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyRateLimit {
+    // 每秒允许的请求数
+    double value();
+
+    // 允许瞬间突发的请求数，0表示与每秒请求数相同
+    int burst() default 0;
+}
@@ -0,0 +1,12 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// 请求体绑定到形参：JSON按形参类型流式解析，表单提交按字段名绑定
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyRequestBody {
+    // 为true时请求体不能为空
+    boolean required() default true;
+}
@@ -0,0 +1,6 @@
+package com.ls.spring.framework.annotation;
+
+// HTTP请求方法
+public enum MyRequestMethod {
+    GET, HEAD, POST, PUT, PATCH, DELETE, OPTIONS, TRACE
+}
@@ -0,0 +1,15 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// multipart/form-data请求中的一个部分绑定到形参，形参可以是MyPart、byte[]或String
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyRequestPart {
+    // 部分的name
+    String value();
+
+    // 为true时请求中必须有该部分
+    boolean required() default true;
+}
@@ -0,0 +1,10 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// 返回值序列化为JSON写出，可以标在控制器类或方法上
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyResponseBody {
+}
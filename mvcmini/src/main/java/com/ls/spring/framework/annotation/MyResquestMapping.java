@@ -7,4 +7,7 @@ import java.lang.annotation.*;
 @Documented
 public @interface MyResquestMapping {
     String value() default "";
+
+    // 限定的请求方法，为空时匹配所有方法；只在方法上生效
+    MyRequestMethod[] method() default {};
 }
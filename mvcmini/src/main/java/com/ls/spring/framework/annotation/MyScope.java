@@ -0,0 +1,17 @@
+package com.ls.spring.framework.annotation;
+
+import java.lang.annotation.*;
+
+// 组件作用域，控制器固定为单例
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MyScope {
+
+    // 单例（默认）、每次获取都新建、每个请求一个实例
+    String SINGLETON = "singleton";
+    String PROTOTYPE = "prototype";
+    String REQUEST = "request";
+
+    String value() default SINGLETON;
+}
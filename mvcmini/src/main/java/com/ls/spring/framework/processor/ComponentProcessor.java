@@ -0,0 +1,356 @@
+package com.ls.spring.framework.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// 编译期注解处理器：为每个含@MyController/@MyService/@MyInterceptor的包生成一个ComponentRegistry实现，
+// 用new创建组件、直接给字段赋值、直接调用控制器方法，并登记到META-INF/services中供init时查找
+// 生成的类与组件在同一个包中，可以访问包内可见的构造方法和字段；private的构造方法和字段在运行时退回反射
+@SupportedAnnotationTypes({ComponentProcessor.CONTROLLER, ComponentProcessor.SERVICE, ComponentProcessor.INTERCEPTOR})
+public class ComponentProcessor extends AbstractProcessor {
+
+    static final String CONTROLLER = "com.ls.spring.framework.annotation.MyController";
+    static final String SERVICE = "com.ls.spring.framework.annotation.MyService";
+    static final String INTERCEPTOR = "com.ls.spring.framework.annotation.MyInterceptor";
+    private static final String AUTOWIRED = "com.ls.spring.framework.annotation.MyAutowired";
+    private static final String REQUEST_MAPPING = "com.ls.spring.framework.annotation.MyResquestMapping";
+
+    private static final String REGISTRY = "com.ls.spring.framework.v2.ComponentRegistry";
+    private static final String CLASS_NAME = "GeneratedComponentRegistry";
+    private static final String SERVICE_FILE = "META-INF/services/" + REGISTRY;
+
+    // 本次编译生成的注册表类名
+    private final Set<String> generated = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+        // 按包分组，包内按类名排序，与扫描目录的顺序一致
+        Map<String, List<TypeElement>> packages = new TreeMap<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+                packages.computeIfAbsent(packageName, k -> new ArrayList<>()).add(type);
+            }
+        }
+        for (Map.Entry<String, List<TypeElement>> entry : packages.entrySet()) {
+            entry.getValue().sort(Comparator.comparing(t -> t.getQualifiedName().toString()));
+            writeRegistry(entry.getKey(), entry.getValue());
+        }
+        return false;
+    }
+
+    private void writeRegistry(String packageName, List<TypeElement> types) {
+        StringBuilder body = new StringBuilder();
+        for (TypeElement type : types) {
+            if (!component(type, body)) {
+                return;
+            }
+            if (annotation(type, CONTROLLER) != null) {
+                handlers(type, body);
+            }
+        }
+
+        String className = packageName.isEmpty() ? CLASS_NAME : packageName + "." + CLASS_NAME;
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("// 由").append(ComponentProcessor.class.getName()).append("生成，不要修改\n")
+                .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("public final class ").append(CLASS_NAME).append(" implements ").append(REGISTRY).append(" {\n\n")
+                .append("    @Override\n")
+                .append("    public String packageName() {\n")
+                .append("        return ").append(quote(packageName)).append(";\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public void register(").append(REGISTRY).append(".Registrar registrar) {\n")
+                .append(body)
+                .append("    }\n")
+                .append("}\n");
+        try (Writer writer = processingEnv.getFiler().createSourceFile(className, types.toArray(new Element[0])).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "生成" + className + "失败：" + e);
+            return;
+        }
+        generated.add(className);
+    }
+
+    // 登记组件：构造方法的选择规则与运行时一致，标了@MyAutowired的构造方法，否则唯一的构造方法，否则无参构造方法
+    private boolean component(TypeElement type, StringBuilder out) {
+        Messager messager = processingEnv.getMessager();
+        Set<Modifier> modifiers = type.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.ABSTRACT)
+                || (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC))) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "组件必须是可以直接创建的非private类", type);
+            return false;
+        }
+        ExecutableElement constructor = constructor(type);
+        if (constructor == null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "有多个构造方法时需要用@MyAutowired指定", type);
+            return false;
+        }
+        String typeName = typeName(type.asType());
+        List<? extends VariableElement> params = constructor.getParameters();
+
+        out.append("        registrar.component(").append(typeName).append(".class,\n");
+        out.append("                new Class<?>[]{");
+        for (int i = 0; i < params.size(); i++) {
+            out.append(i > 0 ? ", " : "").append(typeName(params.get(i).asType())).append(".class");
+        }
+        out.append("},\n                new String[]{");
+        for (int i = 0; i < params.size(); i++) {
+            out.append(i > 0 ? ", " : "").append(quote(beanName(params.get(i))));
+        }
+        out.append("},\n");
+
+        // 创建
+        if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+            messager.printMessage(Diagnostic.Kind.NOTE, "private构造方法在运行时通过反射调用", constructor);
+            out.append("                null,\n");
+        } else {
+            out.append("                args -> new ").append(typeName).append("(");
+            for (int i = 0; i < params.size(); i++) {
+                out.append(i > 0 ? ", " : "").append(cast(params.get(i).asType(), "args[" + i + "]"));
+            }
+            out.append("),\n");
+        }
+
+        // 字段注入，只处理本类声明的字段，与运行时一致
+        List<VariableElement> fields = new ArrayList<>();
+        boolean reflective = false;
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (annotation(field, AUTOWIRED) == null) {
+                continue;
+            }
+            if (field.getModifiers().contains(Modifier.PRIVATE) || field.getModifiers().contains(Modifier.FINAL)) {
+                messager.printMessage(Diagnostic.Kind.NOTE, "private或final字段在运行时通过反射注入", field);
+                reflective = true;
+            }
+            fields.add(field);
+        }
+        if (reflective) {
+            out.append("                null);\n");
+        } else if (fields.isEmpty()) {
+            out.append("                (instance, resolver) -> {\n                });\n");
+        } else {
+            out.append("                (instance, resolver) -> {\n");
+            out.append("                    ").append(typeName).append(" bean = (").append(typeName).append(") instance;\n");
+            for (VariableElement field : fields) {
+                TypeMirror fieldType = field.asType();
+                out.append("                    bean.").append(field.getSimpleName()).append(" = ")
+                        .append(cast(fieldType, "resolver.resolve(" + typeName(fieldType) + ".class, " + quote(beanName(field)) + ")"))
+                        .append(";\n");
+            }
+            out.append("                });\n");
+        }
+        return true;
+    }
+
+    // 登记控制器方法：与运行时的getMethods()一致，包括继承的public方法
+    private void handlers(TypeElement type, StringBuilder out) {
+        Elements elements = processingEnv.getElementUtils();
+        String typeName = typeName(type.asType());
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (annotation(method, REQUEST_MAPPING) == null
+                    || !modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+                continue;
+            }
+            List<? extends VariableElement> params = method.getParameters();
+            out.append("        registrar.handler(").append(typeName).append(".class, ")
+                    .append(quote(method.getSimpleName().toString())).append(",\n");
+            out.append("                new Class<?>[]{");
+            for (int i = 0; i < params.size(); i++) {
+                out.append(i > 0 ? ", " : "").append(typeName(params.get(i).asType())).append(".class");
+            }
+            out.append("},\n");
+            StringBuilder call = new StringBuilder();
+            call.append("((").append(typeName).append(") controller).").append(method.getSimpleName()).append("(");
+            for (int i = 0; i < params.size(); i++) {
+                call.append(i > 0 ? ", " : "").append(cast(params.get(i).asType(), "args[" + i + "]"));
+            }
+            call.append(")");
+            if (method.getReturnType().getKind() == TypeKind.VOID) {
+                out.append("                (controller, args) -> {\n")
+                        .append("                    ").append(call).append(";\n")
+                        .append("                    return null;\n")
+                        .append("                });\n");
+            } else {
+                out.append("                (controller, args) -> ").append(call).append(");\n");
+            }
+        }
+    }
+
+    private ExecutableElement constructor(TypeElement type) {
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        for (ExecutableElement c : constructors) {
+            if (annotation(c, AUTOWIRED) != null) {
+                return c;
+            }
+        }
+        if (constructors.size() == 1) {
+            return constructors.get(0);
+        }
+        for (ExecutableElement c : constructors) {
+            if (c.getParameters().isEmpty()) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    // 组件名：@MyAutowired中指定的，否则为类型简单名首字母小写，与运行时一致
+    private String beanName(Element element) {
+        AnnotationMirror autowired = annotation(element, AUTOWIRED);
+        if (autowired != null) {
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : autowired.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value") && !"".equals(entry.getValue().getValue())) {
+                    return (String) entry.getValue().getValue();
+                }
+            }
+        }
+        return toLowerFirstCase(simpleName(element.asType()));
+    }
+
+    // 与Class.getSimpleName()一致
+    private String simpleName(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased.getKind() == TypeKind.DECLARED) {
+            return ((DeclaredType) erased).asElement().getSimpleName().toString();
+        }
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return simpleName(((ArrayType) erased).getComponentType()) + "[]";
+        }
+        return erased.toString();
+    }
+
+    // 源码中的类型名，泛型取擦除后的类型
+    private String typeName(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    // 从Object转换为参数类型，基本类型先转换为包装类型再自动拆箱
+    private String cast(TypeMirror type, String expression) {
+        Types types = processingEnv.getTypeUtils();
+        String target = type.getKind().isPrimitive()
+                ? types.boxedClass((PrimitiveType) type).getQualifiedName().toString()
+                : typeName(type);
+        return "(" + target + ") " + expression;
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    // 合并之前编译生成的登记，避免只重新编译部分文件时丢失其他包
+    private void writeServiceFile() {
+        if (generated.isEmpty()) {
+            return;
+        }
+        Filer filer = processingEnv.getFiler();
+        Set<String> classNames = new TreeSet<>(generated);
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // 只保留仍然存在的类
+                    if (!line.trim().isEmpty() && processingEnv.getElementUtils().getTypeElement(line.trim()) != null) {
+                        classNames.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // 第一次编译时文件不存在
+        }
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = file.openWriter()) {
+                for (String className : classNames) {
+                    writer.write(className);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "写入" + SERVICE_FILE + "失败：" + e);
+        }
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    // 将首字母小写
+    private static String toLowerFirstCase(String className) {
+        char[] chars = className.toCharArray();
+        if (chars[0] >= 65 && chars[0] <= 90) {
+            chars[0] += 32;
+            return String.valueOf(chars);
+        } else {
+            return className;
+        }
+    }
+}
@@ -139,7 +139,8 @@ public class MyDispacherServlet extends HttpServlet {
     // 扫描类
     private void doScan(String sanPackage) {
         // 将包路径转换为系统路径，找到目录下的class文件，获取ClassName，并使用反射实例化扫描到的类
-        URL url = this.getClass().getClassLoader().getResource("/" + sanPackage.replaceAll("\\.", "/"));
+        // ClassLoader.getResource的路径不以/开头，只有部分容器的类加载器兼容开头的/
+        URL url = this.getClass().getClassLoader().getResource(sanPackage.replaceAll("\\.", "/"));
         File classpath = new File(url.getFile());
         // 循环classpath下的文件，如果是文件夹则继续递归打开子文件夹
         for (File file : classpath.listFiles()) {
@@ -0,0 +1,233 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.annotation.MyRequestBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// 内置批量接口，按配置的batch-path注册为POST的普通Handler，一次请求执行多个子请求
+// 请求体为JSON数组，每项为{"method":"GET","path":"/hello/add","params":{"a":1},"body":...}，method默认GET
+// 子请求在内存中构造，和普通请求一样经过路由、限流、拦截器和参数绑定；GET、HEAD、OPTIONS并行执行，
+// 其他方法可能有副作用，等前面的子请求全部完成后在当前线程执行，后面的子请求也在它之后才开始
+// 结果按请求顺序组成JSON数组，每项完成后即写出：{"status":200,"contentType":"...","body":...}
+public final class BatchEndpoint {
+
+    private static final String JSON = "application/json;charset=UTF-8";
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    // 标记子请求的请求属性；按路由后的handler判断嵌套，不受路径写法（如//_batch）影响
+    private static final String SUB_REQUEST = BatchEndpoint.class.getName() + ".SUB_REQUEST";
+    // 不传给子请求的头：请求体相关的头按子请求设置，子响应不压缩、不做条件请求
+    private static final String[] EXCLUDED_HEADERS = {"Content-Type", "Content-Length", "Transfer-Encoding", "Expect",
+            "Accept-Encoding", "If-None-Match"};
+
+    private final Dispatcher dispatcher;
+    private final ExecutorService executor;
+    private final int maxRequests;
+
+    // 子请求的分发入口，异常已在内部转换为错误响应
+    interface Dispatcher {
+        void dispatch(HttpServletRequest req, HttpServletResponse resp) throws Exception;
+    }
+
+    BatchEndpoint(Dispatcher dispatcher, ExecutorService executor, int maxRequests) {
+        this.dispatcher = dispatcher;
+        this.executor = executor;
+        this.maxRequests = maxRequests;
+    }
+
+    // 请求体为空、在子请求中再次批量返回400，子请求个数超出batch-max-requests返回413
+    public void batch(@MyRequestBody(required = false) List<Map<String, Object>> calls, HttpServletRequest req,
+                      HttpServletResponse resp) throws Exception {
+        if (calls == null || req.getAttribute(SUB_REQUEST) != null) {
+            ErrorResponses.write(resp, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (calls.size() > maxRequests) {
+            ErrorResponses.write(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        TreeMap<String, List<String>> headers = headersOf(req);
+        String remoteAddr = req.getRemoteAddr();
+        List<Future<EmbeddedResponse>> results = new ArrayList<>(calls.size());
+
+        resp.setContentType(JSON);
+        OutputStream os = resp.getOutputStream();
+        byte[] chunk = ReturnValueWriters.acquire();
+        try {
+            JsonOutput out = new JsonOutput(os, chunk);
+            out.writeByte('[');
+            int written = 0;
+            for (Map<String, Object> call : calls) {
+                EmbeddedRequest subRequest;
+                try {
+                    subRequest = subRequest(call, headers, remoteAddr);
+                } catch (MyBadRequestException e) {
+                    EmbeddedResponse error = new EmbeddedResponse();
+                    error.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                    results.add(CompletableFuture.completedFuture(error));
+                    continue;
+                }
+                if (isSafe(subRequest.getMethod())) {
+                    results.add(executor.submit(() -> execute(subRequest)));
+                    continue;
+                }
+                // 有副作用的子请求：先写出前面的结果，再在当前线程执行
+                while (written < results.size()) {
+                    writeResult(out, os, results.get(written), written++);
+                }
+                results.add(CompletableFuture.completedFuture(execute(subRequest)));
+            }
+            while (written < results.size()) {
+                writeResult(out, os, results.get(written), written++);
+            }
+            out.writeByte(']');
+            out.flush();
+        } finally {
+            ReturnValueWriters.release(chunk);
+            // 出错提前结束时，不再执行还没开始的子请求
+            for (Future<EmbeddedResponse> result : results) {
+                result.cancel(false);
+            }
+        }
+    }
+
+    private EmbeddedResponse execute(EmbeddedRequest subRequest) throws Exception {
+        EmbeddedResponse subResponse = new EmbeddedResponse();
+        dispatcher.dispatch(subRequest, subResponse);
+        return subResponse;
+    }
+
+    // 等待一个结果并写出，写出后立即刷到客户端
+    private void writeResult(JsonOutput out, OutputStream os, Future<EmbeddedResponse> result, int index) throws Exception {
+        EmbeddedResponse subResponse;
+        try {
+            subResponse = result.get();
+        } catch (ExecutionException e) {
+            subResponse = new EmbeddedResponse();
+            ErrorResponses.log(e.getCause());
+            ErrorResponses.write(subResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        if (index > 0) {
+            out.writeByte(',');
+        }
+        out.writeAscii("{\"status\":");
+        out.writeLong(subResponse.getStatus());
+        String contentType = subResponse.getContentType();
+        if (contentType != null) {
+            out.writeAscii(",\"contentType\":");
+            out.writeString(contentType);
+        }
+        out.writeAscii(",\"body\":");
+        if (subResponse.bodySize() == 0) {
+            out.writeBytes(NULL);
+        } else if (contentType != null && contentType.contains("json")) {
+            // JSON响应直接嵌入，不再解析
+            out.flush();
+            subResponse.writeBodyTo(os);
+        } else {
+            out.writeString(subResponse.bodyAsString());
+        }
+        out.writeByte('}');
+        out.flush();
+        os.flush();
+    }
+
+    // 由一项构造子请求，格式不对时抛出MyBadRequestException，只影响该项的结果
+    private EmbeddedRequest subRequest(Map<String, Object> call, TreeMap<String, List<String>> headers, String remoteAddr)
+            throws IOException {
+        if (call == null) {
+            throw new MyBadRequestException("子请求不能为null！");
+        }
+        Object method = call.get("method");
+        Object target = call.get("path");
+        if (!(target instanceof String) || !((String) target).startsWith("/")) {
+            throw new MyBadRequestException("子请求缺少path！");
+        }
+        StringBuilder sb = new StringBuilder((String) target);
+        Object params = call.get("params");
+        if (params instanceof Map) {
+            char separator = sb.indexOf("?") < 0 ? '?' : '&';
+            for (Map.Entry<?, ?> param : ((Map<?, ?>) params).entrySet()) {
+                Object value = param.getValue();
+                Collection<?> values = value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+                for (Object v : values) {
+                    sb.append(separator).append(encode(String.valueOf(param.getKey())));
+                    if (v != null) {
+                        sb.append('=').append(encode(String.valueOf(v)));
+                    }
+                    separator = '&';
+                }
+            }
+        }
+        byte[] body = new byte[0];
+        TreeMap<String, List<String>> subHeaders = headers;
+        if (call.containsKey("body")) {
+            body = toJson(call.get("body"));
+            subHeaders = new TreeMap<>(headers);
+            subHeaders.put("Content-Type", Collections.singletonList(JSON));
+        }
+        String subMethod = method == null ? "GET" : String.valueOf(method).toUpperCase();
+        EmbeddedRequest subRequest = new EmbeddedRequest(subMethod, sb.toString(), "HTTP/1.1", subHeaders, body, remoteAddr);
+        subRequest.setAttribute(SUB_REQUEST, Boolean.TRUE);
+        return subRequest;
+    }
+
+    private static boolean isSafe(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    // 外层请求的头（认证信息等）传给每个子请求
+    private static TreeMap<String, List<String>> headersOf(HttpServletRequest req) {
+        TreeMap<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Enumeration<String> names = req.getHeaderNames();
+        if (names == null) {
+            return headers;
+        }
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            headers.put(name, Collections.list(req.getHeaders(name)));
+        }
+        for (String name : EXCLUDED_HEADERS) {
+            headers.remove(name);
+        }
+        return headers;
+    }
+
+    private static byte[] toJson(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        byte[] chunk = ReturnValueWriters.acquire();
+        try {
+            JsonOutput out = new JsonOutput(bytes, chunk);
+            JsonSerializers.forType(Object.class).write(value, out);
+            out.flush();
+        } finally {
+            ReturnValueWriters.release(chunk);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String encode(String s) {
+        try {
+            return URLEncoder.encode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
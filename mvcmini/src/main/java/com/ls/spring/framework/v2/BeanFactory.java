@@ -0,0 +1,415 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.annotation.MyAutowired;
+import com.ls.spring.framework.annotation.MyController;
+import com.ls.spring.framework.annotation.MyInterceptor;
+import com.ls.spring.framework.annotation.MyLazy;
+import com.ls.spring.framework.annotation.MyScope;
+import com.ls.spring.framework.annotation.MyService;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+// IOC容器：按构造方法的依赖关系分层，从不依赖其他组件的一层开始创建，同一层互不依赖的单例并行创建；
+// 所有单例创建后再做字段注入。延迟单例在第一次获取时创建，原型每次获取都新建，请求作用域的组件每个请求一个实例
+final class BeanFactory {
+
+    // 依赖层次计算中的标记
+    private static final int VISITING = -2;
+
+    // 每个线程正在创建的组件，用于发现字段注入之间的循环依赖
+    private static final ThreadLocal<Set<Definition>> CREATING = ThreadLocal.withInitial(HashSet::new);
+    // 当前线程所处请求的组件表
+    private static final ThreadLocal<RequestScope> REQUEST_SCOPE = new ThreadLocal<>();
+
+    // 组件名及其接口名到组件定义
+    private final Map<String, Definition> definitions = new HashMap<>();
+    // 按扫描顺序保存的组件定义，每个组件一个
+    private final List<Definition> ordered = new ArrayList<>();
+    private boolean hasRequestScope;
+    // 传给生成的字段注入代码
+    private final ComponentRegistry.Resolver resolver = this::resolve;
+    // 延迟单例共用的创建锁：延迟单例在请求中创建，各自加锁时两个线程分别创建互相依赖的组件会死锁
+    private final Object lazyLock = new Object();
+
+    // 注册组件定义，只解析构造方法，不创建实例；generated不为null时使用编译期生成的创建和注入代码
+    BeanFactory(List<Class<?>> classes, GeneratedComponents generated) {
+        for (Class<?> clazz : classes) {
+            GeneratedComponents.Component component = generated == null ? null : generated.component(clazz);
+            if (clazz.isAnnotationPresent(MyController.class)) {
+                // 控制器在init时注册路由，固定为非延迟的单例
+                register(new Definition(clazz, toLowerFirstCase(clazz.getSimpleName()), MyScope.SINGLETON, false, component));
+            } else if (clazz.isAnnotationPresent(MyInterceptor.class)) {
+                // 拦截器在init时确定每个路由的拦截器链，也固定为非延迟的单例；不登记接口名，多个拦截器实现同一个接口
+                register(new Definition(clazz, toLowerFirstCase(clazz.getSimpleName()), MyScope.SINGLETON, false, component));
+            } else if (clazz.isAnnotationPresent(MyService.class)) {
+                // 先判断注解中是否有value
+                String beanName = clazz.getAnnotation(MyService.class).value();
+                if ("".equals(beanName)) {
+                    beanName = toLowerFirstCase(clazz.getSimpleName());
+                }
+                MyScope scope = clazz.getAnnotation(MyScope.class);
+                Definition def = new Definition(clazz, beanName, scope == null ? MyScope.SINGLETON : scope.value(),
+                        clazz.isAnnotationPresent(MyLazy.class), component);
+                register(def);
+                // 接口注入，本类的所有接口都指向本类
+                for (Class<?> i : clazz.getInterfaces()) {
+                    String name = toLowerFirstCase(i.getSimpleName());
+                    if (definitions.containsKey(name)) {
+                        throw new RuntimeException("当前接口已初始化实例！");
+                    }
+                    definitions.put(name, def);
+                }
+            }
+        }
+    }
+
+    private void register(Definition def) {
+        definitions.put(def.name, def);
+        ordered.add(def);
+        hasRequestScope |= MyScope.REQUEST.equals(def.scope);
+    }
+
+    // 创建所有非延迟的单例，同一层在pool中并行创建，然后做字段注入
+    void instantiate(ForkJoinPool pool) throws Exception {
+        List<List<Definition>> levels = new ArrayList<>();
+        for (Definition def : ordered) {
+            int level = level(def);
+            if (def.eager()) {
+                while (levels.size() <= level) {
+                    levels.add(new ArrayList<>());
+                }
+                levels.get(level).add(def);
+            }
+        }
+        for (List<Definition> level : levels) {
+            if (level.size() == 1) {
+                singleton(level.get(0));
+                continue;
+            }
+            try {
+                pool.submit(() -> level.parallelStream().forEach(this::singleton)).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        // 字段之间可以互相引用，所以在所有单例都创建后再注入
+        for (Definition def : ordered) {
+            if (def.eager()) {
+                inject(def, def.instance);
+            }
+        }
+    }
+
+    // 按名字获取组件，不存在时返回null
+    Object getBean(String name) {
+        Definition def = definitions.get(name);
+        return def == null ? null : get(def);
+    }
+
+    // 所有控制器实例，按扫描顺序
+    List<Object> controllers() {
+        List<Object> controllers = new ArrayList<>();
+        for (Definition def : ordered) {
+            if (def.type.isAnnotationPresent(MyController.class)) {
+                controllers.add(def.instance);
+            }
+        }
+        return controllers;
+    }
+
+    // 所有拦截器实例，按扫描顺序
+    List<Object> interceptors() {
+        List<Object> interceptors = new ArrayList<>();
+        for (Definition def : ordered) {
+            if (def.type.isAnnotationPresent(MyInterceptor.class)) {
+                interceptors.add(def.instance);
+            }
+        }
+        return interceptors;
+    }
+
+    // 没有请求作用域的组件时，分发请求不需要开启组件表
+    boolean hasRequestScope() {
+        return hasRequestScope;
+    }
+
+    // 当前线程进入请求作用域，返回之前的作用域，退出时传给exit
+    static RequestScope enter(RequestScope scope) {
+        RequestScope previous = REQUEST_SCOPE.get();
+        REQUEST_SCOPE.set(scope);
+        return previous;
+    }
+
+    static void exit(RequestScope previous) {
+        if (previous == null) {
+            REQUEST_SCOPE.remove();
+        } else {
+            REQUEST_SCOPE.set(previous);
+        }
+    }
+
+    // 依赖层次：构造方法不依赖其他组件的为0，否则为所依赖组件的最大层次加1；注入代理的依赖不需要先创建
+    private int level(Definition def) {
+        if (def.level >= 0) {
+            return def.level;
+        }
+        if (def.level == VISITING) {
+            throw new IllegalStateException("构造方法循环依赖：" + def.name);
+        }
+        def.level = VISITING;
+        int level = 0;
+        for (int i = 0; i < def.paramNames.length; i++) {
+            Definition dependency = definitions.get(def.paramNames[i]);
+            if (dependency != null && !proxied(dependency, def.paramTypes[i])) {
+                level = Math.max(level, level(dependency) + 1);
+            }
+        }
+        def.level = level;
+        return level;
+    }
+
+    private Object get(Definition def) {
+        switch (def.scope) {
+            case MyScope.PROTOTYPE:
+                return create(def);
+            case MyScope.REQUEST:
+                RequestScope scope = REQUEST_SCOPE.get();
+                if (scope == null) {
+                    throw new IllegalStateException("当前线程不在请求中，无法获取组件：" + def.name);
+                }
+                return scope.get(def, this);
+            default:
+                return singleton(def);
+        }
+    }
+
+    // 单例的持有者：实例创建完成后才通过volatile字段发布，并发的第一次获取只有一个线程创建
+    // 非延迟的单例在这里只调用构造方法，字段在instantiate最后统一注入；init时按依赖层次创建，各自加锁不会互相等待
+    private Object singleton(Definition def) {
+        Object instance = def.instance;
+        if (instance == null) {
+            synchronized (def.lazy ? lazyLock : def) {
+                instance = def.instance;
+                if (instance == null) {
+                    instance = def.lazy ? create(def) : construct(def);
+                    def.instance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    // 创建并注入字段，用于延迟单例、原型和请求作用域的组件
+    private Object create(Definition def) {
+        Set<Definition> creating = CREATING.get();
+        if (!creating.add(def)) {
+            throw new IllegalStateException("循环依赖：" + def.name);
+        }
+        try {
+            Object instance = construct(def);
+            inject(def, instance);
+            return instance;
+        } finally {
+            creating.remove(def);
+        }
+    }
+
+    private Object construct(Definition def) {
+        Object[] args = new Object[def.paramTypes.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = resolve(def.paramTypes[i], def.paramNames[i]);
+            if (args[i] == null) {
+                throw new IllegalStateException("找不到组件" + def.paramNames[i] + "，无法创建：" + def.name);
+            }
+        }
+        try {
+            if (def.instantiator != null) {
+                return def.instantiator.create(args);
+            }
+            return def.constructor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("创建组件失败：" + def.name, e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("创建组件失败：" + def.name, e);
+        }
+    }
+
+    private void inject(Definition def, Object instance) {
+        if (def.injector == null) {
+            injectFields(instance);
+            return;
+        }
+        try {
+            def.injector.inject(instance, resolver);
+        } catch (Exception e) {
+            throw new IllegalStateException("注入组件失败：" + def.name, e);
+        }
+    }
+
+    // 得到实例的字段，检查是否有MyAutowire注解，如果有则注入
+    private void injectFields(Object instance) {
+        for (Field field : instance.getClass().getDeclaredFields()) {
+            if (!field.isAnnotationPresent(MyAutowired.class)) {
+                continue;
+            }
+            String beanName = field.getAnnotation(MyAutowired.class).value();
+            if ("".equals(beanName)) {
+                beanName = toLowerFirstCase(field.getType().getSimpleName());
+            }
+            Object value = resolve(field.getType(), beanName);
+
+            field.setAccessible(true);
+
+            try {
+                field.set(instance, value);
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // 要注入的对象：延迟和请求作用域的组件按接口注入时注入代理，每次调用时再获取实例；不存在时返回null
+    private Object resolve(Class<?> type, String name) {
+        Definition def = definitions.get(name);
+        if (def == null) {
+            return null;
+        }
+        if (proxied(def, type)) {
+            return proxy(type, def);
+        }
+        if (MyScope.REQUEST.equals(def.scope)) {
+            throw new IllegalStateException("请求作用域的组件只能按接口注入：" + def.name);
+        }
+        return get(def);
+    }
+
+    private static boolean proxied(Definition def, Class<?> type) {
+        return type.isInterface() && (def.lazy || MyScope.REQUEST.equals(def.scope));
+    }
+
+    private Object proxy(Class<?> type, Definition def) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            try {
+                return method.invoke(get(def), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    // 将首字母小写
+    private static String toLowerFirstCase(String className) {
+        char[] chars = className.toCharArray();
+        if (chars[0] >= 65 && chars[0] <= 90) {
+            chars[0] += 32;
+            return String.valueOf(chars);
+        } else {
+            return className;
+        }
+    }
+
+    // 一个请求的组件表，请求交给执行器时随之传递
+    static final class RequestScope {
+        private final Map<Definition, Object> beans = new HashMap<>();
+
+        private synchronized Object get(Definition def, BeanFactory factory) {
+            Object instance = beans.get(def);
+            if (instance == null) {
+                instance = factory.create(def);
+                beans.put(def, instance);
+            }
+            return instance;
+        }
+    }
+
+    // 组件定义，构造方法及其参数对应的组件名在注册时解析，有生成的代码时直接使用
+    private static final class Definition {
+        private final Class<?> type;
+        private final String name;
+        private final String scope;
+        private final boolean lazy;
+        // 生成的创建代码，为null时通过constructor反射创建
+        private final ComponentRegistry.Instantiator instantiator;
+        private final Constructor<?> constructor;
+        // 生成的注入代码，为null时反射注入
+        private final ComponentRegistry.Injector injector;
+        private final Class<?>[] paramTypes;
+        private final String[] paramNames;
+        // 单例实例，创建完成后才赋值
+        private volatile Object instance;
+        // 依赖层次，-1表示未计算
+        private int level = -1;
+
+        Definition(Class<?> type, String name, String scope, boolean lazy, GeneratedComponents.Component generated) {
+            if (!MyScope.SINGLETON.equals(scope) && !MyScope.PROTOTYPE.equals(scope) && !MyScope.REQUEST.equals(scope)) {
+                throw new IllegalArgumentException("未知的作用域" + scope + "：" + type.getName());
+            }
+            this.type = type;
+            this.name = name;
+            this.scope = scope;
+            this.lazy = lazy && MyScope.SINGLETON.equals(scope);
+            if (generated != null) {
+                this.instantiator = generated.instantiator;
+                this.constructor = instantiator == null ? accessible(constructor(type)) : null;
+                this.injector = generated.injector;
+                this.paramTypes = generated.paramTypes;
+                this.paramNames = generated.paramNames;
+                return;
+            }
+            this.instantiator = null;
+            this.injector = null;
+            this.constructor = accessible(constructor(type));
+            this.paramTypes = constructor.getParameterTypes();
+            this.paramNames = new String[paramTypes.length];
+            Annotation[][] annotations = constructor.getParameterAnnotations();
+            for (int i = 0; i < paramTypes.length; i++) {
+                paramNames[i] = toLowerFirstCase(paramTypes[i].getSimpleName());
+                for (Annotation annotation : annotations[i]) {
+                    if (annotation instanceof MyAutowired && !"".equals(((MyAutowired) annotation).value())) {
+                        paramNames[i] = ((MyAutowired) annotation).value();
+                    }
+                }
+            }
+        }
+
+        private static Constructor<?> accessible(Constructor<?> constructor) {
+            constructor.setAccessible(true);
+            return constructor;
+        }
+
+        // 在init时创建的单例
+        private boolean eager() {
+            return !lazy && MyScope.SINGLETON.equals(scope);
+        }
+
+        // 标了@MyAutowired的构造方法，否则唯一的构造方法，否则无参构造方法
+        private static Constructor<?> constructor(Class<?> type) {
+            Constructor<?>[] constructors = type.getDeclaredConstructors();
+            for (Constructor<?> c : constructors) {
+                if (c.isAnnotationPresent(MyAutowired.class)) {
+                    return c;
+                }
+            }
+            if (constructors.length == 1) {
+                return constructors[0];
+            }
+            try {
+                return type.getDeclaredConstructor();
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("有多个构造方法时需要用@MyAutowired指定：" + type.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// 把响应内容写到内存中，用于生成缓存以及压缩、生成ETag；头信息仍然直接设置到原响应上
+// 长度在最终写出时按实际内容设置，写出前不会提交原响应
+// 内容超过maxBytes或调用passThrough()后不再缓存：已缓存的内容和之后的内容直接写到原响应
+final class CapturingResponse extends HttpServletResponseWrapper {
+
+    private final Body body = new Body();
+    private final int maxBytes;
+    // 不再缓存后为原响应的输出流
+    private ServletOutputStream direct;
+    // 经过本对象设置的长度，不再缓存时设置到原响应上；没有设置时为-1
+    private long contentLength = -1;
+    // 写入的内容先经过这里，超过maxBytes时转为直接写出
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            if (direct == null && body.size() >= maxBytes) {
+                switchToDirect();
+            }
+            if (direct != null) {
+                direct.write(b);
+            } else {
+                body.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (direct == null && len > maxBytes - body.size()) {
+                switchToDirect();
+            }
+            if (direct != null) {
+                direct.write(b, off, len);
+            } else {
+                body.write(b, off, len);
+            }
+        }
+    };
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+    // 经过本对象设置的状态码和头，用于缓存后重放；头在第一次设置时创建
+    private int status = SC_OK;
+    private Map<String, List<String>> headers;
+    // 调用过sendError或sendRedirect，响应已由原响应写出，内存中的内容不再写出
+    private boolean sent;
+
+    CapturingResponse(HttpServletResponse response) {
+        this(response, Integer.MAX_VALUE);
+    }
+
+    CapturingResponse(HttpServletResponse response, int maxBytes) {
+        super(response);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("已经调用过getWriter()！");
+        }
+        if (direct != null && outputStream == null) {
+            // 写出前已不再缓存，直接使用原响应的输出流，容器的输出流可以用transferTo写出文件
+            return direct;
+        }
+        if (outputStream == null) {
+            outputStream = new ServletOutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    sink.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    sink.write(b, off, len);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (outputStream != null) {
+            throw new IllegalStateException("已经调用过getOutputStream()！");
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(sink, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        status = sc;
+        super.setStatus(sc);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        status = sc;
+        sent = true;
+        resetBuffer();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        status = sc;
+        sent = true;
+        resetBuffer();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        status = SC_FOUND;
+        sent = true;
+        resetBuffer();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (value == null) {
+            if (headers != null) {
+                headers.remove(name);
+            }
+        } else {
+            List<String> values = new ArrayList<>(1);
+            values.add(value);
+            headerMap().put(name, values);
+        }
+        super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        headerMap().computeIfAbsent(name, k -> new ArrayList<>(1)).add(value);
+        super.addHeader(name, value);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, Integer.toString(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, Integer.toString(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, HttpConnection.formatDate(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, HttpConnection.formatDate(date));
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        contentLength = len;
+        if (direct != null) {
+            super.setContentLengthLong(len);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        flushWriter();
+        if (direct != null) {
+            super.flushBuffer();
+        }
+    }
+
+    // 缓存时只清空内存中的内容，原响应还没有写出任何内容
+    @Override
+    public void resetBuffer() {
+        flushWriter();
+        body.reset();
+        if (direct != null) {
+            super.resetBuffer();
+        }
+    }
+
+    // 不再缓存，用于流式返回值：已缓存的内容和之后的内容直接写到原响应，ResponseEncoder不再编码
+    void passThrough() throws IOException {
+        flushWriter();
+        if (direct == null) {
+            switchToDirect();
+        }
+    }
+
+    // 已不再缓存，内容已写到原响应
+    boolean passedThrough() {
+        return direct != null;
+    }
+
+    private void switchToDirect() throws IOException {
+        if (contentLength >= 0) {
+            super.setContentLengthLong(contentLength);
+        }
+        direct = super.getOutputStream();
+        direct.write(body.buffer(), 0, body.size());
+        body.reset();
+    }
+
+    // 写出的全部内容
+    byte[] toByteArray() {
+        flushWriter();
+        return body.toByteArray();
+    }
+
+    // 内部数组，有效内容为[0, size())，不复制
+    byte[] buffer() {
+        flushWriter();
+        return body.buffer();
+    }
+
+    int size() {
+        flushWriter();
+        return body.size();
+    }
+
+    // 把PrintWriter中还没有编码的字符写入，不提交原响应
+    void flushWriter() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    // 经过本对象设置的状态码，没有设置时为200
+    int status() {
+        return status;
+    }
+
+    // 调用过sendError或sendRedirect
+    boolean sent() {
+        return sent;
+    }
+
+    // 经过本对象设置的头，没有时为null
+    Map<String, List<String>> headers() {
+        return headers;
+    }
+
+    private Map<String, List<String>> headerMap() {
+        if (headers == null) {
+            headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        }
+        return headers;
+    }
+
+    private static final class Body extends ByteArrayOutputStream {
+        Body() {
+            super(256);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.ls.spring.framework.v2;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Set;
+
+// 只读取class文件头（常量池及类上的RuntimeVisibleAnnotations），判断是否是组件，不加载类、不执行静态代码块
+final class ComponentClassReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private ComponentClassReader() {
+    }
+
+    // 类上有annotationDescriptors中的任一注解时返回类名，否则返回null
+    static String componentName(byte[] classFile, Set<String> annotationDescriptors) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(classFile));
+        if (in.readInt() != MAGIC) {
+            return null;
+        }
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        // 常量池，只保留utf8和class常量
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int[] classNameIndex = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7:
+                    classNameIndex[i] = in.readUnsignedShort();
+                    break;
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    in.skipBytes(2);
+                    break;
+                case 15:
+                    in.skipBytes(3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    in.skipBytes(4);
+                    break;
+                case 5:
+                case 6:
+                    // long和double占两个常量池位置
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("无法识别的常量池类型：" + tag);
+            }
+        }
+
+        in.readUnsignedShort();
+        int thisClass = in.readUnsignedShort();
+        in.readUnsignedShort();
+        in.skipBytes(in.readUnsignedShort() * 2);
+
+        // 跳过字段和方法
+        skipMembers(in);
+        skipMembers(in);
+
+        // 类属性
+        int attributes = in.readUnsignedShort();
+        for (int i = 0; i < attributes; i++) {
+            String name = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if (!"RuntimeVisibleAnnotations".equals(name)) {
+                in.skipBytes(length);
+                continue;
+            }
+            int annotations = in.readUnsignedShort();
+            for (int j = 0; j < annotations; j++) {
+                String type = utf8[in.readUnsignedShort()];
+                if (annotationDescriptors.contains(type)) {
+                    return utf8[classNameIndex[thisClass]].replace('/', '.');
+                }
+                skipElementValuePairs(in);
+            }
+            return null;
+        }
+        return null;
+    }
+
+    private static void skipMembers(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            in.skipBytes(6);
+            int attributes = in.readUnsignedShort();
+            for (int j = 0; j < attributes; j++) {
+                in.skipBytes(2);
+                in.skipBytes(in.readInt());
+            }
+        }
+    }
+
+    private static void skipElementValuePairs(DataInputStream in) throws IOException {
+        int pairs = in.readUnsignedShort();
+        for (int i = 0; i < pairs; i++) {
+            in.skipBytes(2);
+            skipElementValue(in);
+        }
+    }
+
+    private static void skipElementValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'e':
+                in.skipBytes(4);
+                break;
+            case '@':
+                in.skipBytes(2);
+                skipElementValuePairs(in);
+                break;
+            case '[':
+                int values = in.readUnsignedShort();
+                for (int i = 0; i < values; i++) {
+                    skipElementValue(in);
+                }
+                break;
+            default:
+                // 基本类型、字符串和class常量都是一个常量池下标
+                in.skipBytes(2);
+                break;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.ls.spring.framework.v2;
+
+// 编译期生成的组件注册表，由ComponentProcessor为每个含组件的包生成一个，通过ServiceLoader查找
+// init时优先使用：不再扫描类路径，组件直接new创建、字段直接赋值，控制器方法直接调用
+public interface ComponentRegistry {
+
+    // 生成类所在的包，按package-scan过滤
+    String packageName();
+
+    // 登记本包的组件和控制器方法
+    void register(Registrar registrar);
+
+    // 生成的代码通过它登记
+    interface Registrar {
+        // 登记组件：构造方法参数的类型和组件名在编译期解析；无法直接访问时instantiator或injector为null，退回反射
+        void component(Class<?> type, Class<?>[] paramTypes, String[] paramNames, Instantiator instantiator, Injector injector);
+
+        // 登记控制器方法
+        void handler(Class<?> controllerType, String methodName, Class<?>[] paramTypes, Invoker invoker);
+    }
+
+    // 用解析好的构造方法参数创建实例
+    interface Instantiator {
+        Object create(Object[] args) throws Exception;
+    }
+
+    // 注入标了@MyAutowired的字段
+    interface Injector {
+        void inject(Object instance, Resolver resolver) throws Exception;
+    }
+
+    // 按类型和组件名取得要注入的对象
+    interface Resolver {
+        Object resolve(Class<?> type, String name);
+    }
+
+    // 调用控制器方法
+    interface Invoker {
+        Object invoke(Object controller, Object[] args) throws Exception;
+    }
+}
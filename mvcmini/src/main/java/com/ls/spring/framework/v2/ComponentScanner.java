@@ -0,0 +1,258 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.annotation.MyController;
+import com.ls.spring.framework.annotation.MyInterceptor;
+import com.ls.spring.framework.annotation.MyService;
+
+import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+// 组件扫描器：支持目录和jar包，只解析class文件头判断注解，不加载类
+// 包所在的classpath根（目录或jar包）下有覆盖该包的索引文件时，读取索引中的组件类名，跳过这个根的扫描；
+// 其他根照常扫描，结果合并
+public final class ComponentScanner {
+
+    // 构建期生成的组件索引文件，每行一个类名，#开头为注释；@package行为生成时扫描的包，索引只对该包及其子包有效
+    public static final String INDEX_LOCATION = "META-INF/mymvc.components";
+    private static final String PACKAGE_DIRECTIVE = "@package ";
+
+    private static final Set<String> COMPONENT_DESCRIPTORS = new HashSet<>(Arrays.asList(
+            descriptor(MyController.class), descriptor(MyService.class), descriptor(MyInterceptor.class)));
+
+    private final ClassLoader classLoader;
+    private final ForkJoinPool pool;
+
+    public ComponentScanner(ClassLoader classLoader, ForkJoinPool pool) {
+        this.classLoader = classLoader;
+        this.pool = pool;
+    }
+
+    // 返回包下所有打了组件注解的类名，结果按类名排序，保证初始化顺序稳定
+    public List<String> scan(String scanPackage) throws IOException {
+        return scan(scanPackage, Collections.<String>emptySet());
+    }
+
+    // 同scan(String)，跳过skippedRoots中的classpath根，用于已有编译期生成的注册表的根
+    public List<String> scan(String scanPackage, Set<String> skippedRoots) throws IOException {
+        String path = scanPackage.replace('.', '/');
+        Map<String, URL> indexes = indexes();
+        SortedSet<String> classNames = new TreeSet<>();
+        List<ClassResource> resources = new ArrayList<>();
+        Enumeration<URL> urls = classLoader.getResources(path);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            String root = root(url, path);
+            if (skippedRoots.contains(root)) {
+                continue;
+            }
+            URL index = indexes.get(root);
+            if (index != null && readIndex(index, scanPackage, classNames)) {
+                continue;
+            }
+            if ("jar".equals(url.getProtocol())) {
+                collectJar(url, path, resources);
+            } else if ("file".equals(url.getProtocol())) {
+                collectDirectory(new File(URLDecoder.decode(url.getFile(), "UTF-8")), resources);
+            }
+        }
+        if (!resources.isEmpty()) {
+            classNames.addAll(parse(resources));
+        }
+        return new ArrayList<>(classNames);
+    }
+
+    // classpath上的索引文件，按所在的根索引
+    private Map<String, URL> indexes() throws IOException {
+        Map<String, URL> indexes = new HashMap<>();
+        Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            indexes.putIfAbsent(root(url, INDEX_LOCATION), url);
+        }
+        return indexes;
+    }
+
+    // 资源URL去掉资源路径后的部分，目录为file:/.../classes/，jar包为jar:file:/...jar!/
+    static String root(URL url, String path) {
+        String s = url.toString();
+        if (s.endsWith("/")) {
+            s = s.substring(0, s.length() - 1);
+        }
+        return s.endsWith(path) ? s.substring(0, s.length() - path.length()) : s;
+    }
+
+    // 读取索引文件中扫描包下的类；索引生成时的包不覆盖扫描包（或没有@package行）时返回false，由调用方扫描
+    private boolean readIndex(URL index, String scanPackage, Set<String> classNames) throws IOException {
+        String prefix = scanPackage + ".";
+        String indexedPackage = null;
+        List<String> found = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith(PACKAGE_DIRECTIVE)) {
+                    indexedPackage = line.substring(PACKAGE_DIRECTIVE.length()).trim();
+                } else if (!line.isEmpty() && !line.startsWith("#") && line.startsWith(prefix)) {
+                    found.add(line);
+                }
+            }
+        }
+        if (indexedPackage == null
+                || !(scanPackage.equals(indexedPackage) || scanPackage.startsWith(indexedPackage + "."))) {
+            return false;
+        }
+        classNames.addAll(found);
+        return true;
+    }
+
+    // 递归收集目录下的class文件
+    private void collectDirectory(File dir, List<ClassResource> resources) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectDirectory(file, resources);
+            } else if (file.getName().endsWith(".class")) {
+                resources.add(new FileResource(file));
+            }
+        }
+    }
+
+    // 收集jar包中包路径下的class条目；同一个JarFile的读取本来就是串行的，在这里读出内容后关闭jar包，之后并行解析
+    private void collectJar(URL url, String path, List<ClassResource> resources) throws IOException {
+        JarURLConnection connection = (JarURLConnection) url.openConnection();
+        connection.setUseCaches(false);
+        try (JarFile jar = connection.getJarFile()) {
+            String prefix = path + "/";
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().startsWith(prefix) && entry.getName().endsWith(".class")) {
+                    resources.add(new JarResource(jar.getName() + "!/" + entry.getName(), read(jar, entry)));
+                }
+            }
+        }
+    }
+
+    private static byte[] read(JarFile jar, JarEntry entry) throws IOException {
+        try (InputStream in = jar.getInputStream(entry)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max((int) entry.getSize(), 1024));
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // 在ForkJoinPool中并行读取、解析class文件头
+    private List<String> parse(List<ClassResource> resources) throws IOException {
+        try {
+            return pool.submit(() -> resources.parallelStream()
+                    .map(ComponentScanner::componentName)
+                    .filter(Objects::nonNull)
+                    .sorted()
+                    .collect(Collectors.toList())).get();
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException("扫描组件失败！", cause);
+        }
+    }
+
+    private static String componentName(ClassResource resource) {
+        try {
+            return ComponentClassReader.componentName(resource.read(), COMPONENT_DESCRIPTORS);
+        } catch (IOException e) {
+            throw new UncheckedIOException("解析class文件失败：" + resource, e);
+        }
+    }
+
+    private static String descriptor(Class<?> clazz) {
+        return "L" + clazz.getName().replace('.', '/') + ";";
+    }
+
+    // 生成索引文件：扫描class输出目录，将组件类名写入 <classesDir>/META-INF/mymvc.components
+    // 用法：java com.ls.spring.framework.v2.ComponentScanner <classesDir> <scanPackage>
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("用法：ComponentScanner <classesDir> <scanPackage>");
+            return;
+        }
+        File classesDir = new File(args[0]);
+        File dir = new File(classesDir, args[1].replace('.', File.separatorChar));
+        ComponentScanner scanner = new ComponentScanner(ComponentScanner.class.getClassLoader(), ForkJoinPool.commonPool());
+        List<ClassResource> resources = new ArrayList<>();
+        scanner.collectDirectory(dir, resources);
+        List<String> classNames = scanner.parse(resources);
+
+        File index = new File(classesDir, INDEX_LOCATION);
+        index.getParentFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(index), StandardCharsets.UTF_8)) {
+            writer.write("# 由ComponentScanner生成，请勿手动修改\n");
+            writer.write(PACKAGE_DIRECTIVE + args[1] + "\n");
+            for (String className : classNames) {
+                writer.write(className);
+                writer.write('\n');
+            }
+        }
+        System.out.println("生成组件索引：" + index + "，共" + classNames.size() + "个组件");
+    }
+
+    private interface ClassResource {
+        byte[] read() throws IOException;
+    }
+
+    private static final class FileResource implements ClassResource {
+        private final File file;
+
+        FileResource(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public byte[] read() throws IOException {
+            return Files.readAllBytes(file.toPath());
+        }
+
+        @Override
+        public String toString() {
+            return file.getPath();
+        }
+    }
+
+    // jar包中的条目，内容在收集时已读出
+    private static final class JarResource implements ClassResource {
+        private final String name;
+        private final byte[] bytes;
+
+        JarResource(String name, byte[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public byte[] read() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
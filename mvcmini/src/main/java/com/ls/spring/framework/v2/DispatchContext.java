@@ -0,0 +1,125 @@
+package com.ls.spring.framework.v2;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// 一次分发中可以复用的对象：实参数组、路由匹配的变量下标、路径变量和规范化uri用的字符缓冲，请求结束时清空引用
+// 平台线程各自持有一个；虚拟线程每个请求一个、用完即弃，ThreadLocal起不到复用作用，改从有界的共享池中借还
+// 这些对象只在当前线程同步绑定、调用期间使用，交给执行器异步调用的请求另行分配实参数组
+final class DispatchContext {
+
+    // 复用实参数组的最大参数个数，更多参数的方法每次分配
+    private static final int MAX_ARITY = 16;
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final int POOL_SIZE = 4 * Runtime.getRuntime().availableProcessors();
+    private static final ThreadLocal<DispatchContext> LOCAL = ThreadLocal.withInitial(DispatchContext::new);
+    private static final BlockingQueue<DispatchContext> SHARED = new ArrayBlockingQueue<>(POOL_SIZE);
+    // JDK21的Thread.isVirtual()，项目按JDK8编译，低版本JDK为null
+    private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+    // 按参数个数各一个实参数组
+    private final Object[][] args = new Object[MAX_ARITY + 1][];
+    private final PathVariables pathVariables = new PathVariables(null, null);
+    private int[] offsets = new int[0];
+    private char[] chars = new char[128];
+    // 本次分发借出的实参数组，release时清空
+    private Object[] used;
+    private boolean inUse;
+    private boolean shared;
+
+    private DispatchContext() {
+    }
+
+    // 借出当前线程可用的上下文，分发结束后必须release
+    static DispatchContext acquire() {
+        DispatchContext context;
+        if (isVirtual()) {
+            context = SHARED.poll();
+            if (context == null) {
+                context = new DispatchContext();
+            }
+            context.shared = true;
+        } else {
+            context = LOCAL.get();
+            if (context.inUse) {
+                // 同一线程中嵌套分发，不和外层共用
+                context = new DispatchContext();
+            }
+        }
+        context.inUse = true;
+        return context;
+    }
+
+    // 清空本次请求的引用后归还，共享池满时丢弃
+    void release() {
+        if (used != null) {
+            Arrays.fill(used, null);
+            used = null;
+        }
+        pathVariables.reset(null, null);
+        inUse = false;
+        if (shared) {
+            SHARED.offer(this);
+        }
+    }
+
+    // 长度为length的实参数组，同一次分发中多次调用返回同一个数组
+    Object[] args(int length) {
+        if (length == 0) {
+            return NO_ARGS;
+        }
+        if (length > MAX_ARITY) {
+            return new Object[length];
+        }
+        Object[] array = args[length];
+        if (array == null) {
+            array = new Object[length];
+            args[length] = array;
+        }
+        used = array;
+        return array;
+    }
+
+    // 路由匹配用的变量下标数组，每次匹配都会重新写入，不需要清零
+    int[] offsets(int length) {
+        if (offsets.length < length) {
+            offsets = new int[length];
+        }
+        return offsets;
+    }
+
+    PathVariables pathVariables(String uri, int[] offsets) {
+        return pathVariables.reset(uri, offsets);
+    }
+
+    // 至少length长的字符缓冲
+    char[] chars(int length) {
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        return chars;
+    }
+
+    private static boolean isVirtual() {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static MethodHandle isVirtualHandle() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.ls.spring.framework.v2;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// 分发器指标：路由查找耗时，以及每个Handler的请求数、错误数、拒绝数、处理中请求数和各阶段耗时
+// 请求路径上只有LongAdder和原子数组的累加，不加锁；热加载后按url沿用原来的指标
+final class DispatcherMetrics {
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final LatencyHistogram routeLookup = new LatencyHistogram();
+    private final LongAdder notFound = new LongAdder();
+    private final Map<String, HandlerMetrics> handlers = new ConcurrentSkipListMap<>();
+
+    HandlerMetrics handler(String url) {
+        return handlers.computeIfAbsent(url, HandlerMetrics::new);
+    }
+
+    void recordRouteLookup(long nanos, boolean found) {
+        routeLookup.record(nanos);
+        if (!found) {
+            notFound.increment();
+        }
+    }
+
+    // 以Prometheus文本格式输出
+    void writePrometheus(Appendable out) throws IOException {
+        out.append("# TYPE mymvc_route_lookup_seconds summary\n");
+        writeSummary(out, "mymvc_route_lookup_seconds", "", routeLookup);
+        out.append("# TYPE mymvc_not_found_total counter\n");
+        out.append("mymvc_not_found_total ").append(Long.toString(notFound.sum())).append('\n');
+
+        out.append("# TYPE mymvc_requests_total counter\n");
+        for (HandlerMetrics m : handlers.values()) {
+            out.append("mymvc_requests_total{handler=\"").append(m.url).append("\"} ")
+                    .append(Long.toString(m.requests.sum())).append('\n');
+        }
+        out.append("# TYPE mymvc_errors_total counter\n");
+        for (HandlerMetrics m : handlers.values()) {
+            out.append("mymvc_errors_total{handler=\"").append(m.url).append("\"} ")
+                    .append(Long.toString(m.errors.sum())).append('\n');
+        }
+        out.append("# TYPE mymvc_rejected_total counter\n");
+        for (HandlerMetrics m : handlers.values()) {
+            out.append("mymvc_rejected_total{handler=\"").append(m.url).append("\",reason=\"rate_limit\"} ")
+                    .append(Long.toString(m.rateLimited.sum())).append('\n');
+            out.append("mymvc_rejected_total{handler=\"").append(m.url).append("\",reason=\"bulkhead\"} ")
+                    .append(Long.toString(m.bulkheadRejected.sum())).append('\n');
+        }
+        out.append("# TYPE mymvc_in_flight gauge\n");
+        for (HandlerMetrics m : handlers.values()) {
+            out.append("mymvc_in_flight{handler=\"").append(m.url).append("\"} ")
+                    .append(Long.toString(m.inFlight.sum())).append('\n');
+        }
+        out.append("# TYPE mymvc_handler_seconds summary\n");
+        for (HandlerMetrics m : handlers.values()) {
+            String labels = "handler=\"" + m.url + "\",";
+            writeSummary(out, "mymvc_handler_seconds", labels + "phase=\"bind\",", m.bind);
+            writeSummary(out, "mymvc_handler_seconds", labels + "phase=\"invoke\",", m.invoke);
+            writeSummary(out, "mymvc_handler_seconds", labels + "phase=\"total\",", m.total);
+        }
+    }
+
+    private static void writeSummary(Appendable out, String name, String labels, LatencyHistogram histogram) throws IOException {
+        for (double q : QUANTILES) {
+            out.append(name).append('{').append(labels).append("quantile=\"").append(Double.toString(q)).append("\"} ")
+                    .append(Double.toString(histogram.percentile(q) / 1e9)).append('\n');
+        }
+        out.append(name).append("_count");
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels, 0, labels.length() - 1).append('}');
+        }
+        out.append(' ').append(Long.toString(histogram.count())).append('\n');
+    }
+
+    // 单个Handler的指标
+    static final class HandlerMetrics {
+        private final String url;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        // 被限流和舱壁拒绝的请求，不计入requests
+        private final LongAdder rateLimited = new LongAdder();
+        private final LongAdder bulkheadRejected = new LongAdder();
+        private final LatencyHistogram bind = new LatencyHistogram();
+        private final LatencyHistogram invoke = new LatencyHistogram();
+        // 从路由查找开始到响应写完（异步请求到AsyncContext结束）
+        private final LatencyHistogram total = new LatencyHistogram();
+
+        private HandlerMetrics(String url) {
+            // url作为标签值，转义引号和反斜杠
+            this.url = url.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+
+        void begin() {
+            requests.increment();
+            inFlight.increment();
+        }
+
+        void recordRejected(int status) {
+            if (status == RouteLimiter.SC_TOO_MANY_REQUESTS) {
+                rateLimited.increment();
+            } else {
+                bulkheadRejected.increment();
+            }
+        }
+
+        void recordBind(long nanos) {
+            bind.record(nanos);
+        }
+
+        void recordInvoke(long nanos) {
+            invoke.record(nanos);
+        }
+
+        void end(long startNanos, boolean failed) {
+            total.record(System.nanoTime() - startNanos);
+            inFlight.decrement();
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+}
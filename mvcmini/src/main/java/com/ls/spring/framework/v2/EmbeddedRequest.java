@@ -0,0 +1,529 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.ReadListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// 内嵌服务器的请求：由HttpConnection解析出请求行、头和请求体后创建
+// 实现框架和控制器常用的方法；内嵌服务器没有会话和认证，相应方法返回null或false，Cookie和语言从请求头解析
+// 其余方法（getServletContext、startAsync、login、upgrade等）交给UNSUPPORTED，调用时抛出UnsupportedOperationException
+final class EmbeddedRequest extends HttpServletRequestWrapper {
+
+    private static final HttpServletRequest UNSUPPORTED = (HttpServletRequest) Proxy.newProxyInstance(
+            HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                throw new UnsupportedOperationException("内嵌服务器不支持：" + method.getName());
+            });
+    private static final String FORM = "application/x-www-form-urlencoded";
+
+    private final String method;
+    private final String requestUri;
+    private final String queryString;
+    private final String protocol;
+    // 头名不区分大小写，同名的头按出现顺序保存
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final String remoteAddr;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private String characterEncoding;
+    // 第一次取参数时解析，表单请求体也在此时解析
+    private Map<String, String[]> parameters;
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+
+    EmbeddedRequest(String method, String target, String protocol, TreeMap<String, List<String>> headers,
+                    byte[] body, String remoteAddr) {
+        super(UNSUPPORTED);
+        this.method = method;
+        int q = target.indexOf('?');
+        this.requestUri = q < 0 ? target : target.substring(0, q);
+        this.queryString = q < 0 ? null : target.substring(q + 1);
+        this.protocol = protocol;
+        this.headers = headers;
+        this.body = body;
+        this.remoteAddr = remoteAddr;
+        this.characterEncoding = charsetOf(getHeader("Content-Type"));
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return requestUri;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        String host = getHeader("Host");
+        return new StringBuffer("http://").append(host != null ? host : "localhost").append(requestUri);
+    }
+
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+    @Override
+    public String getPathInfo() {
+        return requestUri;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public String getScheme() {
+        return "http";
+    }
+
+    @Override
+    public boolean isSecure() {
+        return false;
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        return remoteAddr;
+    }
+
+    @Override
+    public String getRemoteHost() {
+        return remoteAddr;
+    }
+
+    // Host头中的主机名和端口
+    @Override
+    public String getServerName() {
+        String host = getHeader("Host");
+        if (host == null) {
+            return "localhost";
+        }
+        int colon = host.lastIndexOf(':');
+        return colon > host.lastIndexOf(']') ? host.substring(0, colon) : host;
+    }
+
+    @Override
+    public int getServerPort() {
+        String host = getHeader("Host");
+        int colon = host == null ? -1 : host.lastIndexOf(':');
+        if (colon < 0 || colon < host.lastIndexOf(']')) {
+            return 80;
+        }
+        try {
+            return Integer.parseInt(host.substring(colon + 1).trim());
+        } catch (NumberFormatException e) {
+            return 80;
+        }
+    }
+
+    @Override
+    public DispatcherType getDispatcherType() {
+        return DispatcherType.REQUEST;
+    }
+
+    // 内嵌服务器不维护会话
+    @Override
+    public HttpSession getSession(boolean create) {
+        return null;
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return null;
+    }
+
+    @Override
+    public String getRequestedSessionId() {
+        return null;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromCookie() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromURL() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromUrl() {
+        return false;
+    }
+
+    // 内嵌服务器不做认证
+    @Override
+    public String getAuthType() {
+        return null;
+    }
+
+    @Override
+    public String getRemoteUser() {
+        return null;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return null;
+    }
+
+    @Override
+    public boolean isUserInRole(String role) {
+        return false;
+    }
+
+    @Override
+    public String getPathTranslated() {
+        return null;
+    }
+
+    // Cookie头：a=1; b="2"，名字不合法的跳过；没有Cookie时返回null
+    @Override
+    public Cookie[] getCookies() {
+        List<Cookie> cookies = new ArrayList<>();
+        for (String header : headers.getOrDefault("Cookie", Collections.<String>emptyList())) {
+            for (String pair : header.split(";")) {
+                int eq = pair.indexOf('=');
+                if (eq <= 0) {
+                    continue;
+                }
+                String value = pair.substring(eq + 1).trim();
+                if (value.length() > 1 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+                    value = value.substring(1, value.length() - 1);
+                }
+                try {
+                    cookies.add(new Cookie(pair.substring(0, eq).trim(), value));
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+        }
+        return cookies.isEmpty() ? null : cookies.toArray(new Cookie[0]);
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locales().get(0);
+    }
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+        return Collections.enumeration(locales());
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return Collections.enumeration(values == null ? Collections.<String>emptyList() : values);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(headers.keySet());
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return value == null ? -1 : Integer.parseInt(value.trim());
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    @Override
+    public int getContentLength() {
+        return body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return body.length;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding;
+    }
+
+    @Override
+    public void setCharacterEncoding(String env) throws UnsupportedEncodingException {
+        if (!Charset.isSupported(env)) {
+            throw new UnsupportedEncodingException(env);
+        }
+        characterEncoding = env;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object o) {
+        if (o == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, o);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    // 请求已在工作线程中完整读入，不支持异步
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters().get(name);
+        return values == null ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        String[] values = parameters().get(name);
+        return values == null ? null : values.clone();
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters());
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters().keySet());
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        if (reader != null) {
+            throw new IllegalStateException("已经调用过getReader()！");
+        }
+        if (inputStream == null) {
+            inputStream = new ServletInputStream() {
+                private int pos;
+
+                @Override
+                public int read() {
+                    return pos < body.length ? body[pos++] & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (pos >= body.length) {
+                        return -1;
+                    }
+                    int n = Math.min(len, body.length - pos);
+                    System.arraycopy(body, pos, b, off, n);
+                    pos += n;
+                    return n;
+                }
+
+                @Override
+                public int available() {
+                    return body.length - pos;
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return pos >= body.length;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new IllegalStateException("内嵌服务器不支持异步读取");
+                }
+            };
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        if (inputStream != null) {
+            throw new IllegalStateException("已经调用过getInputStream()！");
+        }
+        if (reader == null) {
+            Charset charset = characterEncoding != null ? Charset.forName(characterEncoding) : StandardCharsets.ISO_8859_1;
+            reader = new BufferedReader(new InputStreamReader(new java.io.ByteArrayInputStream(body), charset));
+        }
+        return reader;
+    }
+
+    // Accept-Language按q值从高到低排列，q相同时保持原顺序；没有时为服务器的默认语言
+    private List<Locale> locales() {
+        List<Locale> locales = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (String header : headers.getOrDefault("Accept-Language", Collections.<String>emptyList())) {
+            for (String range : header.split(",")) {
+                String[] parts = range.split(";");
+                String tag = parts[0].trim();
+                double q = 1;
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            q = Double.parseDouble(param.substring(2));
+                        } catch (NumberFormatException e) {
+                            q = 0;
+                        }
+                    }
+                }
+                if (tag.isEmpty() || "*".equals(tag) || q <= 0) {
+                    continue;
+                }
+                int i = 0;
+                while (i < weights.size() && weights.get(i) >= q) {
+                    i++;
+                }
+                locales.add(i, Locale.forLanguageTag(tag));
+                weights.add(i, q);
+            }
+        }
+        if (locales.isEmpty()) {
+            locales.add(Locale.getDefault());
+        }
+        return locales;
+    }
+
+    // 查询串中的参数，POST表单时再加上请求体中的参数
+    private Map<String, String[]> parameters() {
+        if (parameters != null) {
+            return parameters;
+        }
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        Charset charset = characterEncoding != null ? Charset.forName(characterEncoding) : StandardCharsets.UTF_8;
+        if (queryString != null) {
+            decodeForm(queryString.getBytes(StandardCharsets.ISO_8859_1), charset, values);
+        }
+        String contentType = getContentType();
+        if (body.length > 0 && inputStream == null && reader == null && "POST".equals(method)
+                && contentType != null && contentType.regionMatches(true, 0, FORM, 0, FORM.length())) {
+            decodeForm(body, charset, values);
+        }
+        Map<String, String[]> map = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+            map.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+        }
+        parameters = map;
+        return map;
+    }
+
+    // 解析a=1&b=2格式，按百分号编码解码
+    private static void decodeForm(byte[] bytes, Charset charset, Map<String, List<String>> out) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        String name = null;
+        for (int i = 0; i <= bytes.length; i++) {
+            int b = i < bytes.length ? bytes[i] : '&';
+            if (b == '&') {
+                String value = new String(buffer.toByteArray(), charset);
+                buffer.reset();
+                if (name == null) {
+                    name = value;
+                    value = "";
+                }
+                if (!name.isEmpty()) {
+                    out.computeIfAbsent(name, k -> new ArrayList<>(1)).add(value);
+                }
+                name = null;
+            } else if (b == '=' && name == null) {
+                name = new String(buffer.toByteArray(), charset);
+                buffer.reset();
+            } else if (b == '+') {
+                buffer.write(' ');
+            } else if (b == '%' && i + 2 < bytes.length
+                    && Character.digit(bytes[i + 1], 16) >= 0 && Character.digit(bytes[i + 2], 16) >= 0) {
+                buffer.write(Character.digit(bytes[i + 1], 16) << 4 | Character.digit(bytes[i + 2], 16));
+                i += 2;
+            } else {
+                buffer.write(b);
+            }
+        }
+    }
+
+    // Content-Type中的charset参数
+    static String charsetOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int i = contentType.toLowerCase().indexOf("charset=");
+        if (i < 0) {
+            return null;
+        }
+        String charset = contentType.substring(i + 8);
+        int end = charset.indexOf(';');
+        if (end >= 0) {
+            charset = charset.substring(0, end);
+        }
+        charset = charset.trim();
+        if (charset.length() > 1 && charset.charAt(0) == '"') {
+            charset = charset.substring(1, charset.length() - 1);
+        }
+        return charset;
+    }
+}
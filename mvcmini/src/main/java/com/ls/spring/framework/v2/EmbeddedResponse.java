@@ -0,0 +1,392 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// 内嵌服务器的响应：状态、头和响应体都先写到内存中，处理完成后由HttpConnection一次写出
+// 实现框架和控制器常用的方法：Cookie写成Set-Cookie头，没有会话所以URL原样返回
+// 其余方法交给UNSUPPORTED，调用时抛出UnsupportedOperationException
+final class EmbeddedResponse extends HttpServletResponseWrapper {
+
+    private static final HttpServletResponse UNSUPPORTED = (HttpServletResponse) Proxy.newProxyInstance(
+            HttpServletResponse.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                throw new UnsupportedOperationException("内嵌服务器不支持：" + method.getName());
+            });
+
+    private int status = SC_OK;
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private String contentType;
+    private String characterEncoding;
+    private Locale locale;
+    private final Body body = new Body();
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    EmbeddedResponse() {
+        super(UNSUPPORTED);
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        status = sc;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+        status = sc;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void sendError(int sc) {
+        ErrorResponses.write(this, sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+        resetBuffer();
+        status = sc;
+        setContentType("text/plain;charset=UTF-8");
+        byte[] bytes = msg.getBytes(StandardCharsets.UTF_8);
+        body.write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        resetBuffer();
+        status = SC_FOUND;
+        setHeader("Location", location);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (value == null) {
+            headers.remove(name);
+        } else {
+            List<String> values = new ArrayList<>(1);
+            values.add(value);
+            headers.put(name, values);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        headers.computeIfAbsent(name, k -> new ArrayList<>(1)).add(value);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, Integer.toString(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, Integer.toString(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, HttpConnection.formatDate(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, HttpConnection.formatDate(date));
+    }
+
+    // name=value; Max-Age=...; Expires=...; Domain=...; Path=...; Secure; HttpOnly
+    @Override
+    public void addCookie(Cookie cookie) {
+        StringBuilder sb = new StringBuilder(64).append(cookie.getName()).append('=');
+        if (cookie.getValue() != null) {
+            sb.append(cookie.getValue());
+        }
+        if (cookie.getMaxAge() >= 0) {
+            sb.append("; Max-Age=").append(cookie.getMaxAge()).append("; Expires=")
+                    .append(HttpConnection.formatDate(System.currentTimeMillis() + cookie.getMaxAge() * 1000L));
+        }
+        if (cookie.getDomain() != null) {
+            sb.append("; Domain=").append(cookie.getDomain());
+        }
+        if (cookie.getPath() != null) {
+            sb.append("; Path=").append(cookie.getPath());
+        }
+        if (cookie.getSecure()) {
+            sb.append("; Secure");
+        }
+        if (cookie.isHttpOnly()) {
+            sb.append("; HttpOnly");
+        }
+        addHeader("Set-Cookie", sb.toString());
+    }
+
+    // 没有会话，不需要在URL中带会话ID
+    @Override
+    public String encodeURL(String url) {
+        return url;
+    }
+
+    @Override
+    public String encodeRedirectURL(String url) {
+        return url;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public String encodeUrl(String url) {
+        return url;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public String encodeRedirectUrl(String url) {
+        return url;
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? Collections.<String>emptyList() : Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return Collections.unmodifiableSet(headers.keySet());
+    }
+
+    @Override
+    public void setContentType(String type) {
+        contentType = type;
+        String charset = EmbeddedRequest.charsetOf(type);
+        if (charset != null) {
+            characterEncoding = charset;
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        characterEncoding = charset;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding != null ? characterEncoding : StandardCharsets.ISO_8859_1.name();
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+        if (loc == null) {
+            return;
+        }
+        locale = loc;
+        setHeader("Content-Language", loc.toLanguageTag());
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locale != null ? locale : Locale.getDefault();
+    }
+
+    // 响应长度按实际写出的内容计算
+    @Override
+    public void setContentLength(int len) {
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+    }
+
+    @Override
+    public int getBufferSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+    }
+
+    @Override
+    public void flushBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    // 处理完成前不会写出任何内容
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void resetBuffer() {
+        flushBuffer();
+        body.reset();
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        status = SC_OK;
+        headers.clear();
+        contentType = null;
+        characterEncoding = null;
+        locale = null;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("已经调用过getWriter()！");
+        }
+        if (outputStream == null) {
+            outputStream = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    body.write(b, off, len);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    throw new IllegalStateException("内嵌服务器不支持异步写出");
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (outputStream != null) {
+            throw new IllegalStateException("已经调用过getOutputStream()！");
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(body, Charset.forName(getCharacterEncoding())));
+        }
+        return writer;
+    }
+
+    // 生成完整的响应报文：状态行、头、空行和响应体；HEAD请求只保留Content-Length
+    ByteBuffer encode(boolean keepAlive, boolean head) {
+        flushBuffer();
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("HTTP/1.1 ").append(status).append(' ').append(HttpConnection.reason(status)).append("\r\n");
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            String name = entry.getKey();
+            if ("Content-Length".equalsIgnoreCase(name) || "Connection".equalsIgnoreCase(name)
+                    || "Content-Type".equalsIgnoreCase(name)) {
+                continue;
+            }
+            for (String value : entry.getValue()) {
+                sb.append(name).append(": ").append(value).append("\r\n");
+            }
+        }
+        if (contentType != null) {
+            sb.append("Content-Type: ").append(contentType);
+            if (characterEncoding != null && contentType.startsWith("text/") && EmbeddedRequest.charsetOf(contentType) == null) {
+                sb.append(";charset=").append(characterEncoding);
+            }
+            sb.append("\r\n");
+        }
+        // 204和304没有响应体，也不带Content-Length
+        if (status != SC_NO_CONTENT && status != SC_NOT_MODIFIED) {
+            sb.append("Content-Length: ").append(body.size()).append("\r\n");
+        }
+        if (!keepAlive) {
+            sb.append("Connection: close\r\n");
+        }
+        sb.append("\r\n");
+        byte[] headBytes = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        int bodyLength = head ? 0 : body.size();
+        ByteBuffer buffer = ByteBuffer.allocate(headBytes.length + bodyLength);
+        buffer.put(headBytes);
+        if (!head) {
+            body.copyTo(buffer);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // 响应体字节数，批量请求中的子响应用
+    int bodySize() {
+        flushBuffer();
+        return body.size();
+    }
+
+    // 响应体原样写到out，批量请求直接嵌入JSON子响应
+    void writeBodyTo(OutputStream out) throws IOException {
+        flushBuffer();
+        body.writeTo(out);
+    }
+
+    // 响应体按响应的字符集解码
+    String bodyAsString() {
+        flushBuffer();
+        return body.decode(ReturnValueWriters.charset(getCharacterEncoding()));
+    }
+
+    // 写出时直接复制内部数组，不再额外生成一份字节数组
+    private static final class Body extends ByteArrayOutputStream {
+        Body() {
+            super(256);
+        }
+
+        String decode(Charset charset) {
+            return new String(buf, 0, count, charset);
+        }
+
+        void copyTo(ByteBuffer target) {
+            target.put(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 内嵌HTTP/1.1服务器，不依赖Servlet容器运行MyDispacherServlet，扫描、IOC和路由与war部署完全一致
+// 一个选择器线程负责非阻塞的accept、读和写，解析出完整的请求后交给工作线程池（或虚拟线程）调用servlet，
+// 响应在内存中生成后回到选择器线程写出；支持keep-alive和管线化，同一连接上的请求按顺序处理
+// 请求体完整读入内存后才交给工作线程，大小受server-max-request-bytes限制，不支持流式上传
+public class EmbeddedServer {
+
+    private static final String CONTEXT_CONFIG_LOCATION = "contextConfigLocation";
+
+    private final Properties config;
+    private final String configLocation;
+    private final MyDispacherServlet servlet = new MyDispacherServlet();
+    // 工作线程处理完成、等待写出响应的连接
+    private final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private ExecutorService workers;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private int maxBodyBytes;
+    private long idleTimeoutNanos;
+
+    public EmbeddedServer(String configLocation) {
+        this.configLocation = configLocation;
+        this.config = loadConfig(configLocation);
+    }
+
+    // 用法：java com.ls.spring.framework.v2.EmbeddedServer [配置文件] [端口]
+    public static void main(String[] args) throws IOException {
+        EmbeddedServer server = new EmbeddedServer(args.length > 0 ? args[0] : "application.properties");
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : Integer.parseInt(server.config.getProperty("server-port", "8080"));
+        server.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "mymvc-shutdown"));
+    }
+
+    // 初始化servlet并开始监听，port为0时使用随机端口
+    public void start(int port) throws IOException {
+        servlet.init(new EmbeddedConfig());
+        maxBodyBytes = Integer.parseInt(config.getProperty("server-max-request-bytes", "10485760"));
+        idleTimeoutNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(config.getProperty("server-idle-timeout", "60")));
+        workers = createWorkers();
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port), Integer.parseInt(config.getProperty("server-backlog", "1024")));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::loop, "mymvc-selector");
+        selectorThread.start();
+        System.out.println("内嵌服务器已启动，端口：" + port());
+    }
+
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        servlet.destroy();
+    }
+
+    // server-executor为virtual时每个请求一个虚拟线程，否则（或JDK不支持虚拟线程时）使用server-threads个线程的固定线程池
+    private ExecutorService createWorkers() {
+        ExecutorService virtual = HandlerExecutors.VIRTUAL.equals(config.getProperty("server-executor", HandlerExecutors.CONTAINER))
+                ? HandlerExecutors.virtual() : null;
+        if (virtual != null) {
+            return virtual;
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Integer.parseInt(config.getProperty("server-threads", "200")), r -> {
+            Thread thread = new Thread(r, "mymvc-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // 选择器线程：处理就绪的连接和已完成的响应，每秒检查一次空闲连接
+    private void loop() {
+        long nextIdleCheck = System.nanoTime();
+        try {
+            while (running) {
+                selector.select(1000);
+                Completion completion;
+                while ((completion = completions.poll()) != null) {
+                    write(completion.connection, completion.response);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read((HttpConnection) key.attachment());
+                    } else if (key.isWritable()) {
+                        HttpConnection connection = (HttpConnection) key.attachment();
+                        try {
+                            if (connection.flush()) {
+                                if (connection.busy) {
+                                    written(connection);
+                                } else {
+                                    // 写完的是100 Continue，继续读取请求体
+                                    resume(connection);
+                                }
+                            }
+                        } catch (IOException e) {
+                            connection.close();
+                        }
+                    }
+                }
+                long now = System.nanoTime();
+                if (now - nextIdleCheck >= 0) {
+                    closeIdle(now);
+                    nextIdleCheck = now + TimeUnit.SECONDS.toNanos(1);
+                }
+            }
+        } catch (IOException e) {
+            ErrorResponses.log(e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof HttpConnection) {
+                    ((HttpConnection) key.attachment()).close();
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {
+                // 正在关闭
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new HttpConnection(channel, key, maxBodyBytes));
+        }
+    }
+
+    private void read(HttpConnection connection) {
+        try {
+            if (!connection.read()) {
+                connection.close();
+                return;
+            }
+            if (!connection.busy) {
+                next(connection);
+            }
+        } catch (HttpConnection.BadRequest e) {
+            reject(connection, e.status);
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    // 解析下一个请求，有完整请求时停止读取并交给工作线程
+    private void next(HttpConnection connection) throws IOException {
+        EmbeddedRequest request = connection.poll();
+        if (request == null) {
+            connection.key.interestOps(connection.writing() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            return;
+        }
+        connection.busy = true;
+        connection.key.interestOps(0);
+        boolean keepAlive = connection.keepAlive;
+        boolean head = connection.head;
+        try {
+            workers.execute(() -> {
+                EmbeddedResponse response = new EmbeddedResponse();
+                try {
+                    servlet.service(request, response);
+                } catch (Exception | Error e) {
+                    ErrorResponses.log(e);
+                    ErrorResponses.write(response, 500);
+                }
+                completions.add(new Completion(connection, response.encode(keepAlive, head)));
+                selector.wakeup();
+            });
+        } catch (RejectedExecutionException e) {
+            connection.close();
+        }
+    }
+
+    private void write(HttpConnection connection, ByteBuffer response) {
+        try {
+            if (connection.respond(response)) {
+                written(connection);
+            } else {
+                connection.key.interestOps(SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    // 响应写完：不保持连接时关闭，否则继续处理管线化的后续请求
+    private void written(HttpConnection connection) {
+        if (!connection.keepAlive) {
+            connection.close();
+            return;
+        }
+        connection.busy = false;
+        resume(connection);
+    }
+
+    // 继续解析同一连接上的请求
+    private void resume(HttpConnection connection) {
+        try {
+            next(connection);
+        } catch (HttpConnection.BadRequest e) {
+            reject(connection, e.status);
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    // 请求不合法：写出错误响应后关闭连接
+    private void reject(HttpConnection connection, int status) {
+        EmbeddedResponse response = new EmbeddedResponse();
+        ErrorResponses.write(response, status);
+        connection.keepAlive = false;
+        connection.busy = true;
+        write(connection, response.encode(false, false));
+    }
+
+    // 关闭超过server-idle-timeout没有读写的空闲连接，正在处理请求的连接不关闭
+    private void closeIdle(long now) {
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof HttpConnection) {
+                HttpConnection connection = (HttpConnection) attachment;
+                if (!connection.busy && now - connection.lastActive > idleTimeoutNanos) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private static Properties loadConfig(String location) {
+        Properties properties = new Properties();
+        try (InputStream is = EmbeddedServer.class.getClassLoader().getResourceAsStream(location)) {
+            if (is != null) {
+                properties.load(is);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return properties;
+    }
+
+    private static final class Completion {
+        private final HttpConnection connection;
+        private final ByteBuffer response;
+
+        Completion(HttpConnection connection, ByteBuffer response) {
+            this.connection = connection;
+            this.response = response;
+        }
+    }
+
+    // servlet的初始化参数，只提供配置文件位置
+    private final class EmbeddedConfig implements ServletConfig {
+        @Override
+        public String getServletName() {
+            return "mymvc";
+        }
+
+        @Override
+        public ServletContext getServletContext() {
+            return null;
+        }
+
+        @Override
+        public String getInitParameter(String name) {
+            return CONTEXT_CONFIG_LOCATION.equals(name) ? configLocation : null;
+        }
+
+        @Override
+        public Enumeration<String> getInitParameterNames() {
+            return Collections.enumeration(Collections.singletonList(CONTEXT_CONFIG_LOCATION));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 预先生成的错误响应，失败路径上不拼接字符串、不遍历调用栈
+// 异常日志按异常类型限频，同一类型的异常在间隔内只打印一次调用栈，其余只计数
+final class ErrorResponses {
+
+    private static final String TEXT = "text/plain;charset=UTF-8";
+    private static final byte[] BAD_REQUEST = bytes("400 Bad Request!");
+    private static final byte[] NOT_FOUND = bytes("404 Not Found!");
+    private static final byte[] METHOD_NOT_ALLOWED = bytes("405 Method Not Allowed!");
+    private static final byte[] PAYLOAD_TOO_LARGE = bytes("413 Payload Too Large!");
+    private static final byte[] TOO_MANY_REQUESTS = bytes("429 Too Many Requests!");
+    private static final byte[] HEADER_TOO_LARGE = bytes("431 Request Header Fields Too Large!");
+    private static final byte[] INTERNAL_ERROR = bytes("500 Internal Server Error!");
+    private static final byte[] NOT_IMPLEMENTED = bytes("501 Not Implemented!");
+    private static final byte[] SERVICE_UNAVAILABLE = bytes("503 Service Unavailable!");
+
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // 异常类型到下次允许打印调用栈的时间
+    private static final Map<Class<?>, AtomicLong> NEXT_LOG = new ConcurrentHashMap<>();
+    // 各异常类型在限频期间省略的次数
+    private static final Map<Class<?>, AtomicLong> SUPPRESSED = new ConcurrentHashMap<>();
+
+    private ErrorResponses() {
+    }
+
+    // 写出状态码和预先生成的响应体，响应已提交时只能放弃
+    static void write(HttpServletResponse resp, int status) {
+        if (resp.isCommitted()) {
+            return;
+        }
+        // 丢弃控制器已经写入缓冲区但未提交的内容
+        resp.resetBuffer();
+        resp.setStatus(status);
+        byte[] body = body(status);
+        resp.setContentType(TEXT);
+        resp.setContentLength(body.length);
+        try {
+            resp.getOutputStream().write(body);
+        } catch (IllegalStateException e) {
+            // 已经获取过Writer时改用Writer
+            try {
+                resp.getWriter().write(new String(body, StandardCharsets.UTF_8));
+            } catch (IOException | IllegalStateException ignored) {
+                // 客户端已断开
+            }
+        } catch (IOException ignored) {
+            // 客户端已断开
+        }
+    }
+
+    // 限频打印异常：每个异常类型在间隔内只打印一次调用栈，并带上期间省略的次数
+    static void log(Throwable e) {
+        Class<?> type = e.getClass();
+        long now = System.nanoTime();
+        AtomicLong next = NEXT_LOG.computeIfAbsent(type, t -> new AtomicLong(now));
+        long expected = next.get();
+        if (now - expected < 0 || !next.compareAndSet(expected, now + LOG_INTERVAL_NANOS)) {
+            SUPPRESSED.computeIfAbsent(type, t -> new AtomicLong()).incrementAndGet();
+            return;
+        }
+        AtomicLong suppressed = SUPPRESSED.get(type);
+        long count = suppressed != null ? suppressed.getAndSet(0) : 0;
+        if (count > 0) {
+            System.err.println("期间省略了" + count + "次" + type.getName());
+        }
+        e.printStackTrace();
+    }
+
+    private static byte[] body(int status) {
+        switch (status) {
+            case HttpServletResponse.SC_BAD_REQUEST:
+                return BAD_REQUEST;
+            case HttpServletResponse.SC_NOT_FOUND:
+                return NOT_FOUND;
+            case HttpServletResponse.SC_METHOD_NOT_ALLOWED:
+                return METHOD_NOT_ALLOWED;
+            case HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE:
+                return PAYLOAD_TOO_LARGE;
+            case RouteLimiter.SC_TOO_MANY_REQUESTS:
+                return TOO_MANY_REQUESTS;
+            case 431:
+                return HEADER_TOO_LARGE;
+            case HttpServletResponse.SC_NOT_IMPLEMENTED:
+                return NOT_IMPLEMENTED;
+            case HttpServletResponse.SC_SERVICE_UNAVAILABLE:
+                return SERVICE_UNAVAILABLE;
+            default:
+                return INTERNAL_ERROR;
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,163 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.annotation.MyExceptionHandler;
+import com.ls.spring.framework.annotation.MyResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+// @MyExceptionHandler方法表，在init时按声明的异常类型建立
+// 运行时按异常的实际类型沿父类查找最近的处理方法，结果按类型缓存，没有处理方法的类型也缓存
+final class ExceptionHandlers {
+
+    private static final Entry NONE = new Entry(null, null, null, null);
+
+    // 声明的异常类型到处理方法
+    private final Map<Class<?>, Entry> declared;
+    // 实际异常类型到处理方法，没有时为NONE
+    private final Map<Class<?>, Entry> resolved = new ConcurrentHashMap<>();
+
+    private ExceptionHandlers(Map<Class<?>, Entry> declared) {
+        this.declared = declared;
+    }
+
+    // 收集各控制器中的@MyExceptionHandler方法，同一异常类型声明了多个处理方法时报错
+    static ExceptionHandlers create(List<Object> controllers, String invokerMode) {
+        Map<Class<?>, Entry> declared = new HashMap<>();
+        for (Object controller : controllers) {
+            for (Method method : controller.getClass().getMethods()) {
+                MyExceptionHandler annotation = method.getAnnotation(MyExceptionHandler.class);
+                if (annotation == null) {
+                    continue;
+                }
+                Class<?>[] types = annotation.value();
+                if (types.length == 0) {
+                    types = throwableParams(method);
+                }
+                if (types.length == 0) {
+                    throw new IllegalStateException("@MyExceptionHandler方法没有声明异常类型：" + method);
+                }
+                Entry entry = new Entry(method, HandlerInvoker.create(invokerMode, method, controller),
+                        binders(method), writer(method, controller));
+                for (Class<?> type : types) {
+                    Entry previous = declared.put(type, entry);
+                    if (previous != null) {
+                        throw new IllegalStateException("异常类型" + type.getName() + "有多个处理方法：" + previous.method + "，" + method);
+                    }
+                }
+            }
+        }
+        return new ExceptionHandlers(declared);
+    }
+
+    // 用处理方法写出响应，返回false表示没有处理方法或处理方法本身失败，由调用方写出500
+    boolean handle(HttpServletRequest req, HttpServletResponse resp, Throwable e) {
+        if (declared.isEmpty()) {
+            return false;
+        }
+        Entry entry = find(e.getClass());
+        if (entry == NONE || resp.isCommitted()) {
+            return false;
+        }
+        resp.resetBuffer();
+        Object[] args = new Object[entry.binders.length];
+        try {
+            for (int i = 0; i < args.length; i++) {
+                args[i] = entry.binders[i].bind(req, resp, e);
+            }
+            entry.writer.write(entry.invoker.invoke(args), resp);
+            return true;
+        } catch (Exception failure) {
+            ErrorResponses.log(unwrap(failure));
+            return false;
+        }
+    }
+
+    // 去掉调用器、CompletableFuture等加上的包装，取出控制器方法抛出的原始异常
+    static Throwable unwrap(Throwable e) {
+        while ((e instanceof InvocationTargetException || e instanceof CompletionException || e instanceof ExecutionException)
+                && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private Entry find(Class<?> type) {
+        Entry entry = resolved.get(type);
+        if (entry != null) {
+            return entry;
+        }
+        entry = NONE;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            Entry candidate = declared.get(c);
+            if (candidate != null) {
+                entry = candidate;
+                break;
+            }
+        }
+        resolved.put(type, entry);
+        return entry;
+    }
+
+    private static Class<?>[] throwableParams(Method method) {
+        for (Class<?> type : method.getParameterTypes()) {
+            if (Throwable.class.isAssignableFrom(type)) {
+                return new Class<?>[]{type};
+            }
+        }
+        return new Class<?>[0];
+    }
+
+    // 处理方法的形参：异常、请求、响应，其他类型传null或基本类型默认值
+    private static ExceptionBinder[] binders(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        ExceptionBinder[] binders = new ExceptionBinder[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = types[i];
+            if (Throwable.class.isAssignableFrom(type)) {
+                binders[i] = (req, resp, e) -> type.isInstance(e) ? e : null;
+            } else if (type == HttpServletRequest.class) {
+                binders[i] = (req, resp, e) -> req;
+            } else if (type == HttpServletResponse.class) {
+                binders[i] = (req, resp, e) -> resp;
+            } else {
+                ParamBinder binder = ParamBinders.create(type, type, new java.lang.annotation.Annotation[0], null);
+                binders[i] = (req, resp, e) -> binder.bind(req, resp, PathVariables.NONE);
+            }
+        }
+        return binders;
+    }
+
+    private static ReturnValueWriter writer(Method method, Object controller) {
+        if (method.isAnnotationPresent(MyResponseBody.class) || controller.getClass().isAnnotationPresent(MyResponseBody.class)) {
+            return ReturnValueWriters.json(method.getReturnType());
+        }
+        return ReturnValueWriters.create(method.getReturnType());
+    }
+
+    private interface ExceptionBinder {
+        Object bind(HttpServletRequest req, HttpServletResponse resp, Throwable e) throws Exception;
+    }
+
+    private static final class Entry {
+        private final Method method;
+        private final HandlerInvoker invoker;
+        private final ExceptionBinder[] binders;
+        private final ReturnValueWriter writer;
+
+        Entry(Method method, HandlerInvoker invoker, ExceptionBinder[] binders, ReturnValueWriter writer) {
+            this.method = method;
+            this.invoker = invoker;
+            this.binders = binders;
+            this.writer = writer;
+        }
+    }
+}
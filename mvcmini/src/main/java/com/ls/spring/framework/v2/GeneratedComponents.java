@@ -0,0 +1,112 @@
+package com.ls.spring.framework.v2;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+// 汇总类路径上所有编译期生成的组件注册表
+final class GeneratedComponents implements ComponentRegistry.Registrar {
+
+    private final List<Class<?>> classes = new ArrayList<>();
+    private final Map<Class<?>, Component> components = new HashMap<>();
+    private final Map<Class<?>, List<Handler>> handlers = new HashMap<>();
+    // 注册表所在的classpath根，一个根中的组件都由注解处理器登记，这些根不再扫描
+    private final Set<String> roots = new HashSet<>();
+
+    private GeneratedComponents() {
+    }
+
+    // 加载scanPackage及其子包下生成的注册表，一个都没有时返回null
+    static GeneratedComponents load(ClassLoader classLoader, String scanPackage) {
+        GeneratedComponents generated = new GeneratedComponents();
+        boolean found = false;
+        for (ComponentRegistry registry : ServiceLoader.load(ComponentRegistry.class, classLoader)) {
+            if (inPackage(registry.packageName(), scanPackage)) {
+                registry.register(generated);
+                String resource = registry.getClass().getName().replace('.', '/') + ".class";
+                URL url = classLoader.getResource(resource);
+                if (url != null) {
+                    generated.roots.add(ComponentScanner.root(url, resource));
+                }
+                found = true;
+            }
+        }
+        return found ? generated : null;
+    }
+
+    private static boolean inPackage(String packageName, String scanPackage) {
+        if (scanPackage == null || scanPackage.isEmpty()) {
+            return true;
+        }
+        return packageName.equals(scanPackage) || packageName.startsWith(scanPackage + ".");
+    }
+
+    @Override
+    public void component(Class<?> type, Class<?>[] paramTypes, String[] paramNames,
+                          ComponentRegistry.Instantiator instantiator, ComponentRegistry.Injector injector) {
+        classes.add(type);
+        components.put(type, new Component(paramTypes, paramNames, instantiator, injector));
+    }
+
+    @Override
+    public void handler(Class<?> controllerType, String methodName, Class<?>[] paramTypes, ComponentRegistry.Invoker invoker) {
+        handlers.computeIfAbsent(controllerType, k -> new ArrayList<>()).add(new Handler(methodName, paramTypes, invoker));
+    }
+
+    // 组件类，按登记顺序
+    List<Class<?>> classes() {
+        return classes;
+    }
+
+    Set<String> roots() {
+        return roots;
+    }
+
+    // 类由生成的注册表登记，没有时按反射处理
+    boolean contains(Class<?> type) {
+        return components.containsKey(type);
+    }
+
+    Component component(Class<?> type) {
+        return components.get(type);
+    }
+
+    List<Handler> handlers(Class<?> controllerType) {
+        return handlers.getOrDefault(controllerType, Collections.emptyList());
+    }
+
+    // 一个组件的构造方法参数及生成的创建、注入代码
+    static final class Component {
+        final Class<?>[] paramTypes;
+        final String[] paramNames;
+        final ComponentRegistry.Instantiator instantiator;
+        final ComponentRegistry.Injector injector;
+
+        private Component(Class<?>[] paramTypes, String[] paramNames,
+                          ComponentRegistry.Instantiator instantiator, ComponentRegistry.Injector injector) {
+            this.paramTypes = paramTypes;
+            this.paramNames = paramNames;
+            this.instantiator = instantiator;
+            this.injector = injector;
+        }
+    }
+
+    // 一个控制器方法及生成的调用代码
+    static final class Handler {
+        final String methodName;
+        final Class<?>[] paramTypes;
+        final ComponentRegistry.Invoker invoker;
+
+        private Handler(String methodName, Class<?>[] paramTypes, ComponentRegistry.Invoker invoker) {
+            this.methodName = methodName;
+            this.paramTypes = paramTypes;
+            this.invoker = invoker;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.ls.spring.framework.v2;
+
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 控制器方法执行器，在init中按配置创建一次
+final class HandlerExecutors {
+
+    // 执行方式：container（默认，在容器线程中执行）或virtual（在虚拟线程中执行）
+    static final String CONTAINER = "container";
+    static final String VIRTUAL = "virtual";
+
+    private HandlerExecutors() {
+    }
+
+    // 按配置创建执行器，container模式返回null，表示直接在容器线程中执行
+    // 低版本JDK不支持虚拟线程时退回handler-threads个线程的固定线程池，最多排队handler-queue-size个请求，超出时拒绝（返回503）
+    static ExecutorService create(Properties config) {
+        if (!VIRTUAL.equals(config.getProperty("handler-executor", CONTAINER))) {
+            return null;
+        }
+        ExecutorService virtual = virtual();
+        if (virtual != null) {
+            return virtual;
+        }
+        int threads = Integer.parseInt(config.getProperty("handler-threads", "200"));
+        int queue = Integer.parseInt(config.getProperty("handler-queue-size", "1000"));
+        System.out.println("当前JDK不支持虚拟线程，使用" + threads + "个线程的线程池执行控制器方法");
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue), r -> {
+            Thread thread = new Thread(r, "mymvc-handler-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // 每个任务一个虚拟线程的执行器；项目按JDK8编译，通过反射获取，低版本JDK返回null
+    static ExecutorService virtual() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
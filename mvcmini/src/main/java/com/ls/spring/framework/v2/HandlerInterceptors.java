@@ -0,0 +1,113 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.annotation.MyInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// 拦截器链：在init时为每个路由算出要经过的拦截器数组，没有拦截器的路由为null，分发时只多一次null判断
+final class HandlerInterceptors {
+
+    private HandlerInterceptors() {
+    }
+
+    // 按@MyInterceptor的order排序，order相同时保持扫描顺序
+    static List<MyHandlerInterceptor> ordered(List<Object> beans) {
+        List<MyHandlerInterceptor> interceptors = new ArrayList<>();
+        for (Object bean : beans) {
+            if (!(bean instanceof MyHandlerInterceptor)) {
+                throw new IllegalStateException("拦截器需要实现MyHandlerInterceptor：" + bean.getClass().getName());
+            }
+            interceptors.add((MyHandlerInterceptor) bean);
+        }
+        interceptors.sort(Comparator.comparingInt(i -> i.getClass().getAnnotation(MyInterceptor.class).order()));
+        return interceptors;
+    }
+
+    // 匹配url模板的拦截器，没有时返回null
+    static MyHandlerInterceptor[] resolve(List<MyHandlerInterceptor> interceptors, String url) {
+        List<MyHandlerInterceptor> matched = new ArrayList<>();
+        for (MyHandlerInterceptor interceptor : interceptors) {
+            MyInterceptor mapping = interceptor.getClass().getAnnotation(MyInterceptor.class);
+            if (matchesAny(mapping.value(), url) && !matchesAny(mapping.exclude(), url)) {
+                matched.add(interceptor);
+            }
+        }
+        return matched.isEmpty() ? null : matched.toArray(new MyHandlerInterceptor[0]);
+    }
+
+    // 依次调用preHandle，返回通过的个数，小于拦截器个数表示请求被拦截
+    // preHandle抛出异常时，先对已通过的拦截器调用afterCompletion再抛出
+    static int preHandle(MyHandlerInterceptor[] interceptors, HttpServletRequest req, HttpServletResponse resp,
+                         Method handler) throws Exception {
+        for (int i = 0; i < interceptors.length; i++) {
+            boolean passed;
+            try {
+                passed = interceptors[i].preHandle(req, resp, handler);
+            } catch (Exception e) {
+                afterCompletion(interceptors, i, req, resp, handler, e);
+                throw e;
+            }
+            if (!passed) {
+                afterCompletion(interceptors, i, req, resp, handler, null);
+                return i;
+            }
+        }
+        return interceptors.length;
+    }
+
+    static void postHandle(MyHandlerInterceptor[] interceptors, HttpServletRequest req, HttpServletResponse resp,
+                           Method handler, Object returnValue) throws Exception {
+        for (int i = interceptors.length - 1; i >= 0; i--) {
+            interceptors[i].postHandle(req, resp, handler, returnValue);
+        }
+    }
+
+    // 对前applied个拦截器倒序调用afterCompletion，其中的异常只打印，不影响其他拦截器
+    static void afterCompletion(MyHandlerInterceptor[] interceptors, int applied, HttpServletRequest req,
+                                HttpServletResponse resp, Method handler, Exception ex) {
+        for (int i = applied - 1; i >= 0; i--) {
+            try {
+                interceptors[i].afterCompletion(req, resp, handler, ex);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static boolean matchesAny(String[] patterns, String url) {
+        for (String pattern : patterns) {
+            if (matches(segments(pattern), 0, segments(url), 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String[] pattern, int p, String[] url, int u) {
+        if (p == pattern.length) {
+            return u == url.length;
+        }
+        if ("**".equals(pattern[p])) {
+            for (int k = u; k <= url.length; k++) {
+                if (matches(pattern, p + 1, url, k)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (u == url.length || (!"*".equals(pattern[p]) && !pattern[p].equals(url[u]))) {
+            return false;
+        }
+        return matches(pattern, p + 1, url, u + 1);
+    }
+
+    private static String[] segments(String path) {
+        String trimmed = path.replaceAll("/+", "/").replaceAll("^/|/$", "");
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("/");
+    }
+}
@@ -0,0 +1,77 @@
+package com.ls.spring.framework.v2;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+// 控制器方法调用器，在init中为每个Handler创建一次
+public interface HandlerInvoker {
+
+    // 调用方式：generated（默认，有编译期生成的注册表时调用生成的代码，否则同methodHandle）、methodHandle或reflect
+    String GENERATED = "generated";
+    String METHOD_HANDLE = "methodHandle";
+    String REFLECT = "reflect";
+
+    // 调用控制器方法，方法抛出的异常统一包装为InvocationTargetException，与Method.invoke保持一致；
+    // Error（OutOfMemoryError、StackOverflowError等）不包装，原样抛出
+    Object invoke(Object[] args) throws Exception;
+
+    // 按配置创建调用器，MethodHandle创建失败时退回反射调用；generated在这里同methodHandle
+    static HandlerInvoker create(String mode, Method method, Object controller) {
+        if (REFLECT.equals(mode)) {
+            return reflective(method, controller);
+        }
+        try {
+            return methodHandle(method, controller);
+        } catch (IllegalAccessException e) {
+            return reflective(method, controller);
+        }
+    }
+
+    // 反射调用
+    static HandlerInvoker reflective(Method method, Object controller) {
+        method.setAccessible(true);
+        return args -> {
+            try {
+                return method.invoke(controller, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        };
+    }
+
+    // 编译期生成的直接调用
+    static HandlerInvoker generated(ComponentRegistry.Invoker invoker, Object controller) {
+        return args -> {
+            try {
+                return invoker.invoke(controller, args);
+            } catch (Exception e) {
+                throw new InvocationTargetException(e);
+            }
+        };
+    }
+
+    // MethodHandle调用：预先绑定控制器实例，并展开为固定参数个数，调用时无需访问检查
+    static HandlerInvoker methodHandle(Method method, Object controller) throws IllegalAccessException {
+        method.setAccessible(true);
+        int arity = method.getParameterTypes().length;
+        MethodHandle handle = MethodHandles.lookup().unreflect(method)
+                .bindTo(controller)
+                .asSpreader(Object[].class, arity)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return args -> {
+            try {
+                return (Object) handle.invokeExact(args);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+// HEAD请求的响应：和GET一样处理，响应体只计数不写出；同步处理结束后，没有设置过Content-Length时按字节数设置（与HttpServlet.doHead相同）
+// 内嵌服务器自己去掉HEAD请求的响应体，不需要包装
+final class HeadResponse extends HttpServletResponseWrapper {
+
+    private final ServletOutputStream body = new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        // 总是可写，注册后立即通知一次
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                writeListener.onWritePossible();
+            } catch (IOException e) {
+                writeListener.onError(e);
+            }
+        }
+    };
+    private boolean streamUsed;
+    private PrintWriter writer;
+    private long count;
+    private boolean lengthSet;
+
+    HeadResponse(HttpServletResponse response) {
+        super(response);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("已经调用过getWriter()！");
+        }
+        streamUsed = true;
+        return body;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (streamUsed) {
+            throw new IllegalStateException("已经调用过getOutputStream()！");
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(body, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        lengthSet = true;
+        super.setContentLength(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        lengthSet = true;
+        super.setContentLengthLong(len);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        lengthSet |= "Content-Length".equalsIgnoreCase(name);
+        super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        lengthSet |= "Content-Length".equalsIgnoreCase(name);
+        super.addHeader(name, value);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+        count = 0;
+        super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        lengthSet = false;
+        super.reset();
+    }
+
+    // 同步处理结束时调用
+    void finish() {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (!lengthSet && !isCommitted()) {
+            super.setContentLengthLong(count);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+// 内嵌服务器的一个连接，只在选择器线程中读写
+// 读到的字节先累积在in中，解析出完整的请求后交给工作线程；同一连接上的请求按顺序逐个处理，
+// 管线化发来的后续请求留在in中，上一个响应写完后再解析；100 Continue也经过out写出，没写完时同样暂停解析
+final class HttpConnection {
+
+    // 请求行和请求头的最大长度
+    private static final int MAX_HEADER_BYTES = 8192;
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    final SocketChannel channel;
+    final SelectionKey key;
+    private final String remoteAddr;
+    private final int maxBodyBytes;
+    // 从缓冲池借出的缓冲区，请求较大时in会换成更大的数组，连接关闭时归还
+    private final byte[] pooled;
+    // 已读入但还未解析的字节为in[0, inLength)
+    private byte[] in;
+    private int inLength;
+    // 待写出的响应或100 Continue
+    private ByteBuffer out;
+    // 已有请求交给工作线程，响应写完前不再解析后续请求
+    boolean busy;
+    // 当前请求的连接属性
+    boolean keepAlive;
+    boolean head;
+    // 已为当前请求发送过100 Continue
+    private boolean continued;
+    long lastActive = System.nanoTime();
+
+    HttpConnection(SocketChannel channel, SelectionKey key, int maxBodyBytes) {
+        this.channel = channel;
+        this.key = key;
+        this.maxBodyBytes = maxBodyBytes;
+        this.pooled = ReturnValueWriters.acquire();
+        this.in = pooled;
+        String address;
+        try {
+            address = channel.getRemoteAddress().toString();
+        } catch (IOException e) {
+            address = null;
+        }
+        this.remoteAddr = address;
+    }
+
+    // 读入可读的字节，对端关闭时返回false
+    boolean read() throws IOException {
+        if (inLength == in.length) {
+            // 缓冲区已满但还没有完整的请求，说明请求体较大，此时已经检查过长度上限
+            in = Arrays.copyOf(in, in.length * 2);
+        }
+        int n = channel.read(ByteBuffer.wrap(in, inLength, in.length - inLength));
+        if (n < 0) {
+            return false;
+        }
+        inLength += n;
+        lastActive = System.nanoTime();
+        return true;
+    }
+
+    // 解析下一个完整的请求，数据不完整时返回null；请求不合法时抛出BadRequest
+    // 请求体整个缓冲在in中，读完后再复制为EmbeddedRequest的body：Content-Length在头部解析时就检查上限，
+    // 超过maxBodyBytes直接应答413，因此一个连接最多占用约2倍maxBodyBytes的内存
+    EmbeddedRequest poll() throws IOException {
+        if (out != null) {
+            return null;
+        }
+        int headerEnd = indexOfHeaderEnd();
+        if (headerEnd < 0) {
+            if (inLength >= MAX_HEADER_BYTES) {
+                throw new BadRequest(431);
+            }
+            return null;
+        }
+        String[] lines = new String(in, 0, headerEnd, StandardCharsets.ISO_8859_1).split("\r\n");
+        int first = 0;
+        // 请求之间允许有多余的空行
+        while (first < lines.length && lines[first].isEmpty()) {
+            first++;
+        }
+        if (first == lines.length) {
+            consume(headerEnd + 4);
+            return poll();
+        }
+        String[] requestLine = lines[first].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.") || !requestLine[1].startsWith("/")) {
+            throw new BadRequest(HttpServletResponse.SC_BAD_REQUEST);
+        }
+        TreeMap<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = first + 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                throw new BadRequest(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            headers.computeIfAbsent(lines[i].substring(0, colon).trim(), k -> new ArrayList<>(1))
+                    .add(lines[i].substring(colon + 1).trim());
+        }
+        if (headers.containsKey("Transfer-Encoding")) {
+            // 分块上传的请求体暂不支持
+            throw new BadRequest(HttpServletResponse.SC_NOT_IMPLEMENTED);
+        }
+        long contentLength = 0;
+        List<String> length = headers.get("Content-Length");
+        if (length != null) {
+            try {
+                contentLength = Long.parseLong(length.get(0));
+            } catch (NumberFormatException e) {
+                throw new BadRequest(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            if (contentLength < 0) {
+                throw new BadRequest(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            if (contentLength > maxBodyBytes) {
+                throw new BadRequest(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            }
+        }
+        int total = headerEnd + 4 + (int) contentLength;
+        if (inLength < total) {
+            if (in.length < total) {
+                in = Arrays.copyOf(in, total);
+            }
+            List<String> expect = headers.get("Expect");
+            if (!continued && expect != null && "100-continue".equalsIgnoreCase(expect.get(0))) {
+                continued = true;
+                out = ByteBuffer.wrap(CONTINUE);
+                flush();
+            }
+            return null;
+        }
+        byte[] body = Arrays.copyOfRange(in, headerEnd + 4, total);
+        consume(total);
+        continued = false;
+
+        String protocol = requestLine[2];
+        List<String> connection = headers.get("Connection");
+        String connectionValue = connection == null ? null : connection.get(0);
+        keepAlive = "HTTP/1.0".equals(protocol) ? "keep-alive".equalsIgnoreCase(connectionValue) : !"close".equalsIgnoreCase(connectionValue);
+        head = "HEAD".equals(requestLine[0]);
+        return new EmbeddedRequest(requestLine[0], requestLine[1], protocol, headers, body, remoteAddr);
+    }
+
+    // 设置待写出的响应并尽量写出，全部写完时返回true
+    boolean respond(ByteBuffer response) throws IOException {
+        out = response;
+        return flush();
+    }
+
+    // 还有没写完的响应或100 Continue
+    boolean writing() {
+        return out != null;
+    }
+
+    // 继续写出响应，全部写完时返回true
+    boolean flush() throws IOException {
+        channel.write(out);
+        lastActive = System.nanoTime();
+        if (out.hasRemaining()) {
+            return false;
+        }
+        out = null;
+        return true;
+    }
+
+    void close() {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 已关闭
+        }
+        if (in != null) {
+            in = null;
+            ReturnValueWriters.release(pooled);
+        }
+    }
+
+    private int indexOfHeaderEnd() {
+        int limit = Math.min(inLength, MAX_HEADER_BYTES) - 3;
+        for (int i = 0; i < limit; i++) {
+            if (in[i] == '\r' && in[i + 1] == '\n' && in[i + 2] == '\r' && in[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 去掉已解析的字节，管线化的后续请求移到缓冲区开头
+    private void consume(int count) {
+        System.arraycopy(in, count, in, 0, inLength - count);
+        inLength -= count;
+    }
+
+    static String formatDate(long millis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+    }
+
+    static String reason(int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 201:
+                return "Created";
+            case 204:
+                return "No Content";
+            case 301:
+                return "Moved Permanently";
+            case 302:
+                return "Found";
+            case 304:
+                return "Not Modified";
+            case 400:
+                return "Bad Request";
+            case 401:
+                return "Unauthorized";
+            case 403:
+                return "Forbidden";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            case 413:
+                return "Payload Too Large";
+            case 429:
+                return "Too Many Requests";
+            case 431:
+                return "Request Header Fields Too Large";
+            case 500:
+                return "Internal Server Error";
+            case 501:
+                return "Not Implemented";
+            case 503:
+                return "Service Unavailable";
+            default:
+                return "Unknown";
+        }
+    }
+
+    // 请求不合法，按状态码应答后关闭连接
+    static final class BadRequest extends IOException {
+        final int status;
+
+        BadRequest(int status) {
+            super(reason(status));
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.ls.spring.framework.v2;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// JSON反序列化器，按类型缓存；普通类在创建时预先生成字段名到字段写入器的映射，解析时不再反射
+final class JsonDeserializers {
+
+    // 从输入中读出一个值
+    interface Deserializer {
+        Object read(JsonInput in) throws IOException;
+    }
+
+    private static final Map<Type, Deserializer> CACHE = new ConcurrentHashMap<>();
+    // 正在创建的普通类反序列化器（已包装为可接受null），只在持有锁时访问，用于处理类之间的循环引用
+    private static final Map<Class<?>, Deserializer> BUILDING = new HashMap<>();
+
+    // 目标类型为Object时按JSON内容选择：对象为LinkedHashMap，数组为ArrayList，整数为Long，小数为Double
+    private static final Deserializer DYNAMIC = new Deserializer() {
+        @Override
+        public Object read(JsonInput in) throws IOException {
+            int b = in.peek();
+            if (b == '{') {
+                Map<String, Object> map = new LinkedHashMap<>();
+                in.begin('{');
+                if (!in.endIf('}')) {
+                    do {
+                        String key = in.readString();
+                        in.expect(':');
+                        map.put(key, read(in));
+                    } while (in.consumeIf(','));
+                    in.end('}');
+                }
+                return map;
+            }
+            if (b == '[') {
+                List<Object> list = new ArrayList<>();
+                in.begin('[');
+                if (!in.endIf(']')) {
+                    do {
+                        list.add(read(in));
+                    } while (in.consumeIf(','));
+                    in.end(']');
+                }
+                return list;
+            }
+            if (b == '"') {
+                return in.readString();
+            }
+            if (b == 't' || b == 'f') {
+                return in.readBoolean();
+            }
+            if (in.readNull()) {
+                return null;
+            }
+            String number = in.readNumber();
+            if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    return new BigInteger(number);
+                }
+            }
+            return Double.parseDouble(number);
+        }
+    };
+
+    private JsonDeserializers() {
+    }
+
+    static Deserializer forType(Type type) {
+        Deserializer deserializer = CACHE.get(type);
+        if (deserializer != null) {
+            return deserializer;
+        }
+        return build(type);
+    }
+
+    private static synchronized Deserializer build(Type type) {
+        Deserializer deserializer = CACHE.get(type);
+        if (deserializer == null && type instanceof Class) {
+            deserializer = BUILDING.get(type);
+        }
+        if (deserializer != null) {
+            return deserializer;
+        }
+        deserializer = create(type);
+        CACHE.put(type, deserializer);
+        return deserializer;
+    }
+
+    private static Deserializer create(Type type) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            Type[] args = parameterized.getActualTypeArguments();
+            if (Collection.class.isAssignableFrom(raw)) {
+                return nullable(collection(raw, forType(bound(args[0]))));
+            }
+            if (Map.class.isAssignableFrom(raw)) {
+                return nullable(map(raw, key(bound(args[0])), forType(bound(args[1]))));
+            }
+            return forType(raw);
+        }
+        if (type instanceof GenericArrayType) {
+            Type component = ((GenericArrayType) type).getGenericComponentType();
+            return nullable(array(rawClass(component), forType(component)));
+        }
+        if (!(type instanceof Class)) {
+            // 类型变量、通配符等无法确定实际类型
+            return DYNAMIC;
+        }
+        Class<?> clazz = (Class<?>) type;
+        Deserializer scalar = scalar(clazz);
+        if (scalar != null) {
+            return clazz.isPrimitive() ? primitive(scalar) : nullable(scalar);
+        }
+        if (clazz == Object.class) {
+            return DYNAMIC;
+        }
+        if (clazz.isArray()) {
+            return nullable(array(clazz.getComponentType(), forType(clazz.getComponentType())));
+        }
+        if (Collection.class.isAssignableFrom(clazz)) {
+            return nullable(collection(clazz, DYNAMIC));
+        }
+        if (Map.class.isAssignableFrom(clazz)) {
+            return nullable(map(clazz, key(String.class), DYNAMIC));
+        }
+        // 先登记再创建字段，字段类型引用回本类时拿到同一个实例，和非递归的字段一样接受null；创建完成后才对其他线程可见
+        BeanDeserializer bean = new BeanDeserializer();
+        Deserializer deserializer = nullable(bean);
+        BUILDING.put(clazz, deserializer);
+        try {
+            bean.init(clazz);
+        } finally {
+            BUILDING.remove(clazz);
+        }
+        return deserializer;
+    }
+
+    // 字符串、数字、布尔、枚举
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Deserializer scalar(Class<?> clazz) {
+        if (clazz == String.class || clazz == CharSequence.class) {
+            return JsonInput::readString;
+        }
+        if (clazz == int.class || clazz == Integer.class) {
+            return in -> (int) range(in, in.readLong(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        if (clazz == long.class || clazz == Long.class) {
+            return JsonInput::readLong;
+        }
+        if (clazz == short.class || clazz == Short.class) {
+            return in -> (short) range(in, in.readLong(), Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+        if (clazz == byte.class || clazz == Byte.class) {
+            return in -> (byte) range(in, in.readLong(), Byte.MIN_VALUE, Byte.MAX_VALUE);
+        }
+        if (clazz == double.class || clazz == Double.class) {
+            return JsonInput::readDouble;
+        }
+        if (clazz == float.class || clazz == Float.class) {
+            return in -> (float) in.readDouble();
+        }
+        if (clazz == boolean.class || clazz == Boolean.class) {
+            return JsonInput::readBoolean;
+        }
+        if (clazz == char.class || clazz == Character.class) {
+            return in -> {
+                String s = in.readString();
+                if (s.length() != 1) {
+                    throw in.error("应为单个字符");
+                }
+                return s.charAt(0);
+            };
+        }
+        if (clazz == BigDecimal.class) {
+            return in -> new BigDecimal(in.readNumber());
+        }
+        if (clazz == BigInteger.class) {
+            return in -> new BigInteger(in.readNumber());
+        }
+        if (clazz.isEnum()) {
+            // 预先建立名称到枚举常量的映射
+            Map<String, Object> constants = new HashMap<>();
+            for (Object constant : clazz.getEnumConstants()) {
+                constants.put(((Enum) constant).name(), constant);
+            }
+            return in -> {
+                Object constant = constants.get(in.readString());
+                if (constant == null) {
+                    throw in.error("不是" + clazz.getName() + "的常量");
+                }
+                return constant;
+            };
+        }
+        return null;
+    }
+
+    private static long range(JsonInput in, long value, long min, long max) {
+        if (value < min || value > max) {
+            throw in.error("整数超出范围");
+        }
+        return value;
+    }
+
+    // 基本类型不接受null
+    private static Deserializer primitive(Deserializer deserializer) {
+        return in -> {
+            if (in.peek() == 'n') {
+                throw in.error("基本类型不能为null");
+            }
+            return deserializer.read(in);
+        };
+    }
+
+    private static Deserializer nullable(Deserializer deserializer) {
+        return in -> in.readNull() ? null : deserializer.read(in);
+    }
+
+    private static Deserializer array(Class<?> componentType, Deserializer element) {
+        return in -> {
+            List<Object> list = new ArrayList<>();
+            readArray(in, element, list);
+            Object array = Array.newInstance(componentType, list.size());
+            for (int i = 0; i < list.size(); i++) {
+                Array.set(array, i, list.get(i));
+            }
+            return array;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Deserializer collection(Class<?> type, Deserializer element) {
+        Supplier<Object> factory = factory(type, Set.class.isAssignableFrom(type) ? LinkedHashSet::new : ArrayList::new);
+        return in -> {
+            Collection<Object> collection = (Collection<Object>) factory.get();
+            readArray(in, element, collection);
+            return collection;
+        };
+    }
+
+    private static void readArray(JsonInput in, Deserializer element, Collection<Object> out) throws IOException {
+        in.begin('[');
+        if (in.endIf(']')) {
+            return;
+        }
+        do {
+            out.add(element.read(in));
+        } while (in.consumeIf(','));
+        in.end(']');
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Deserializer map(Class<?> type, ParamBinders.Parser key, Deserializer value) {
+        Supplier<Object> factory = factory(type, LinkedHashMap::new);
+        return in -> {
+            Map<Object, Object> map = (Map<Object, Object>) factory.get();
+            in.begin('{');
+            if (in.endIf('}')) {
+                return map;
+            }
+            do {
+                Object k = key.parse(in.readString());
+                in.expect(':');
+                map.put(k, value.read(in));
+            } while (in.consumeIf(','));
+            in.end('}');
+            return map;
+        };
+    }
+
+    // Map的key在JSON中总是字符串，按key类型转换
+    private static ParamBinders.Parser key(Type type) {
+        return ParamBinders.parser(type instanceof Class ? (Class<?>) type : String.class);
+    }
+
+    // 接口和抽象类用默认实现，具体类用无参构造方法
+    private static Supplier<Object> factory(Class<?> type, Supplier<Object> defaultFactory) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return defaultFactory;
+        }
+        MethodHandle constructor = constructor(type);
+        return () -> newInstance(constructor);
+    }
+
+    private static MethodHandle constructor(Class<?> type) {
+        try {
+            java.lang.reflect.Constructor<?> c = type.getDeclaredConstructor();
+            c.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("请求体类型需要无参构造方法：" + type.getName(), e);
+        }
+    }
+
+    private static Object newInstance(MethodHandle constructor) {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException("创建请求体对象失败！", t);
+        }
+    }
+
+    // 通配符取上界
+    private static Type bound(Type type) {
+        if (type instanceof WildcardType) {
+            return ((WildcardType) type).getUpperBounds()[0];
+        }
+        return type;
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        return Object.class;
+    }
+
+    // 普通类：按字段名写入，跳过static、transient和final字段，JSON中多余的字段忽略
+    private static final class BeanDeserializer implements Deserializer {
+        private MethodHandle constructor;
+        // 字段名到下标
+        private Map<String, Integer> indexes;
+        private MethodHandle[] setters;
+        private Deserializer[] deserializers;
+
+        private void init(Class<?> clazz) {
+            constructor = constructor(clazz);
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !Modifier.isFinal(modifiers)
+                            && !field.isSynthetic()) {
+                        fields.add(field);
+                    }
+                }
+            }
+            indexes = new HashMap<>();
+            setters = new MethodHandle[fields.size()];
+            deserializers = new Deserializer[fields.size()];
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                field.setAccessible(true);
+                // 子类的字段在前，同名时以子类为准
+                indexes.putIfAbsent(field.getName(), i);
+                try {
+                    setters[i] = lookup.unreflectSetter(field)
+                            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("无法访问字段：" + field, e);
+                }
+                deserializers[i] = forType(field.getGenericType());
+            }
+        }
+
+        @Override
+        public Object read(JsonInput in) throws IOException {
+            Object bean = newInstance(constructor);
+            in.begin('{');
+            if (in.endIf('}')) {
+                return bean;
+            }
+            do {
+                Integer index = indexes.get(in.readString());
+                in.expect(':');
+                if (index == null) {
+                    in.skipValue();
+                    continue;
+                }
+                Object value = deserializers[index].read(in);
+                try {
+                    setters[index].invokeExact(bean, value);
+                } catch (Throwable t) {
+                    throw new IllegalStateException("写入字段失败！", t);
+                }
+            } while (in.consumeIf(','));
+            in.end('}');
+            return bean;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.ls.spring.framework.v2;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// JSON输入：从输入流分块读入复用的缓冲区，边读边解析，不把请求体整体读成String
+// 字符串按UTF-8逐字节解码到复用的StringBuilder中，数字直接按字节累加
+final class JsonInput {
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+    // 已读取的字节数，用于错误信息中的位置
+    private long consumed;
+    private final StringBuilder chars = new StringBuilder();
+    // 对象和数组的最大嵌套层数，解析是递归的，限制层数避免深层嵌套的请求体导致栈溢出
+    private final int maxDepth;
+    private int depth;
+
+    static final int DEFAULT_MAX_DEPTH = 512;
+
+    JsonInput(InputStream in, byte[] buffer) {
+        this(in, buffer, DEFAULT_MAX_DEPTH);
+    }
+
+    JsonInput(InputStream in, byte[] buffer, int maxDepth) {
+        this.in = in;
+        this.buffer = buffer;
+        this.maxDepth = maxDepth;
+    }
+
+    // 跳过空白后的下一个字节，不消费；已到结尾时返回-1
+    int peek() throws IOException {
+        for (;;) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            byte b = buffer[pos];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return b;
+            }
+            pos++;
+        }
+    }
+
+    void expect(char c) throws IOException {
+        if (peek() != c) {
+            throw error("应为'" + c + "'");
+        }
+        pos++;
+    }
+
+    // 进入对象或数组：消费开始符'{'或'['，嵌套超出maxDepth时报错
+    void begin(char c) throws IOException {
+        expect(c);
+        if (++depth > maxDepth) {
+            throw error("嵌套超出" + maxDepth + "层");
+        }
+    }
+
+    // 下一个字节为结束符c时消费并退出一层，用于空对象和空数组
+    boolean endIf(char c) throws IOException {
+        if (consumeIf(c)) {
+            depth--;
+            return true;
+        }
+        return false;
+    }
+
+    // 消费结束符'}'或']'并退出一层
+    void end(char c) throws IOException {
+        expect(c);
+        depth--;
+    }
+
+    // 下一个字节为c时消费并返回true
+    boolean consumeIf(char c) throws IOException {
+        if (peek() == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    // 读取到结尾时只剩空白
+    void expectEnd() throws IOException {
+        if (peek() != -1) {
+            throw error("JSON之后还有多余内容");
+        }
+    }
+
+    boolean readNull() throws IOException {
+        if (peek() != 'n') {
+            return false;
+        }
+        literal("null");
+        return true;
+    }
+
+    boolean readBoolean() throws IOException {
+        int b = peek();
+        if (b == 't') {
+            literal("true");
+            return true;
+        }
+        if (b == 'f') {
+            literal("false");
+            return false;
+        }
+        throw error("应为true或false");
+    }
+
+    // 整数：逐字节累加，溢出时报错
+    long readLong() throws IOException {
+        int b = peek();
+        boolean negative = b == '-';
+        if (negative) {
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        while ((pos < limit || fill()) && buffer[pos] >= '0' && buffer[pos] <= '9') {
+            int digit = buffer[pos++] - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw error("整数超出范围");
+            }
+            value = value * 10 - digit;
+            digits++;
+        }
+        if (digits == 0) {
+            throw error("应为整数");
+        }
+        if ((pos < limit || fill()) && (buffer[pos] == '.' || buffer[pos] == 'e' || buffer[pos] == 'E')) {
+            throw error("应为整数");
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                throw error("整数超出范围");
+            }
+            value = -value;
+        }
+        return value;
+    }
+
+    double readDouble() throws IOException {
+        return Double.parseDouble(readNumber());
+    }
+
+    // 数字的原始文本，用于小数和BigDecimal等
+    String readNumber() throws IOException {
+        peek();
+        chars.setLength(0);
+        while (pos < limit || fill()) {
+            byte b = buffer[pos];
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+                chars.append((char) b);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (chars.length() == 0) {
+            throw error("应为数字");
+        }
+        return chars.toString();
+    }
+
+    // 带引号的字符串，处理转义，按UTF-8解码
+    String readString() throws IOException {
+        expect('"');
+        chars.setLength(0);
+        for (;;) {
+            int b = next();
+            if (b == '"') {
+                return chars.toString();
+            }
+            if (b == '\\') {
+                escape();
+            } else if (b < 0x80) {
+                if (b < 0x20) {
+                    throw error("字符串中有未转义的控制字符");
+                }
+                chars.append((char) b);
+            } else {
+                utf8(b);
+            }
+        }
+    }
+
+    // 跳过一个任意值，用于目标类型中没有的字段
+    void skipValue() throws IOException {
+        int b = peek();
+        if (b == '"') {
+            readString();
+        } else if (b == '{') {
+            begin('{');
+            if (endIf('}')) {
+                return;
+            }
+            do {
+                readString();
+                expect(':');
+                skipValue();
+            } while (consumeIf(','));
+            end('}');
+        } else if (b == '[') {
+            begin('[');
+            if (endIf(']')) {
+                return;
+            }
+            do {
+                skipValue();
+            } while (consumeIf(','));
+            end(']');
+        } else if (b == 't' || b == 'f') {
+            readBoolean();
+        } else if (b == 'n') {
+            readNull();
+        } else {
+            readNumber();
+        }
+    }
+
+    MyBadRequestException error(String message) {
+        return new MyBadRequestException("JSON格式错误，位置" + (consumed - limit + pos) + "：" + message);
+    }
+
+    private void escape() throws IOException {
+        int b = next();
+        switch (b) {
+            case '"':
+            case '\\':
+            case '/':
+                chars.append((char) b);
+                break;
+            case 'b':
+                chars.append('\b');
+                break;
+            case 'f':
+                chars.append('\f');
+                break;
+            case 'n':
+                chars.append('\n');
+                break;
+            case 'r':
+                chars.append('\r');
+                break;
+            case 't':
+                chars.append('\t');
+                break;
+            case 'u':
+                int c = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(next(), 16);
+                    if (digit < 0) {
+                        throw error("\\u后应为4位十六进制数");
+                    }
+                    c = (c << 4) | digit;
+                }
+                chars.append((char) c);
+                break;
+            default:
+                throw error("不支持的转义字符");
+        }
+    }
+
+    // 多字节UTF-8序列，四字节的码点转为代理对
+    private void utf8(int first) throws IOException {
+        int length;
+        int codePoint;
+        if ((first & 0xE0) == 0xC0) {
+            length = 1;
+            codePoint = first & 0x1F;
+        } else if ((first & 0xF0) == 0xE0) {
+            length = 2;
+            codePoint = first & 0x0F;
+        } else if ((first & 0xF8) == 0xF0) {
+            length = 3;
+            codePoint = first & 0x07;
+        } else {
+            throw error("不是有效的UTF-8编码");
+        }
+        for (int i = 0; i < length; i++) {
+            int b = next();
+            if ((b & 0xC0) != 0x80) {
+                throw error("不是有效的UTF-8编码");
+            }
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        chars.appendCodePoint(codePoint);
+    }
+
+    private void literal(String expected) throws IOException {
+        for (int i = 0; i < expected.length(); i++) {
+            if (next() != expected.charAt(i)) {
+                throw error("应为" + expected);
+            }
+        }
+    }
+
+    // 下一个字节，不跳过空白；已到结尾时报错
+    private int next() throws IOException {
+        if (pos == limit && !fill()) {
+            throw error("内容不完整");
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        consumed += n;
+        return true;
+    }
+}
@@ -0,0 +1,136 @@
+package com.ls.spring.framework.v2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// JSON输出：直接把UTF-8字节写入复用的缓冲区，写满后刷到输出流
+final class JsonOutput {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int pos;
+    // 对象和数组的嵌套层数，序列化是递归的，对象图中有循环引用时在超出上限后报错，而不是栈溢出
+    private int depth;
+
+    JsonOutput(OutputStream out, byte[] buffer) {
+        this.out = out;
+        this.buffer = buffer;
+    }
+
+    // 开始对象或数组：写出'{'或'['，嵌套超出上限时报错
+    void begin(char c) throws IOException {
+        if (++depth > JsonInput.DEFAULT_MAX_DEPTH) {
+            throw new IllegalStateException("JSON嵌套超出" + JsonInput.DEFAULT_MAX_DEPTH + "层，对象之间可能有循环引用");
+        }
+        writeByte(c);
+    }
+
+    // 结束对象或数组：写出'}'或']'并退出一层
+    void end(char c) throws IOException {
+        writeByte(c);
+        depth--;
+    }
+
+    void writeByte(int b) throws IOException {
+        if (pos == buffer.length) {
+            flush();
+        }
+        buffer[pos++] = (byte) b;
+    }
+
+    void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - pos) {
+            flush();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    // 只含ASCII字符的内容（数字、true/false等），不需要转义和编码
+    void writeAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            writeByte(s.charAt(i));
+        }
+    }
+
+    void writeLong(long value) throws IOException {
+        writeAscii(Long.toString(value));
+    }
+
+    // 写出带引号的字符串，转义后按UTF-8编码
+    void writeString(CharSequence s) throws IOException {
+        writeByte('"');
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    writeByte('\\');
+                    writeByte(c);
+                } else if (c < 0x20) {
+                    writeControl(c);
+                } else {
+                    writeByte(c);
+                }
+            } else if (c < 0x800) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                writeByte(0xF0 | (cp >> 18));
+                writeByte(0x80 | ((cp >> 12) & 0x3F));
+                writeByte(0x80 | ((cp >> 6) & 0x3F));
+                writeByte(0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符
+                writeByte('?');
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeControl(char c) throws IOException {
+        writeByte('\\');
+        switch (c) {
+            case '\n':
+                writeByte('n');
+                break;
+            case '\r':
+                writeByte('r');
+                break;
+            case '\t':
+                writeByte('t');
+                break;
+            case '\b':
+                writeByte('b');
+                break;
+            case '\f':
+                writeByte('f');
+                break;
+            default:
+                writeByte('u');
+                writeByte('0');
+                writeByte('0');
+                writeByte(HEX[c >> 4]);
+                writeByte(HEX[c & 0xF]);
+                break;
+        }
+    }
+
+    void flush() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+}
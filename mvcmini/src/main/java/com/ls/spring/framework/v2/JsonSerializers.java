@@ -0,0 +1,334 @@
+package com.ls.spring.framework.v2;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// JSON序列化器，按类缓存；普通类在创建时预先生成字段访问器和转义后的字段名，序列化时不再反射
+final class JsonSerializers {
+
+    // 把一个值写成JSON
+    interface Serializer {
+        void write(Object value, JsonOutput out) throws IOException;
+    }
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Map<Class<?>, Serializer> CACHE = new ConcurrentHashMap<>();
+    // 本次创建中已生成的序列化器，只在持有锁时访问：字段类型引用回正在创建的类时拿到同一个实例，
+    // 最外层的创建成功后整批放入CACHE，失败时整批丢弃，其他线程看不到未初始化完的序列化器
+    private static final Map<Class<?>, Serializer> BUILDING = new HashMap<>();
+    // build的递归层数，只在持有锁时访问
+    private static int buildDepth;
+    private static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<>();
+
+    // 声明类型不能确定实际类型时，按运行时类型查找
+    private static final Serializer DYNAMIC = (value, out) -> {
+        if (value == null) {
+            out.writeBytes(NULL);
+        } else {
+            forClass(value.getClass()).write(value, out);
+        }
+    };
+
+    static {
+        WRAPPERS.put(int.class, Integer.class);
+        WRAPPERS.put(long.class, Long.class);
+        WRAPPERS.put(boolean.class, Boolean.class);
+        WRAPPERS.put(double.class, Double.class);
+        WRAPPERS.put(float.class, Float.class);
+        WRAPPERS.put(short.class, Short.class);
+        WRAPPERS.put(byte.class, Byte.class);
+        WRAPPERS.put(char.class, Character.class);
+    }
+
+    private JsonSerializers() {
+    }
+
+    // 按声明类型创建序列化器：final类、数组、枚举的实际类型确定，直接使用对应的序列化器
+    static Serializer forType(Class<?> type) {
+        if (type.isPrimitive()) {
+            return forClass(WRAPPERS.get(type));
+        }
+        if (type.isArray() || type.isEnum() || Modifier.isFinal(type.getModifiers())) {
+            return nullSafe(forClass(type));
+        }
+        return DYNAMIC;
+    }
+
+    static Serializer forClass(Class<?> clazz) {
+        Serializer serializer = CACHE.get(clazz);
+        if (serializer != null) {
+            return serializer;
+        }
+        return build(clazz);
+    }
+
+    private static synchronized Serializer build(Class<?> clazz) {
+        Serializer serializer = CACHE.get(clazz);
+        if (serializer == null) {
+            serializer = BUILDING.get(clazz);
+        }
+        if (serializer != null) {
+            return serializer;
+        }
+        buildDepth++;
+        try {
+            serializer = builtIn(clazz);
+            if (serializer == null) {
+                // 先登记再创建字段，字段类型引用回本类时拿到同一个实例
+                BeanSerializer bean = new BeanSerializer();
+                BUILDING.put(clazz, bean);
+                bean.init(clazz);
+                serializer = bean;
+            } else {
+                BUILDING.put(clazz, serializer);
+            }
+            if (buildDepth == 1) {
+                CACHE.putAll(BUILDING);
+            }
+            return serializer;
+        } finally {
+            if (--buildDepth == 0) {
+                BUILDING.clear();
+            }
+        }
+    }
+
+    private static Serializer nullSafe(Serializer serializer) {
+        return (value, out) -> {
+            if (value == null) {
+                out.writeBytes(NULL);
+            } else {
+                serializer.write(value, out);
+            }
+        };
+    }
+
+    // JDK自带类型的序列化器，普通类返回null
+    private static Serializer builtIn(Class<?> clazz) {
+        if (CharSequence.class.isAssignableFrom(clazz)) {
+            return (value, out) -> out.writeString((CharSequence) value);
+        }
+        if (clazz == Integer.class || clazz == Long.class || clazz == Short.class || clazz == Byte.class) {
+            return (value, out) -> out.writeLong(((Number) value).longValue());
+        }
+        if (clazz == Double.class || clazz == Float.class) {
+            return (value, out) -> {
+                double d = ((Number) value).doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    out.writeBytes(NULL);
+                } else {
+                    out.writeAscii(value.toString());
+                }
+            };
+        }
+        if (Number.class.isAssignableFrom(clazz) || clazz == Boolean.class) {
+            return (value, out) -> out.writeAscii(value.toString());
+        }
+        if (clazz == Character.class) {
+            return (value, out) -> out.writeString(value.toString());
+        }
+        if (clazz.isEnum() || (clazz.getSuperclass() != null && clazz.getSuperclass().isEnum())) {
+            return enumSerializer(clazz.isEnum() ? clazz : clazz.getSuperclass());
+        }
+        if (Map.class.isAssignableFrom(clazz)) {
+            return JsonSerializers::writeMap;
+        }
+        if (Iterable.class.isAssignableFrom(clazz)) {
+            return JsonSerializers::writeIterable;
+        }
+        if (clazz.isArray()) {
+            return arraySerializer(clazz.getComponentType());
+        }
+        String name = clazz.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.")) {
+            // 日期、UUID等JDK类型，不访问其内部字段，写出toString()
+            return (value, out) -> out.writeString(value.toString());
+        }
+        return null;
+    }
+
+    // 枚举：预先生成每个常量带引号的名字
+    private static Serializer enumSerializer(Class<?> enumType) {
+        Object[] constants = enumType.getEnumConstants();
+        byte[][] names = new byte[constants.length][];
+        for (int i = 0; i < constants.length; i++) {
+            names[i] = quoted(((Enum<?>) constants[i]).name());
+        }
+        return (value, out) -> out.writeBytes(names[((Enum<?>) value).ordinal()]);
+    }
+
+    private static void writeMap(Object value, JsonOutput out) throws IOException {
+        out.begin('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            first = false;
+            out.writeString(String.valueOf(entry.getKey()));
+            out.writeByte(':');
+            DYNAMIC.write(entry.getValue(), out);
+        }
+        out.end('}');
+    }
+
+    private static void writeIterable(Object value, JsonOutput out) throws IOException {
+        out.begin('[');
+        boolean first = true;
+        for (Object element : (Iterable<?>) value) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            first = false;
+            DYNAMIC.write(element, out);
+        }
+        out.end(']');
+    }
+
+    private static Serializer arraySerializer(Class<?> componentType) {
+        if (componentType == byte.class) {
+            return (value, out) -> out.writeString(Base64.getEncoder().encodeToString((byte[]) value));
+        }
+        if (componentType == char.class) {
+            return (value, out) -> out.writeString(new String((char[]) value));
+        }
+        if (componentType == int.class) {
+            return (value, out) -> {
+                int[] array = (int[]) value;
+                out.begin('[');
+                for (int i = 0; i < array.length; i++) {
+                    if (i > 0) {
+                        out.writeByte(',');
+                    }
+                    out.writeLong(array[i]);
+                }
+                out.end(']');
+            };
+        }
+        if (componentType == long.class) {
+            return (value, out) -> {
+                long[] array = (long[]) value;
+                out.begin('[');
+                for (int i = 0; i < array.length; i++) {
+                    if (i > 0) {
+                        out.writeByte(',');
+                    }
+                    out.writeLong(array[i]);
+                }
+                out.end(']');
+            };
+        }
+        if (componentType.isPrimitive()) {
+            // 其余基本类型数组较少使用，逐个装箱
+            Serializer element = forClass(WRAPPERS.get(componentType));
+            return (value, out) -> {
+                int length = Array.getLength(value);
+                out.begin('[');
+                for (int i = 0; i < length; i++) {
+                    if (i > 0) {
+                        out.writeByte(',');
+                    }
+                    element.write(Array.get(value, i), out);
+                }
+                out.end(']');
+            };
+        }
+        Serializer element = forType(componentType);
+        return (value, out) -> {
+            Object[] array = (Object[]) value;
+            out.begin('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                element.write(array[i], out);
+            }
+            out.end(']');
+        };
+    }
+
+    private static byte[] quoted(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.append('"').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 普通类：按字段输出，跳过static和transient字段
+    private static final class BeanSerializer implements Serializer {
+        // 每个字段的前缀，如 "name": 或 ,"name":
+        private byte[][] prefixes;
+        private MethodHandle[] getters;
+        private Serializer[] serializers;
+
+        private void init(Class<?> clazz) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                        fields.add(field);
+                    }
+                }
+            }
+            prefixes = new byte[fields.size()][];
+            getters = new MethodHandle[fields.size()];
+            serializers = new Serializer[fields.size()];
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                field.setAccessible(true);
+                byte[] name = quoted(field.getName());
+                byte[] prefix = new byte[name.length + (i > 0 ? 2 : 1)];
+                int offset = 0;
+                if (i > 0) {
+                    prefix[offset++] = ',';
+                }
+                System.arraycopy(name, 0, prefix, offset, name.length);
+                prefix[prefix.length - 1] = ':';
+                prefixes[i] = prefix;
+                try {
+                    getters[i] = lookup.unreflectGetter(field)
+                            .asType(MethodType.methodType(Object.class, Object.class));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("无法访问字段：" + field, e);
+                }
+                serializers[i] = forType(field.getType());
+            }
+        }
+
+        @Override
+        public void write(Object value, JsonOutput out) throws IOException {
+            out.begin('{');
+            for (int i = 0; i < getters.length; i++) {
+                out.writeBytes(prefixes[i]);
+                Object fieldValue;
+                try {
+                    fieldValue = (Object) getters[i].invokeExact(value);
+                } catch (Throwable t) {
+                    throw new IllegalStateException("读取字段失败！", t);
+                }
+                serializers[i].write(fieldValue, out);
+            }
+            out.end('}');
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// 内置指标接口，按配置的metrics-path注册为普通Handler，输出Prometheus文本格式
+public final class MetricsEndpoint {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final DispatcherMetrics metrics;
+    private final ResponseCache responseCache;
+
+    MetricsEndpoint(DispatcherMetrics metrics, ResponseCache responseCache) {
+        this.metrics = metrics;
+        this.responseCache = responseCache;
+    }
+
+    public String scrape(HttpServletResponse resp) throws IOException {
+        resp.setContentType(CONTENT_TYPE);
+        StringBuilder sb = new StringBuilder(4096);
+        metrics.writePrometheus(sb);
+        responseCache.writePrometheus(sb);
+        return sb.toString();
+    }
+}
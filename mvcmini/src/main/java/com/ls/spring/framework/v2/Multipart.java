@@ -0,0 +1,322 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 一次multipart请求解析出的全部部分，保存在请求属性中，多个@MyRequestPart参数共用
+// 内存中的内容按顺序追加到由池化缓冲区组成的区域中，每个部分只记录起始位置和长度；
+// 区域总长超出memoryThreshold时，正在写入的部分整体转存到临时文件，之后的内容直接写文件，内存占用与上传大小无关
+// 请求结束时close：关闭打开的流，删除临时文件，缓冲区归还到池中
+final class Multipart implements Closeable {
+
+    static final String ATTRIBUTE = Multipart.class.getName();
+
+    private final MultipartParser parser;
+    private final Map<String, List<MyPart>> parts = new LinkedHashMap<>();
+    // 池化的缓冲区，逻辑上连成一段，位置为下标*chunkSize+偏移
+    private final List<byte[]> chunks = new ArrayList<>();
+    private final int chunkSize = ReturnValueWriters.BUFFER_SIZE;
+    private long end;
+    private final List<Path> files = new ArrayList<>();
+    private final List<Closeable> opened = new ArrayList<>();
+    private Part writing;
+
+    Multipart(MultipartParser parser) {
+        this.parser = parser;
+    }
+
+    // 当前请求的解析结果，第一次调用时从输入流解析
+    static Multipart of(HttpServletRequest req, MultipartParser parser) throws IOException {
+        Multipart multipart = (Multipart) req.getAttribute(ATTRIBUTE);
+        if (multipart == null) {
+            multipart = parser.parse(req);
+            req.setAttribute(ATTRIBUTE, multipart);
+        }
+        return multipart;
+    }
+
+    // 请求结束时释放，请求中没有解析过multipart时什么也不做
+    static void cleanup(HttpServletRequest req) {
+        Multipart multipart = (Multipart) req.getAttribute(ATTRIBUTE);
+        if (multipart != null) {
+            req.removeAttribute(ATTRIBUTE);
+            multipart.close();
+        }
+    }
+
+    // 同名的全部部分，按请求中的顺序；没有时返回null
+    List<MyPart> get(String name) {
+        return parts.get(name);
+    }
+
+    // 开始写入一个新的部分，由解析器在读到部分的头之后调用
+    Part add(String name, String filename, String contentType) {
+        Part part = new Part(name, filename, contentType, end);
+        parts.computeIfAbsent(name, k -> new ArrayList<>(1)).add(part);
+        writing = part;
+        return part;
+    }
+
+    @Override
+    public void close() {
+        if (writing != null) {
+            writing.end();
+        }
+        for (Closeable c : opened) {
+            try {
+                c.close();
+            } catch (IOException ignored) {
+                // 已关闭
+            }
+        }
+        opened.clear();
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                ErrorResponses.log(e);
+            }
+        }
+        files.clear();
+        for (byte[] chunk : chunks) {
+            ReturnValueWriters.release(chunk);
+        }
+        chunks.clear();
+        end = 0;
+    }
+
+    private void append(byte[] b, int off, int len) {
+        while (len > 0) {
+            int index = (int) (end / chunkSize);
+            if (index == chunks.size()) {
+                chunks.add(ReturnValueWriters.acquire());
+            }
+            int offset = (int) (end % chunkSize);
+            int n = Math.min(len, chunkSize - offset);
+            System.arraycopy(b, off, chunks.get(index), offset, n);
+            off += n;
+            len -= n;
+            end += n;
+        }
+    }
+
+    // 区域[position, position+length)逐段写出
+    private void copy(long position, long length, Sink sink) throws IOException {
+        while (length > 0) {
+            int offset = (int) (position % chunkSize);
+            int n = (int) Math.min(length, chunkSize - offset);
+            sink.write(chunks.get((int) (position / chunkSize)), offset, n);
+            position += n;
+            length -= n;
+        }
+    }
+
+    // 截断到position，多出的缓冲区归还
+    private void truncate(long position) {
+        end = position;
+        int keep = (int) ((position + chunkSize - 1) / chunkSize);
+        while (chunks.size() > keep) {
+            ReturnValueWriters.release(chunks.remove(chunks.size() - 1));
+        }
+    }
+
+    private interface Sink {
+        void write(byte[] b, int off, int len) throws IOException;
+    }
+
+    // 上传内容超出配置的上限，返回413
+    static final class TooLarge extends IOException {
+        TooLarge(String message) {
+            super(message);
+        }
+    }
+
+    final class Part implements MyPart {
+        private final String name;
+        private final String filename;
+        private final String contentType;
+        // 在内存中时为区域中的起始位置
+        private final long start;
+        private long size;
+        // 转存后的文件，为null时在内存中
+        private Path file;
+        private FileChannel channel;
+
+        private Part(String name, String filename, String contentType, long start) {
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.start = start;
+        }
+
+        // 追加内容，内存不够时转存到临时文件
+        void write(byte[] b, int off, int len) throws IOException {
+            if (size + len > parser.maxPartBytes) {
+                throw new TooLarge("部分" + name + "超出" + parser.maxPartBytes + "字节！");
+            }
+            if (file == null) {
+                if (end + len <= parser.memoryThreshold) {
+                    append(b, off, len);
+                    size += len;
+                    return;
+                }
+                spill();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            size += len;
+        }
+
+        // 内容写完，关闭写文件用的通道
+        void end() {
+            writing = null;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    ErrorResponses.log(e);
+                }
+                channel = null;
+            }
+        }
+
+        private void spill() throws IOException {
+            file = Files.createTempFile(parser.tempDir, "mymvc-", ".part");
+            files.add(file);
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            copy(start, size, (b, off, len) -> {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            });
+            truncate(start);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public boolean isInMemory() {
+            return file == null;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream in = file == null ? new ChunkInputStream(start, size) : Files.newInputStream(file);
+            opened.add(in);
+            return in;
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer() throws IOException {
+            if (file != null) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+            }
+            // 池化的缓冲区在请求结束后会借给其他请求，不能直接包装，总是复制一份
+            return ByteBuffer.wrap(getBytes()).asReadOnlyBuffer();
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            if (file != null) {
+                return Files.readAllBytes(file);
+            }
+            byte[] bytes = new byte[(int) size];
+            int[] n = new int[1];
+            copy(start, size, (b, off, len) -> {
+                System.arraycopy(b, off, bytes, n[0], len);
+                n[0] += len;
+            });
+            return bytes;
+        }
+
+        @Override
+        public void transferTo(Path target) throws IOException {
+            if (file != null) {
+                Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                files.remove(file);
+                file = target;
+                return;
+            }
+            try (OutputStream out = Files.newOutputStream(target)) {
+                copy(start, size, out::write);
+            }
+        }
+    }
+
+    // 读取区域中一段内容的输入流
+    private final class ChunkInputStream extends InputStream {
+        private long position;
+        private final long limit;
+
+        ChunkInputStream(long start, long size) {
+            this.position = start;
+            this.limit = start + size;
+        }
+
+        @Override
+        public int read() {
+            if (position >= limit) {
+                return -1;
+            }
+            byte b = chunks.get((int) (position / chunkSize))[(int) (position % chunkSize)];
+            position++;
+            return b & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= limit) {
+                return -1;
+            }
+            int offset = (int) (position % chunkSize);
+            int n = (int) Math.min(Math.min(len, chunkSize - offset), limit - position);
+            System.arraycopy(chunks.get((int) (position / chunkSize)), offset, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, limit - position);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+// multipart/form-data解析：用一个池化缓冲区从输入流边读边找分隔符，部分的内容直接写到Multipart中，不整体读入内存
+// 各项上限在init时按配置确定，超出时抛出Multipart.TooLarge
+final class MultipartParser {
+
+    private static final String MULTIPART = "multipart/";
+    // 每个部分的头的最大字节数
+    private static final int MAX_HEADER_BYTES = 8192;
+
+    // 按默认配置，用于不经过servlet创建的参数绑定器
+    static final MultipartParser DEFAULT = create(new Properties());
+
+    final long maxPartBytes;
+    final long maxRequestBytes;
+    final long memoryThreshold;
+    final int maxParts;
+    final Path tempDir;
+
+    private MultipartParser(long maxPartBytes, long maxRequestBytes, long memoryThreshold, int maxParts, Path tempDir) {
+        this.maxPartBytes = maxPartBytes;
+        this.maxRequestBytes = maxRequestBytes;
+        this.memoryThreshold = memoryThreshold;
+        this.maxParts = maxParts;
+        this.tempDir = tempDir;
+    }
+
+    static MultipartParser create(Properties config) {
+        String tempDir = config.getProperty("multipart-temp-dir", "").trim();
+        return new MultipartParser(
+                Long.parseLong(config.getProperty("multipart-max-part-bytes", "10485760")),
+                Long.parseLong(config.getProperty("multipart-max-request-bytes", "52428800")),
+                Long.parseLong(config.getProperty("multipart-memory-threshold", "65536")),
+                Integer.parseInt(config.getProperty("multipart-max-parts", "128")),
+                Paths.get(tempDir.isEmpty() ? System.getProperty("java.io.tmpdir") : tempDir));
+    }
+
+    // 解析整个请求体；失败时已写入的缓冲区和临时文件立即释放
+    Multipart parse(HttpServletRequest req) throws IOException {
+        String contentType = req.getContentType();
+        if (contentType == null || !contentType.regionMatches(true, 0, MULTIPART, 0, MULTIPART.length())) {
+            throw new MyBadRequestException("请求不是multipart/form-data！");
+        }
+        String boundary = param(contentType, "boundary");
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw new MyBadRequestException("multipart请求缺少boundary！");
+        }
+        if (req.getContentLength() > maxRequestBytes) {
+            throw new Multipart.TooLarge("请求体超出" + maxRequestBytes + "字节！");
+        }
+        Multipart multipart = new Multipart(this);
+        byte[] buffer = ReturnValueWriters.acquire();
+        try {
+            new Reader(req.getInputStream(), buffer, ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1)).read(multipart);
+            return multipart;
+        } catch (IOException | RuntimeException e) {
+            multipart.close();
+            throw e;
+        } finally {
+            ReturnValueWriters.release(buffer);
+        }
+    }
+
+    // 头的参数值，如Content-Type中的boundary、Content-Disposition中的name和filename；值可以带引号
+    static String param(String header, String name) {
+        int length = header.length();
+        int i = header.indexOf(';');
+        while (i >= 0) {
+            int start = i + 1;
+            int semicolon = header.indexOf(';', start);
+            int eq = header.indexOf('=', start);
+            if (eq < 0) {
+                return null;
+            }
+            if (semicolon >= 0 && semicolon < eq) {
+                // 没有值的参数
+                i = semicolon;
+                continue;
+            }
+            String key = header.substring(start, eq).trim();
+            int p = eq + 1;
+            while (p < length && header.charAt(p) == ' ') {
+                p++;
+            }
+            String value;
+            if (p < length && header.charAt(p) == '"') {
+                // 文件名中可能有反斜杠（如Windows路径），不做转义处理
+                int close = header.indexOf('"', p + 1);
+                if (close < 0) {
+                    close = length;
+                }
+                value = header.substring(p + 1, close);
+                i = header.indexOf(';', Math.min(close + 1, length));
+            } else {
+                value = header.substring(p, semicolon < 0 ? length : semicolon).trim();
+                i = semicolon;
+            }
+            if (key.equalsIgnoreCase(name)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static MyBadRequestException malformed(String message) {
+        return new MyBadRequestException("multipart格式错误：" + message);
+    }
+
+    // 缓冲区中未处理的字节为buf[pos, limit)，不够时整理到开头后继续读
+    private final class Reader {
+        private final InputStream in;
+        private final byte[] buf;
+        // 分隔符：\r\n--boundary
+        private final byte[] delimiter;
+        private int pos;
+        private int limit;
+        private long total;
+
+        Reader(InputStream in, byte[] buf, byte[] delimiter) {
+            this.in = in;
+            this.buf = buf;
+            this.delimiter = delimiter;
+        }
+
+        void read(Multipart multipart) throws IOException {
+            // 第一个分隔符前面没有\r\n，有前导内容时跳过
+            int first = delimiter.length - 2;
+            if (ensure(first) && matches(pos, 2, first)) {
+                pos += first;
+            } else {
+                body(null);
+            }
+            int count = 0;
+            for (;;) {
+                if (!ensure(2)) {
+                    throw malformed("缺少结束分隔符");
+                }
+                if (buf[pos] == '-' && buf[pos + 1] == '-') {
+                    // 结束分隔符之后的内容忽略
+                    return;
+                }
+                while (ensure(1) && (buf[pos] == ' ' || buf[pos] == '\t')) {
+                    pos++;
+                }
+                if (!ensure(2) || buf[pos] != '\r' || buf[pos + 1] != '\n') {
+                    throw malformed("分隔符后缺少换行");
+                }
+                pos += 2;
+                if (++count > maxParts) {
+                    throw new Multipart.TooLarge("部分个数超出" + maxParts + "！");
+                }
+
+                String name = null;
+                String filename = null;
+                String contentType = null;
+                int headerBytes = 0;
+                for (;;) {
+                    int end = lineEnd();
+                    if (end == pos) {
+                        pos += 2;
+                        break;
+                    }
+                    headerBytes += end - pos + 2;
+                    if (headerBytes > MAX_HEADER_BYTES) {
+                        throw malformed("部分的头过长");
+                    }
+                    String line = new String(buf, pos, end - pos, StandardCharsets.UTF_8);
+                    pos = end + 2;
+                    int colon = line.indexOf(':');
+                    if (colon <= 0) {
+                        throw malformed("头格式错误");
+                    }
+                    String headerName = line.substring(0, colon).trim();
+                    String value = line.substring(colon + 1).trim();
+                    if ("Content-Disposition".equalsIgnoreCase(headerName)) {
+                        name = param(value, "name");
+                        filename = param(value, "filename");
+                    } else if ("Content-Type".equalsIgnoreCase(headerName)) {
+                        contentType = value;
+                    }
+                }
+                if (name == null) {
+                    // 没有name的部分无法绑定，跳过
+                    body(null);
+                    continue;
+                }
+                Multipart.Part part = multipart.add(name, filename, contentType);
+                try {
+                    body(part);
+                } finally {
+                    part.end();
+                }
+            }
+        }
+
+        // 读到下一个分隔符为止，内容写入part（为null时丢弃），分隔符本身也被消费；分隔符可能跨两次读取，缓冲区末尾不足一个分隔符长度的字节留到下一轮
+        private void body(Multipart.Part part) throws IOException {
+            for (;;) {
+                int index = indexOf(pos, limit);
+                if (index >= 0) {
+                    if (part != null) {
+                        part.write(buf, pos, index - pos);
+                    }
+                    pos = index + delimiter.length;
+                    return;
+                }
+                int safe = Math.max(pos, limit - delimiter.length + 1);
+                if (part != null && safe > pos) {
+                    part.write(buf, pos, safe - pos);
+                }
+                pos = safe;
+                if (!fill()) {
+                    throw malformed("请求体不完整");
+                }
+            }
+        }
+
+        // 当前行\r\n的位置，一行必须能放进缓冲区
+        private int lineEnd() throws IOException {
+            int scanned = 0;
+            for (;;) {
+                for (int i = pos + scanned; i < limit - 1; i++) {
+                    if (buf[i] == '\r' && buf[i + 1] == '\n') {
+                        return i;
+                    }
+                }
+                scanned = Math.max(0, limit - pos - 1);
+                if (limit - pos == buf.length) {
+                    throw malformed("部分的头过长");
+                }
+                if (!fill()) {
+                    throw malformed("请求体不完整");
+                }
+            }
+        }
+
+        private int indexOf(int from, int to) {
+            byte first = delimiter[0];
+            int last = to - delimiter.length;
+            for (int i = from; i <= last; i++) {
+                if (buf[i] == first && matches(i + 1, 1, delimiter.length - 1)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // buf[at, at+length)与delimiter[offset, offset+length)相同
+        private boolean matches(int at, int offset, int length) {
+            for (int j = 0; j < length; j++) {
+                if (buf[at + j] != delimiter[offset + j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean ensure(int count) throws IOException {
+            while (limit - pos < count) {
+                if (!fill()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // 未处理的字节移到开头，再读入一次；输入流结束时返回false
+        private boolean fill() throws IOException {
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            }
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                return false;
+            }
+            total += n;
+            if (total > maxRequestBytes) {
+                throw new Multipart.TooLarge("请求体超出" + maxRequestBytes + "字节！");
+            }
+            limit += n;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.ls.spring.framework.v2;
+
+// 请求内容不合法：JSON、表单或参数值格式错误，嵌套超出json-max-depth，multipart格式错误，缺少必需的请求体或部分
+// 没有@MyExceptionHandler处理时返回400，不打印调用栈；继承IllegalArgumentException，原有按该类型处理的方法仍然有效
+public class MyBadRequestException extends IllegalArgumentException {
+
+    public MyBadRequestException(String message) {
+        super(message);
+    }
+
+    public MyBadRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -2,51 +2,148 @@ package com.ls.spring.framework.v2;
 
 import com.ls.spring.framework.annotation.*;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.net.URL;
+import java.lang.reflect.Type;
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class MyDispacherServlet extends HttpServlet {
 
     // 配置资源文件
     private Properties contextConfig = new Properties();
-    // 保存扫描到了所有类名
-    private List<String> classNames = new ArrayList<>();
-    // Ioc容器
-    private Map<String, Object> iocMap = new HashMap<>();
-    // url与方法的映射
-    private List<Handler> handlerMapping = new ArrayList<>();
+    // 初始化完成后发布的只读快照，热加载时整体替换，请求线程无需加锁
+    private volatile Registry registry;
+    // 路由查找及各Handler的耗时指标，热加载时保留
+    private final DispatcherMetrics metrics = new DispatcherMetrics();
+    // 标了@MyCacheable的方法的响应缓存，热加载时清空
+    private ResponseCache responseCache;
+    // 可缓存handler的编号，用作缓存key的前缀
+    private static final AtomicInteger CACHE_IDS = new AtomicInteger();
+    // 热加载线程，未开启热加载时为null
+    private ScheduledExecutorService reloader;
+    // 控制器方法执行器，为null时在容器线程中执行
+    private ExecutorService handlerExecutor;
+    // 响应压缩和ETag，都没有开启时为null
+    private ResponseEncoder responseEncoder;
+    // multipart请求的解析上限和临时目录，参数绑定器创建时使用
+    private MultipartParser multipartParser;
+    // JSON请求体的最大嵌套层数
+    private int jsonMaxDepth;
+    // 批量接口中并行执行子请求的线程池，未开启批量接口时为null
+    private ExecutorService batchExecutor;
+    // 执行器中执行或返回CompletionStage的异步请求的超时（毫秒，0为不超时）
+    private long asyncTimeout;
+    // 流式返回值的异步超时（毫秒，0为不超时）和向发布者预先请求的个数
+    private long streamTimeout;
+    private int streamPrefetch;
 
     @Override
     public void init(ServletConfig config) {
+        long start = System.nanoTime();
         // 1.加载配置文件
         doLoadConfig(config);
 
-        // 2.扫描类
-        doScan(contextConfig.getProperty("package-scan"));
+        // 响应缓存，指标接口中会用到，先于HandlerMapping创建
+        responseCache = new ResponseCache(Long.parseLong(contextConfig.getProperty("response-cache-max-bytes", "16777216")));
+        multipartParser = MultipartParser.create(contextConfig);
+        jsonMaxDepth = Integer.parseInt(contextConfig.getProperty("json-max-depth", String.valueOf(JsonInput.DEFAULT_MAX_DEPTH)));
+        batchExecutor = createBatchExecutor();
 
-        // 3.初始化IOC容器，生成扫描的类的实例，放入到IOC容器中
-        doInstance();
+        // 2~5.扫描、实例化、依赖注入、初始化HandlerMapping，构建完成后一次性发布
+        registry = buildRegistry();
 
-        // 4.依赖注入
-        doAutowired();
+        // 6.初始化控制器方法执行器和响应编码
+        handlerExecutor = HandlerExecutors.create(contextConfig);
+        responseEncoder = ResponseEncoder.create(contextConfig);
+        asyncTimeout = Long.parseLong(contextConfig.getProperty("async-timeout", "30000"));
+        streamTimeout = Long.parseLong(contextConfig.getProperty("stream-timeout", "0"));
+        streamPrefetch = Integer.parseInt(contextConfig.getProperty("stream-prefetch", "16"));
+
+        // 7.开启热加载
+        startReloader();
+
+        System.out.println("初始化完成！耗时" + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+
+    // 构建容器和路由快照，所有中间状态都是局部变量，构建完成前对请求线程不可见
+    // 扫描、实例化、建立路由中的任何失败都抛出，不会构建出缺少路由或组件的快照：init时初始化失败，热加载时保留旧快照
+    private Registry buildRegistry() {
+        BeanFactory beans;
+        // 有编译期生成的组件注册表时直接使用，只扫描没有注册表的classpath根，结果合并
+        GeneratedComponents generated = loadGenerated();
+        // 扫描和类加载在同一个ForkJoinPool中并行执行，完成后关闭
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            // 2.扫描类
+            List<String> classNames = doScan(contextConfig.getProperty("package-scan"), generated, pool);
+
+            // 3~4.初始化IOC容器，按依赖关系创建单例并注入
+            beans = doInstance(classNames, generated, pool);
+        } finally {
+            pool.shutdown();
+        }
 
         // 5.初始化HandlerMapping
-        initHandlerMapping();
+        RequestRouter<Handler> router = new RequestRouter<>();
+        List<MyHandlerInterceptor> interceptors = HandlerInterceptors.ordered(beans.interceptors());
+        initHandlerMapping(beans, generated, interceptors, router);
+        initMetricsEndpoint(interceptors, router);
+        initBatchEndpoint(interceptors, router);
+        router.freeze();
+        ExceptionHandlers exceptionHandlers = ExceptionHandlers.create(beans.controllers(),
+                contextConfig.getProperty("handler-invoker", HandlerInvoker.GENERATED));
+
+        return new Registry(beans, router, exceptionHandlers);
+    }
 
-        System.out.println("初始化完成！");
+    // 按配置定时在后台重新构建快照，构建成功后原子替换；构建失败时继续使用旧快照
+    private void startReloader() {
+        if (!Boolean.parseBoolean(contextConfig.getProperty("hot-reload", "false"))) {
+            return;
+        }
+        long interval = Long.parseLong(contextConfig.getProperty("hot-reload-interval", "10"));
+        reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mymvc-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(this::reload, interval, interval, TimeUnit.SECONDS);
+    }
+
+    // 重新构建并替换快照，构建失败时不替换
+    void reload() {
+        try {
+            registry = buildRegistry();
+            responseCache.clear();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
     }
 
     // 加载配置文件
@@ -60,100 +157,72 @@ public class MyDispacherServlet extends HttpServlet {
         }
     }
 
-    // 扫描类
-    private void doScan(String sanPackage) {
-        // 将包路径转换为系统路径，找到目录下的class文件，获取ClassName，并使用反射实例化扫描到的类
-        URL url = this.getClass().getClassLoader().getResource("/" + sanPackage.replaceAll("\\.", "/"));
-        File classpath = new File(url.getFile());
-        // 循环classpath下的文件，如果是文件夹则继续递归打开子文件夹
-        for (File file : classpath.listFiles()) {
-            if (file.isDirectory()) {
-                doScan(sanPackage + "." + file.getName());
-            } else {
-                classNames.add(sanPackage + "." + file.getName().replaceAll(".class", ""));
-            }
+    // 查找编译期生成的组件注册表，关闭generated-registry或没有时返回null
+    private GeneratedComponents loadGenerated() {
+        if (!Boolean.parseBoolean(contextConfig.getProperty("generated-registry", "true"))) {
+            return null;
         }
+        return GeneratedComponents.load(this.getClass().getClassLoader(), contextConfig.getProperty("package-scan"));
     }
 
-    // 将有注解标注的类实例化，方法ioc容器中
-    private void doInstance() {
-        if (classNames.size() == 0) {
-            return;
-        }
-
+    // 扫描类，跳过已有生成的注册表的classpath根
+    private List<String> doScan(String sanPackage, GeneratedComponents generated, ForkJoinPool pool) {
+        // 支持目录和jar包，只解析class文件头，不加载未打注解的类；有索引文件时直接读取索引
         try {
-            for (String className : classNames) {
-                Class<?> clazz = Class.forName(className);
-                // 有注解的类才初始化
-                if (clazz.isAnnotationPresent(MyController.class)) {
-                    Object instance = clazz.newInstance();
-                    iocMap.put(toLowerFirstCase(clazz.getSimpleName()), instance);
-                } else if (clazz.isAnnotationPresent(MyService.class)) {
-                    Object instance = clazz.newInstance();
-                    // 先判断注解中是否有value
-                    MyService serviceAno = clazz.getAnnotation(MyService.class);
-                    String beanName = serviceAno.value();
-                    if ("".equals(beanName)) {
-                        beanName = toLowerFirstCase(clazz.getSimpleName());
-                    }
-                    iocMap.put(beanName, instance);
-                    // 接口注入，将本类的所有接口保存一份本类的实例
-                    for (Class<?> i : clazz.getInterfaces()) {
-                        if (iocMap.containsKey(toLowerFirstCase(i.getName()))) {
-                            throw new RuntimeException("当前接口已初始化实例！");
-                        }
-                        iocMap.put(toLowerFirstCase(i.getSimpleName()), instance);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+            return new ComponentScanner(this.getClass().getClassLoader(), pool)
+                    .scan(sanPackage, generated != null ? generated.roots() : Collections.<String>emptySet());
+        } catch (IOException e) {
+            throw new IllegalStateException("扫描组件失败：" + sanPackage, e);
         }
     }
 
-    // 依赖注入
-    private void doAutowired() {
-        if (iocMap.isEmpty()) {
-            return;
+    // 将有注解标注的类注册到ioc容器中，创建非延迟的单例；classNames为扫描得到、需要加载的类，生成的注册表中的类排在前面
+    private BeanFactory doInstance(List<String> classNames, GeneratedComponents generated, ForkJoinPool pool) {
+        if (classNames.isEmpty() && generated == null) {
+            return new BeanFactory(Collections.<Class<?>>emptyList(), null);
         }
-        // 遍历ico容器，得到每一个实例的字段，检查是否有MyAutowire注解，如果有则注入
-        for (Map.Entry<String, Object> iocEntry : iocMap.entrySet()) {
-            Field[] fields = iocEntry.getValue().getClass().getDeclaredFields();
-            for (Field field : fields) {
-                if (!field.isAnnotationPresent(MyAutowired.class)) {
-                    continue;
-                }
-                // 获取有MyAutowire注解的字段，对应的实例
-                MyAutowired autowiredAnno = field.getAnnotation(MyAutowired.class);
-                String beanName = autowiredAnno.value();
-                if ("".equals(beanName)) {
-                    beanName = toLowerFirstCase(field.getType().getName());
-                }
-
-                field.setAccessible(true);
 
-                try {
-                    field.set(iocEntry.getValue(), iocMap.get(beanName));
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                }
+        try {
+            // 生成的注册表中已经是类字面量；扫描到的组件类并行加载，再按扫描顺序注册
+            List<Class<?>> classes = new ArrayList<>();
+            if (generated != null) {
+                classes.addAll(generated.classes());
             }
+            ClassLoader classLoader = this.getClass().getClassLoader();
+            classes.addAll(pool.submit(() -> classNames.parallelStream()
+                    .<Class<?>>map(className -> loadClass(className, classLoader))
+                    .collect(Collectors.toList())).get());
+            BeanFactory beans = new BeanFactory(classes, generated);
+            // 互不依赖的单例在同一个ForkJoinPool中并行创建，然后依赖注入
+            beans.instantiate(pool);
+            return beans;
+        } catch (ExecutionException e) {
+            // 并行加载组件类失败
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException("加载组件类失败", cause);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("创建组件失败", e);
         }
-
     }
 
-    // 初始化HandlerMapping容器
-    private void initHandlerMapping() {
-        if (iocMap.isEmpty()) {
-            return;
+    private static Class<?> loadClass(String className, ClassLoader classLoader) {
+        try {
+            return Class.forName(className, true, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("找不到组件类：" + className, e);
         }
+    }
 
-        for (Map.Entry<String, Object> iocEntry : iocMap.entrySet()) {
-            // 没有打controller注解，则跳过
-            Class<?> clazz = iocEntry.getValue().getClass();
-            if (!clazz.isAnnotationPresent(MyController.class)) {
-                continue;
-            }
+    // 初始化HandlerMapping容器
+    // 生成的注册表中登记的控制器只按其中的方法签名查找方法，handler-invoker为generated时使用生成的调用代码，否则按配置创建调用器；
+    // 扫描得到的控制器按反射查找方法
+    private void initHandlerMapping(BeanFactory beans, GeneratedComponents generated, List<MyHandlerInterceptor> interceptors,
+                                    RequestRouter<Handler> router) {
+        String invokerMode = contextConfig.getProperty("handler-invoker", HandlerInvoker.GENERATED);
+        for (Object controller : beans.controllers()) {
+            Class<?> clazz = controller.getClass();
 
             // 获取类上的url地址
             String baseUrl = "";
@@ -161,152 +230,754 @@ public class MyDispacherServlet extends HttpServlet {
                 baseUrl = clazz.getAnnotation(MyResquestMapping.class).value();
             }
 
+            if (generated != null && generated.contains(clazz)) {
+                for (GeneratedComponents.Handler h : generated.handlers(clazz)) {
+                    try {
+                        Method method = clazz.getMethod(h.methodName, h.paramTypes);
+                        HandlerInvoker invoker = HandlerInvoker.GENERATED.equals(invokerMode)
+                                ? HandlerInvoker.generated(h.invoker, controller)
+                                : HandlerInvoker.create(invokerMode, method, controller);
+                        mapHandler(baseUrl, method, controller, invoker, interceptors, router);
+                    } catch (NoSuchMethodException e) {
+                        // 生成的注册表与编译后的类不一致
+                        throw new IllegalStateException("生成的组件注册表已过期，找不到方法：" + clazz.getName() + "." + h.methodName, e);
+                    }
+                }
+                continue;
+            }
+
             // 获取所有的方法
             Method[] methods = clazz.getMethods();
             for (Method method : methods) {
                 if (!method.isAnnotationPresent(MyResquestMapping.class)) {
                     continue;
                 }
-                String url = method.getAnnotation(MyResquestMapping.class).value();
-                url = ("/" + baseUrl + "/" + url).replaceAll("/+", "/");
-                // 预编译正则匹配，提高运行时匹配性能
-                Pattern pattern = Pattern.compile(url);
-                handlerMapping.add(new Handler(pattern, method, iocEntry.getValue()));
-                System.out.println("Mapped:" + url + "," + method);
+                mapHandler(baseUrl, method, controller, HandlerInvoker.create(invokerMode, method, controller),
+                        interceptors, router);
             }
         }
 
     }
 
+    private void mapHandler(String baseUrl, Method method, Object controller, HandlerInvoker invoker,
+                            List<MyHandlerInterceptor> interceptors, RequestRouter<Handler> router) {
+        MyResquestMapping mapping = method.getAnnotation(MyResquestMapping.class);
+        String url = ("/" + baseUrl + "/" + mapping.value()).replaceAll("/+", "/");
+        // 预编译正则匹配，提高运行时匹配性能；{name}路径模板转换为等价的正则
+        List<String> pathVariableNames = RouteTrie.variableNames(url);
+        Pattern pattern = Pattern.compile(pathVariableNames.isEmpty() ? url : RouteTrie.templateRegex(url));
+        Handler handler = new Handler(url, method, controller, invoker, metrics.handler(metricsName(mapping.method(), url)));
+        handler.interceptors = HandlerInterceptors.resolve(interceptors, url);
+        handler.limiter = RouteLimiter.create(method, url, contextConfig);
+        router.add(mapping.method(), url, pattern, handler);
+        System.out.println("Mapped:" + metricsName(mapping.method(), url) + "," + method);
+    }
+
+    // 指标中的handler名称：限定了请求方法时加上方法名
+    private static String metricsName(MyRequestMethod[] methods, String url) {
+        if (methods.length == 0) {
+            return url;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (MyRequestMethod m : methods) {
+            sb.append(sb.length() == 0 ? "" : ",").append(m.name());
+        }
+        return sb.append(' ').append(url).toString();
+    }
+
+    // 按配置注册指标接口，metrics-path为空时不注册
+    private void initMetricsEndpoint(List<MyHandlerInterceptor> interceptors, RequestRouter<Handler> router) {
+        String url = contextConfig.getProperty("metrics-path", "").trim();
+        if (url.isEmpty()) {
+            return;
+        }
+        try {
+            Method method = MetricsEndpoint.class.getMethod("scrape", HttpServletResponse.class);
+            Pattern pattern = Pattern.compile(Pattern.quote(url));
+            MyRequestMethod[] methods = {MyRequestMethod.GET};
+            Object endpoint = new MetricsEndpoint(metrics, responseCache);
+            Handler handler = new Handler(url, method, endpoint,
+                    HandlerInvoker.create(contextConfig.getProperty("handler-invoker", HandlerInvoker.GENERATED), method, endpoint),
+                    metrics.handler(metricsName(methods, url)));
+            handler.interceptors = HandlerInterceptors.resolve(interceptors, url);
+            handler.limiter = RouteLimiter.create(method, url, contextConfig);
+            router.add(methods, url, pattern, handler);
+            System.out.println("Mapped:" + metricsName(methods, url) + "," + method);
+        } catch (NoSuchMethodException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 按配置注册批量接口，batch-path为空时不注册
+    private void initBatchEndpoint(List<MyHandlerInterceptor> interceptors, RequestRouter<Handler> router) {
+        if (batchExecutor == null) {
+            return;
+        }
+        String url = contextConfig.getProperty("batch-path").trim();
+        try {
+            Method method = BatchEndpoint.class.getMethod("batch", List.class, HttpServletRequest.class, HttpServletResponse.class);
+            Pattern pattern = Pattern.compile(Pattern.quote(url));
+            MyRequestMethod[] methods = {MyRequestMethod.POST};
+            // 子请求和普通请求一样经过service，异常在其中转换为错误响应
+            Object endpoint = new BatchEndpoint(this::service, batchExecutor,
+                    Integer.parseInt(contextConfig.getProperty("batch-max-requests", "50")));
+            Handler handler = new Handler(url, method, endpoint,
+                    HandlerInvoker.create(contextConfig.getProperty("handler-invoker", HandlerInvoker.GENERATED), method, endpoint),
+                    metrics.handler(metricsName(methods, url)));
+            handler.interceptors = HandlerInterceptors.resolve(interceptors, url);
+            handler.limiter = RouteLimiter.create(method, url, contextConfig);
+            router.add(methods, url, pattern, handler);
+            System.out.println("Mapped:" + metricsName(methods, url) + "," + method);
+        } catch (NoSuchMethodException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 有界队列的固定线程池，队列满时由批量请求的线程自己执行子请求
+    private ExecutorService createBatchExecutor() {
+        if (contextConfig.getProperty("batch-path", "").trim().isEmpty()) {
+            return null;
+        }
+        int threads = Integer.parseInt(contextConfig.getProperty("batch-threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int queue = Integer.parseInt(contextConfig.getProperty("batch-queue-size", "256"));
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue), r -> {
+            Thread thread = new Thread(r, "mymvc-batch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // 所有请求方法都由doDispach按方法路由，没有对应handler的HEAD请求由GET的handler处理，OPTIONS请求自动应答
     @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        doPost(req, resp);
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        // 每个请求只读取一次快照，异常也交给同一快照中的@MyExceptionHandler处理
+        Registry current = registry;
+        try {
+            doDispach(current, req, resp);
+        } catch (Exception e) {
+            writeException(current, req, resp, e);
+        }
     }
 
     @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        // 调用
+    public void destroy() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdown();
+        }
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+        }
+    }
+
+    // 分发请求；开启压缩或ETag时响应体先写到内存中，同步处理完后编码写出，异步处理在finish中写出
+    // 实参数组、变量下标等从当前线程的DispatchContext中复用，请求结束时归还
+    void doDispach(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        doDispach(registry, req, resp);
+    }
+
+    private void doDispach(Registry current, HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        DispatchContext context = DispatchContext.acquire();
+        // HEAD请求的响应体不写出，在编码之外包装，头与GET相同
+        HeadResponse head = null;
+        if (!(resp instanceof EmbeddedResponse) && MyRequestMethod.HEAD.name().equals(req.getMethod())) {
+            head = new HeadResponse(resp);
+            resp = head;
+        }
         try {
-            doDispach(req, resp);
+            boolean completed;
+            if (responseEncoder == null || !responseEncoder.accepts(req)) {
+                completed = dispatch(current, req, resp, context);
+            } else {
+                CapturingResponse capturing = responseEncoder.capture(resp);
+                completed = dispatch(current, req, capturing, context);
+                if (completed) {
+                    responseEncoder.write(req, capturing);
+                }
+            }
+            if (completed && head != null) {
+                head.finish();
+            }
+        } finally {
+            context.release();
+        }
+    }
+
+    // 返回false表示已转为异步处理，响应由异步线程写出；current为请求开始时读取的快照，热加载替换不影响正在处理的请求
+    private boolean dispatch(Registry current, HttpServletRequest req, HttpServletResponse resp, DispatchContext context)
+            throws Exception {
+        long start = System.nanoTime();
+        String uri = getRelativeUri(req, context);
+        // 字面量路由按方法查HashMap，路径变量只记录起止下标，只有含正则的路由才做正则匹配
+        int[] offsets = current.router.offsetsLength() > 0 ? context.offsets(current.router.offsetsLength()) : null;
+        Handler handler = route(current, req.getMethod(), uri, offsets);
+        long routed = System.nanoTime();
+        metrics.recordRouteLookup(routed - start, handler != null);
+        if (handler == null) {
+            writeNoHandler(current, req, resp, uri, offsets);
+            return true;
+        }
+        // 准入控制在绑定参数之前，超出限制直接拒绝；没有限制的路由limiter为null
+        if (handler.limiter != null) {
+            int status = handler.limiter.tryAcquire();
+            if (status != RouteLimiter.ACCEPTED) {
+                reject(handler, resp, status);
+                return true;
+            }
+        }
+        if (handler.streaming && resp instanceof CapturingResponse) {
+            // 流和文件直接写到原响应，不为压缩或ETag整个读入内存
+            ((CapturingResponse) resp).passThrough();
+        }
+        PathVariables pathVariables = offsets == null ? PathVariables.NONE : context.pathVariables(uri, offsets);
+
+        DispatcherMetrics.HandlerMetrics handlerMetrics = handler.metrics;
+        handlerMetrics.begin();
+        // 有请求作用域的组件时，为本请求开启组件表
+        BeanFactory.RequestScope requestScope = current.beans.hasRequestScope() ? new BeanFactory.RequestScope() : null;
+        BeanFactory.RequestScope previousScope = requestScope != null ? BeanFactory.enter(requestScope) : null;
+        // 路由的拦截器链在init时确定，没有拦截器时为null；applied为preHandle已通过的个数
+        MyHandlerInterceptor[] interceptors = handler.interceptors;
+        int applied = 0;
+        boolean async = false;
+        boolean failed = true;
+        Exception error = null;
+        try {
+            if (interceptors != null) {
+                applied = HandlerInterceptors.preHandle(interceptors, req, resp, handler.method);
+                if (applied < interceptors.length) {
+                    // 被拦截，已通过的拦截器在preHandle中已经调用过afterCompletion
+                    applied = 0;
+                    failed = false;
+                    return true;
+                }
+            }
+
+            // 可缓存的方法先查缓存，命中时不再绑定参数和调用方法
+            if (handler.cacheTtlMillis > 0) {
+                dispatchCached(handler, req, resp, uri, pathVariables, context);
+                failed = false;
+                return true;
+            }
+
+            // 交给执行器调用时实参数组由执行器线程使用，不能复用
+            boolean offload = handlerExecutor != null && req.isAsyncSupported();
+            int arity = handler.paramBinders.length;
+            Object[] params = bind(handler, req, resp, pathVariables, offload ? new Object[arity] : context.args(arity));
+            long bound = System.nanoTime();
+            handlerMetrics.recordBind(bound - routed);
+
+            // 配置了执行器时，释放容器线程，在执行器中调用方法
+            if (offload) {
+                AsyncRequest pending = new AsyncRequest(current, req.startAsync(), req, resp, handler, start, applied);
+                // 从这里起由pending结束请求，finally中不再释放
+                async = true;
+                try {
+                    handlerExecutor.execute(() -> {
+                        long invokeStart = System.nanoTime();
+                        BeanFactory.RequestScope previous = requestScope != null ? BeanFactory.enter(requestScope) : null;
+                        Object returnValue;
+                        try {
+                            returnValue = handler.invoker.invoke(params);
+                            handlerMetrics.recordInvoke(System.nanoTime() - invokeStart);
+                            if (interceptors != null) {
+                                HandlerInterceptors.postHandle(interceptors, req, resp, handler.method, returnValue);
+                            }
+                        } catch (Throwable e) {
+                            // Error也要结束请求，否则并发数、指标和AsyncContext都不会释放；结束后Error继续抛给执行器
+                            pending.fail(e);
+                            if (e instanceof Error) {
+                                throw (Error) e;
+                            }
+                            return;
+                        } finally {
+                            if (requestScope != null) {
+                                BeanFactory.exit(previous);
+                            }
+                        }
+                        pending.complete(returnValue);
+                    });
+                } catch (RejectedExecutionException e) {
+                    // 执行器已关闭或已满
+                    pending.unavailable(e);
+                }
+                return false;
+            }
+
+            // 调用方法
+            Object returnValue = handler.invoker.invoke(params);
+            handlerMetrics.recordInvoke(System.nanoTime() - bound);
+            if (interceptors != null) {
+                HandlerInterceptors.postHandle(interceptors, req, resp, handler.method, returnValue);
+            }
+            if (returnValue instanceof MyPublisher && req.isAsyncSupported()) {
+                async = true;
+                stream(current, req.startAsync(), req, resp, handler, (MyPublisher<?>) returnValue, start, applied);
+                return false;
+            }
+            if (returnValue instanceof CompletionStage && req.isAsyncSupported()) {
+                async = true;
+                new AsyncRequest(current, req.startAsync(), req, resp, handler, start, applied).complete(returnValue);
+                return false;
+            }
+            writeSync(handler, returnValue, resp);
+            failed = false;
+            return true;
         } catch (Exception e) {
-            e.printStackTrace();
-            resp.getWriter().write("500 Exception,Detail:" + Arrays.toString(e.getStackTrace()));
-        }
-    }
-
-    // 分发请求
-    private void doDispach(HttpServletRequest req, HttpServletResponse resp) throws Exception {
-        Handler handler = getHandler(req);
-        // 获取请求中的参数
-        Map<String, String[]> parameterMap = req.getParameterMap();
-        // 实参数组
-        Object[] params = new Object[handler.paramTypes.length];
-        // 处理参数值
-        for (Map.Entry<String, String[]> paramEntry : parameterMap.entrySet()) {
-            // 获取参数名
-            String name = paramEntry.getKey();
-            if (!handler.paramIndexMapping.containsKey(name)) {
-                continue;
+            error = e;
+            throw e;
+        } finally {
+            if (!async) {
+                handlerMetrics.end(start, failed);
+                if (handler.limiter != null) {
+                    handler.limiter.release();
+                }
+                if (applied > 0) {
+                    HandlerInterceptors.afterCompletion(interceptors, applied, req, resp, handler.method, error);
+                }
+                if (handler.multipart) {
+                    Multipart.cleanup(req);
+                }
+            }
+            if (requestScope != null) {
+                BeanFactory.exit(previousScope);
             }
-            // 根据参数名获取形参位置
-            Integer index = handler.paramIndexMapping.get(name);
-            // 参数值
-            String paramValue = Arrays.toString(paramEntry.getValue())
-                    .replaceAll("\\[|\\]", "")
-                    .replaceAll("\\s", "");
-            params[index] = converter(handler.paramTypes[index], paramValue);
         }
+    }
+
+    // 没有显式声明HEAD的路由由GET的handler处理，响应体在doDispach中去掉
+    private static Handler route(Registry current, String method, String uri, int[] offsets) {
+        Handler handler = current.router.match(method, uri, offsets);
+        if (handler == null && MyRequestMethod.HEAD.name().equals(method)) {
+            handler = current.router.match(MyRequestMethod.GET.name(), uri, offsets);
+        }
+        return handler;
+    }
+
+    // 填充实参数组，由预先创建的参数绑定器逐个取值
+    private Object[] bind(Handler handler, HttpServletRequest req, HttpServletResponse resp, PathVariables pathVariables,
+                          Object[] params) throws Exception {
+        ParamBinder[] binders = handler.paramBinders;
+        for (int i = 0; i < binders.length; i++) {
+            params[i] = binders[i].bind(req, resp, pathVariables);
+        }
+        return params;
+    }
+
+    // 在当前线程写出结果，返回值为CompletionStage时阻塞等待
+    private void writeSync(Handler handler, Object returnValue, HttpServletResponse resp) throws Exception {
+        if (returnValue instanceof CompletionStage) {
+            try {
+                returnValue = ((CompletionStage<?>) returnValue).toCompletableFuture().get();
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+            handler.resolvedValueWriter.write(returnValue, resp);
+        } else {
+            handler.returnValueWriter.write(returnValue, resp);
+        }
+    }
+
+    // 可缓存的方法：命中时直接写出缓存的状态码、头和字节；未命中时只由一个请求调用方法，结果写到内存中缓存后再写出
+    private void dispatchCached(Handler handler, HttpServletRequest req, HttpServletResponse resp,
+                                String uri, PathVariables pathVariables, DispatchContext context) throws Exception {
+        String key = handler.cacheKey(req, uri);
+        // 调用方法的请求，状态码和头已经设置到响应上，不再重放
+        boolean[] loaded = new boolean[1];
+        ResponseCache.Entry entry = responseCache.get(key, () -> {
+            loaded[0] = true;
+            CapturingResponse capturing = new CapturingResponse(resp);
+            writeSync(handler, handler.invoker.invoke(bind(handler, req, capturing, pathVariables, context.args(handler.paramBinders.length))), capturing);
+            if (!cacheable(req, capturing)) {
+                // 错误、重定向等响应只写给本次请求
+                if (!capturing.sent()) {
+                    resp.setContentLength(capturing.size());
+                    resp.getOutputStream().write(capturing.buffer(), 0, capturing.size());
+                }
+                return null;
+            }
+            return new ResponseCache.Entry(key, capturing.status(), capturing.headers(), capturing.toByteArray(),
+                    capturing.getContentType(), handler.cacheTtlMillis);
+        });
+        if (entry == null) {
+            if (!loaded[0]) {
+                // 等待的请求加载失败或结果不可缓存，自己调用
+                writeSync(handler, handler.invoker.invoke(bind(handler, req, resp, pathVariables, context.args(handler.paramBinders.length))), resp);
+            }
+            return;
+        }
+        if (!loaded[0]) {
+            entry.replay(resp);
+        }
+        if (entry.contentType != null) {
+            resp.setContentType(entry.contentType);
+        }
+        resp.setContentLength(entry.body.length);
+        resp.getOutputStream().write(entry.body);
+    }
+
+    // 只缓存GET、HEAD请求的2xx响应，sendError、sendRedirect的响应不缓存
+    private static boolean cacheable(HttpServletRequest req, CapturingResponse capturing) {
+        String method = req.getMethod();
+        int status = capturing.status();
+        return !capturing.sent() && status >= 200 && status < 300
+                && (MyRequestMethod.GET.name().equals(method) || MyRequestMethod.HEAD.name().equals(method));
+    }
+
+    // 流式返回值：订阅后由WriteListener驱动非阻塞写出，客户端写不动时不再向发布者请求；流结束、客户端断开或超时后结束AsyncContext
+    private void stream(Registry current, AsyncContext asyncContext, HttpServletRequest req, HttpServletResponse resp,
+                        Handler handler, MyPublisher<?> publisher, long start, int applied) {
+        // 流式响应不压缩、不生成ETag，直接写到原响应
+        HttpServletResponse target = resp instanceof CapturingResponse ? (HttpServletResponse) ((CapturingResponse) resp).getResponse() : resp;
+        try {
+            StreamWriter.start(publisher, asyncContext, target, streamTimeout, streamPrefetch, error -> {
+                finish(handler, req, target, start, applied, error);
+                asyncContext.complete();
+            });
+        } catch (Exception e) {
+            writeException(current, req, target, e);
+            finish(handler, req, target, start, applied, e);
+            asyncContext.complete();
+        }
+    }
 
-        // 处理request和response
-        String requestName = HttpServletRequest.class.getName();
-        if (handler.paramIndexMapping.containsKey(requestName)) {
-            params[handler.paramIndexMapping.get(requestName)] = req;
+    // 异步请求结束：写出编码后的响应，记录总耗时，释放并发数，对preHandle已通过的拦截器倒序调用afterCompletion
+    private void finish(Handler handler, HttpServletRequest req, HttpServletResponse resp, long start, int applied, Exception error) {
+        if (resp instanceof CapturingResponse) {
+            try {
+                responseEncoder.write(req, (CapturingResponse) resp);
+            } catch (IOException e) {
+                // 客户端已断开
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        handler.metrics.end(start, error != null);
+        if (handler.limiter != null) {
+            handler.limiter.release();
         }
-        String responseName = HttpServletResponse.class.getName();
-        if (handler.paramIndexMapping.containsKey(responseName)) {
-            params[handler.paramIndexMapping.get(responseName)] = resp;
+        if (applied > 0) {
+            HandlerInterceptors.afterCompletion(handler.interceptors, applied, req, resp, handler.method, error);
         }
+        if (handler.multipart) {
+            Multipart.cleanup(req);
+        }
+    }
 
-        // 调用方法
-        Object returnValue = handler.method.invoke(handler.controller, params);
-        if (returnValue == null || returnValue instanceof Void) {
+    // 异常先交给@MyExceptionHandler方法处理；没有处理方法时请求内容不合法返回400，上传超出上限返回413，
+    // 其余写出预先生成的500响应，调用栈只限频打印到日志
+    private void writeException(Registry current, HttpServletRequest req, HttpServletResponse resp, Throwable e) {
+        Throwable cause = ExceptionHandlers.unwrap(e);
+        if (current.exceptionHandlers.handle(req, resp, cause)) {
             return;
         }
-        resp.getWriter().write(returnValue.toString());
+        if (cause instanceof MyBadRequestException) {
+            ErrorResponses.write(resp, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (cause instanceof Multipart.TooLarge) {
+            ErrorResponses.write(resp, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        ErrorResponses.log(cause);
+        ErrorResponses.write(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
     }
 
-    // 根据url获取handler
-    private Handler getHandler(HttpServletRequest req) {
+    // CompletableFuture会把方法抛出的异常包装一层，取出原始异常
+    private static Exception unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e instanceof Exception ? (Exception) e : new RuntimeException(e);
+    }
+
+    // 超出限流返回429，超出并发数返回503
+    private void reject(Handler handler, HttpServletResponse resp, int status) throws IOException {
+        handler.metrics.recordRejected(status);
+        if (status == RouteLimiter.SC_TOO_MANY_REQUESTS) {
+            resp.setHeader("Retry-After", "1");
+        }
+        ErrorResponses.write(resp, status);
+    }
+
+    // 没有匹配的handler：OPTIONS在url存在时直接应答，不调用控制器；其他情况返回405或404
+    private void writeNoHandler(Registry current, HttpServletRequest req, HttpServletResponse resp,
+                                String uri, int[] offsets) throws IOException {
+        String method = req.getMethod();
+        Set<String> allowed = current.router.allowedMethods(uri, offsets);
+        if (allowed.isEmpty()) {
+            ErrorResponses.write(resp, HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        resp.setHeader("Allow", String.join(", ", allowed));
+        if (MyRequestMethod.OPTIONS.name().equals(method)) {
+            resp.setStatus(HttpServletResponse.SC_OK);
+            return;
+        }
+        ErrorResponses.write(resp, HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+    }
+
+    // 获取用于匹配handler的url：去掉contextPath并合并连续的/，一次遍历完成，不需要改写时不创建新字符串
+    private static String getRelativeUri(HttpServletRequest req, DispatchContext context) {
         // 绝对路径处理为相对路径
         String uri = req.getRequestURI();
         String contextPath = req.getContextPath();
-        uri = uri.replaceAll(contextPath, "").replaceAll("/+", "/");
-
-        for (Handler handler : handlerMapping) {
-            Matcher matcher = handler.pattern.matcher(uri);
-            if (matcher.matches()) {
-                return handler;
+        int begin = contextPath != null && !contextPath.isEmpty() && uri.startsWith(contextPath) ? contextPath.length() : 0;
+        int length = uri.length();
+        // 有连续的/时在复用的字符缓冲中合并
+        char[] chars = null;
+        int n = 0;
+        boolean slash = false;
+        for (int i = begin; i < length; i++) {
+            char c = uri.charAt(i);
+            if (c == '/' && slash) {
+                if (chars == null) {
+                    chars = context.chars(length - begin);
+                    uri.getChars(begin, i, chars, 0);
+                    n = i - begin;
+                }
+                continue;
+            }
+            slash = c == '/';
+            if (chars != null) {
+                chars[n++] = c;
             }
         }
-        return null;
+        if (chars != null) {
+            return new String(chars, 0, n);
+        }
+        return begin == 0 ? uri : uri.substring(begin);
     }
 
-    // 数据类型转换
-    private Object converter(Class<?> paramType, String paramValue) {
-        if (paramType == Integer.class) {
-            return Integer.valueOf(paramValue);
+    // 异步处理中的请求：写出结果、出错、超时三者只有先到的一个结束请求，之后到达的结果丢弃，不会写到已回收的响应
+    // 超时返回503，容器报告的错误按异常处理，都会释放并发数、记录指标并调用afterCompletion
+    private final class AsyncRequest implements AsyncListener {
+        private final Registry current;
+        private final AsyncContext asyncContext;
+        private final HttpServletRequest req;
+        private final HttpServletResponse resp;
+        private final Handler handler;
+        private final long start;
+        private final int applied;
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        AsyncRequest(Registry current, AsyncContext asyncContext, HttpServletRequest req, HttpServletResponse resp,
+                     Handler handler, long start, int applied) {
+            this.current = current;
+            this.asyncContext = asyncContext;
+            this.req = req;
+            this.resp = resp;
+            this.handler = handler;
+            this.start = start;
+            this.applied = applied;
+            asyncContext.setTimeout(asyncTimeout);
+            asyncContext.addListener(this);
+        }
+
+        // 返回值为CompletionStage时在其完成后写出结果，流式返回值交给stream
+        void complete(Object returnValue) {
+            if (returnValue instanceof CompletionStage) {
+                ((CompletionStage<?>) returnValue).whenComplete((value, error) -> {
+                    if (error != null) {
+                        fail(unwrap(error));
+                    } else {
+                        write(value, handler.resolvedValueWriter);
+                    }
+                });
+                return;
+            }
+            write(returnValue, handler.returnValueWriter);
+        }
+
+        private void write(Object value, ReturnValueWriter writer) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            if (value instanceof MyPublisher) {
+                stream(current, asyncContext, req, resp, handler, (MyPublisher<?>) value, start, applied);
+                return;
+            }
+            Exception failure = null;
+            try {
+                writer.write(value, resp);
+            } catch (Exception e) {
+                failure = e;
+                writeException(current, req, resp, e);
+            } finally {
+                finish(handler, req, resp, start, applied, failure);
+                asyncContext.complete();
+            }
+        }
+
+        void fail(Throwable e) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                writeException(current, req, resp, e);
+            } finally {
+                finish(handler, req, resp, start, applied, e instanceof Exception ? (Exception) e : new RuntimeException(e));
+                asyncContext.complete();
+            }
+        }
+
+        // 超时或执行器拒绝：返回503
+        void unavailable(Exception e) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                ErrorResponses.write(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            } finally {
+                finish(handler, req, resp, start, applied, e);
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            unavailable(new TimeoutException("异步处理超过" + asyncTimeout + "ms：" + handler.url));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            Throwable error = event.getThrowable();
+            fail(error != null ? error : new IOException("异步处理出错"));
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
         }
-        return paramValue;
     }
 
-    // 将首字母小写
-    private String toLowerFirstCase(String className) {
-        char[] chars = className.toCharArray();
-        if (chars[0] >= 65 && chars[0] <= 90) {
-            chars[0] += 32;
-            return String.valueOf(chars);
-        } else {
-            return className;
+    // 容器和路由的只读快照，字段都是final，通过volatile引用发布
+    private static final class Registry {
+        // Ioc容器
+        private final BeanFactory beans;
+        // 按请求方法分表的路由，构建后已冻结
+        private final RequestRouter<Handler> router;
+        // @MyExceptionHandler方法表
+        private final ExceptionHandlers exceptionHandlers;
+
+        Registry(BeanFactory beans, RequestRouter<Handler> router, ExceptionHandlers exceptionHandlers) {
+            this.beans = beans;
+            this.router = router;
+            this.exceptionHandlers = exceptionHandlers;
         }
     }
 
     // 在init中初始化方法信息，避免运行时反射，提高性能
     private class Handler {
-        private Pattern pattern;
         private Method method;
-        private Object controller;
-        private Class[] paramTypes;
-        private Map<String, Integer> paramIndexMapping;
-
-        Handler(Pattern pattern, Method method, Object controller) {
-            this.pattern = pattern;
+        private HandlerInvoker invoker;
+        private ParamBinder[] paramBinders;
+        private ReturnValueWriter returnValueWriter;
+        // CompletionStage完成后的结果按运行时类型写出
+        private ReturnValueWriter resolvedValueWriter;
+        private DispatcherMetrics.HandlerMetrics metrics;
+        // 匹配该路由的拦截器，按执行顺序；没有时为null
+        private MyHandlerInterceptor[] interceptors;
+        // 限流和舱壁，没有限制时为null
+        private RouteLimiter limiter;
+        // 注册的url，路径模板中含{name}
+        private String url;
+        // 缓存过期时间，0表示不缓存；缓存key由请求的url和各@MyRequestParam参数的原始值组成
+        private long cacheTtlMillis;
+        private String[] cacheParamNames;
+        // 缓存key的前缀，区分同一url上的不同handler
+        private String cacheKeyPrefix;
+        // 有@MyRequestPart参数，请求结束时要释放解析出的部分
+        private boolean multipart;
+        // 返回流或文件，响应体不缓存到内存中
+        private boolean streaming;
+
+        Handler(String url, Method method, Object controller, HandlerInvoker invoker, DispatcherMetrics.HandlerMetrics metrics) {
+            this.url = url;
             this.method = method;
-            this.controller = controller;
+            this.metrics = metrics;
+            // 调用器在注册时创建：生成的直接调用、MethodHandle或反射
+            this.invoker = invoker;
+            // 预先按返回类型选择写出方式，标了@MyResponseBody时预先生成JSON序列化器
+            if (method.isAnnotationPresent(MyResponseBody.class) || controller.getClass().isAnnotationPresent(MyResponseBody.class)) {
+                this.returnValueWriter = ReturnValueWriters.json(method.getReturnType());
+                this.resolvedValueWriter = ReturnValueWriters.json(Object.class);
+            } else {
+                this.returnValueWriter = ReturnValueWriters.create(method.getReturnType());
+                this.resolvedValueWriter = ReturnValueWriters.any();
+                this.streaming = ReturnValueWriters.streaming(method.getReturnType());
+            }
 
-            paramTypes = method.getParameterTypes();
-            paramIndexMapping = new HashMap<>();
             putParamIndexMapping();
+            putCacheKeyMapping();
         }
 
-        // 将参数名（注解中的value）与参数下标关联
-        private void putParamIndexMapping() {
-            // request和response直接放入参数名
+        // 标了@MyCacheable时，记录参与缓存key的参数名；结果还取决于请求体、请求对象等其他输入的方法不能缓存
+        private void putCacheKeyMapping() {
+            MyCacheable cacheable = method.getAnnotation(MyCacheable.class);
+            if (cacheable == null) {
+                return;
+            }
+            cacheTtlMillis = TimeUnit.SECONDS.toMillis(cacheable.ttl());
+            cacheKeyPrefix = CACHE_IDS.incrementAndGet() + " ";
+            List<String> names = new ArrayList<>();
+            Class<?>[] paramTypes = method.getParameterTypes();
+            Annotation[][] paramAnnos = method.getParameterAnnotations();
             for (int i = 0; i < paramTypes.length; i++) {
-                Class paramType = paramTypes[i];
-                if (paramType == HttpServletRequest.class
-                        || paramType == HttpServletResponse.class) {
-                    paramIndexMapping.put(paramType.getName(), i);
+                if (paramTypes[i] == HttpServletRequest.class) {
+                    throw new IllegalStateException("@MyCacheable方法不能有HttpServletRequest参数：" + method);
+                }
+                for (Annotation a : paramAnnos[i]) {
+                    if (a instanceof MyRequestParam) {
+                        names.add(((MyRequestParam) a).value());
+                    } else if (a instanceof MyRequestBody || a instanceof MyRequestPart) {
+                        throw new IllegalStateException("@MyCacheable方法只能按@MyRequestParam和@MyPathVariable参数缓存："
+                                + method);
+                    }
                 }
             }
+            cacheParamNames = names.toArray(new String[0]);
+        }
 
-            // 根据注解，对应参数和顺序
-            Annotation[][] annos = this.method.getParameterAnnotations();
-            for (int i = 0; i < annos.length; i++) {
-                for (Annotation a : annos[i]) {
-                    if (a instanceof MyRequestParam) {
-                        String name = ((MyRequestParam) a).value();
-                        paramIndexMapping.put(name, i);
+        // 用参数的原始字符串生成缓存key，不做类型转换
+        private String cacheKey(HttpServletRequest req, String uri) {
+            StringBuilder key = new StringBuilder(cacheKeyPrefix).append(req.getMethod()).append(' ').append(uri);
+            for (String name : cacheParamNames) {
+                key.append('\u0001');
+                String[] values = req.getParameterValues(name);
+                if (values == null) {
+                    key.append('\u0003');
+                    continue;
+                }
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        key.append('\u0002');
                     }
+                    key.append(values[i]);
+                }
+            }
+            return key.toString();
+        }
+
+        // 按参数下标预先创建参数绑定器（request、response、注解中的参数名、路径变量下标及类型转换）
+        private void putParamIndexMapping() {
+            List<String> pathVariableNames = RouteTrie.variableNames(url);
+            Class<?>[] paramTypes = method.getParameterTypes();
+            Type[] genericTypes = method.getGenericParameterTypes();
+            Annotation[][] annos = method.getParameterAnnotations();
+            paramBinders = new ParamBinder[paramTypes.length];
+            for (int i = 0; i < paramTypes.length; i++) {
+                paramBinders[i] = ParamBinders.create(paramTypes[i], genericTypes[i], annos[i], pathVariableNames, multipartParser, jsonMaxDepth);
+                for (Annotation a : annos[i]) {
+                    multipart |= a instanceof MyRequestPart;
                 }
             }
         }
@@ -0,0 +1,158 @@
+package com.ls.spring.framework.v2;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// 供控制器使用的MyPublisher实现：控制器返回它，之后在任意线程中send数据，最后complete或error
+// 订阅者还没有请求的数据先放在有界缓冲区中，客户端写不动、缓冲区满时send返回false，由调用方决定丢弃或稍后重试
+// 只能订阅一次；send可以多线程并发调用，交给订阅者时由drain保证同一时刻只有一个线程调用onNext
+public final class MyEventStream<T> implements MyPublisher<T> {
+
+    private final int capacity;
+    private final Queue<T> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicReference<Subscriber<? super T>> subscriber = new AtomicReference<>();
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    private volatile Runnable onCancel;
+    // 已经向订阅者发出onComplete或onError，只在drain中访问
+    private boolean terminated;
+
+    public MyEventStream() {
+        this(256);
+    }
+
+    public MyEventStream(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity必须大于0！");
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        if (!subscriber.compareAndSet(null, s)) {
+            s.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            s.onError(new IllegalStateException("MyEventStream只能订阅一次！"));
+            return;
+        }
+        s.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    error(new IllegalArgumentException("request的个数必须大于0：" + n));
+                    return;
+                }
+                requested.accumulateAndGet(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                Runnable callback = onCancel;
+                if (callback != null) {
+                    callback.run();
+                }
+                drain();
+            }
+        });
+        drain();
+    }
+
+    // 发出一个数据；已结束、已取消或缓冲区满时返回false
+    public boolean send(T item) {
+        Objects.requireNonNull(item, "item");
+        if (done || cancelled) {
+            return false;
+        }
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        buffer.offer(item);
+        drain();
+        return true;
+    }
+
+    // 缓冲区中的数据发完后结束
+    public void complete() {
+        done = true;
+        drain();
+    }
+
+    // 缓冲区中的数据发完后以异常结束
+    public void error(Throwable e) {
+        error = Objects.requireNonNull(e, "error");
+        done = true;
+        drain();
+    }
+
+    // 客户端已断开或超时，之后的send都返回false
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // 取消时的回调，用于停止产生数据的定时任务等
+    public void onCancel(Runnable callback) {
+        this.onCancel = callback;
+        if (cancelled) {
+            callback.run();
+        }
+    }
+
+    // 在已请求的个数内把缓冲区中的数据交给订阅者，并发调用时由正在执行的线程多循环一次
+    private void drain() {
+        Subscriber<? super T> s = subscriber.get();
+        if (s == null || wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            if (cancelled) {
+                buffer.clear();
+                size.set(0);
+            } else if (!terminated) {
+                long r = requested.get();
+                long emitted = 0;
+                T item;
+                while (emitted != r && (item = buffer.poll()) != null) {
+                    size.decrementAndGet();
+                    s.onNext(item);
+                    emitted++;
+                }
+                if (emitted > 0 && r != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+                if (done && buffer.isEmpty()) {
+                    terminated = true;
+                    Throwable e = error;
+                    if (e != null) {
+                        s.onError(e);
+                    } else {
+                        s.onComplete();
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
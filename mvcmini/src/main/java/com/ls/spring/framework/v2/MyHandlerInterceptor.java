@@ -0,0 +1,22 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+
+// 控制器方法拦截器，标@MyInterceptor后由容器创建；每个路由在init时确定要经过的拦截器
+public interface MyHandlerInterceptor {
+
+    // 调用控制器方法之前，按顺序调用；返回false时不再调用后续拦截器和控制器，响应由拦截器自己写出
+    default boolean preHandle(HttpServletRequest req, HttpServletResponse resp, Method handler) throws Exception {
+        return true;
+    }
+
+    // 控制器方法返回之后、写出结果之前，按倒序调用；命中响应缓存时不调用
+    default void postHandle(HttpServletRequest req, HttpServletResponse resp, Method handler, Object returnValue) throws Exception {
+    }
+
+    // 请求结束后（异步请求在结果写出后），对preHandle返回了true的拦截器按倒序调用；ex为处理过程中的异常
+    default void afterCompletion(HttpServletRequest req, HttpServletResponse resp, Method handler, Exception ex) throws Exception {
+    }
+}
@@ -0,0 +1,37 @@
+package com.ls.spring.framework.v2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+// multipart/form-data请求中的一个部分，由@MyRequestPart绑定
+// 内容较小时保存在池化的缓冲区中，超出内存上限时写到临时文件；请求结束后缓冲区归还、临时文件删除，不能在请求之外使用
+public interface MyPart {
+
+    // 部分的name
+    String getName();
+
+    // 上传文件的文件名，普通字段为null
+    String getFilename();
+
+    // 部分的Content-Type，没有时为null
+    String getContentType();
+
+    long getSize();
+
+    // 内容是否在内存中，为false时在临时文件中
+    boolean isInMemory();
+
+    // 打开读取内容的输入流，临时文件在调用时才打开
+    InputStream getInputStream() throws IOException;
+
+    // 只读的内容：在内存中时为复制出的堆缓冲区，请求结束后仍可使用；在临时文件中时为内存映射的MappedByteBuffer
+    ByteBuffer getByteBuffer() throws IOException;
+
+    // 全部内容复制为字节数组，大文件应使用getInputStream或getByteBuffer
+    byte[] getBytes() throws IOException;
+
+    // 保存到目标文件，临时文件直接移动过去，之后从目标文件读取
+    void transferTo(Path target) throws IOException;
+}
@@ -0,0 +1,31 @@
+package com.ls.spring.framework.v2;
+
+// 流式返回值：控制器返回发布者，框架订阅后按客户端的写出速度请求数据，写成Server-Sent Events或分块输出
+// 约定与JDK9的java.util.concurrent.Flow相同（项目按JDK8编译，不能直接使用）：订阅者通过request(n)声明还能接收的个数，
+// 发布者发出的onNext不超过已请求的个数，最后以onComplete或onError结束；同一订阅者的各个回调不能并发调用
+// 需要请求支持异步（servlet配置async-supported）；内嵌服务器、批量子请求中不支持，返回501
+public interface MyPublisher<T> {
+
+    void subscribe(Subscriber<? super T> subscriber);
+
+    interface Subscriber<T> {
+
+        // 订阅成功后首先调用，之后才能调用其他方法
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable error);
+
+        void onComplete();
+    }
+
+    interface Subscription {
+
+        // 再请求n个数据，n必须大于0
+        void request(long n);
+
+        // 取消订阅，之后发布者应尽快停止发出数据；客户端断开时由框架调用
+        void cancel();
+    }
+}
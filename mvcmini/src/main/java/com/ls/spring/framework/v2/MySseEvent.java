@@ -0,0 +1,33 @@
+package com.ls.spring.framework.v2;
+
+// Server-Sent Events的一个事件，需要指定id或事件名时作为MyPublisher的元素返回；直接返回其他对象时只写data
+// data为字符串时原样写出（多行拆成多个data行），byte[]按UTF-8解码，其他对象序列化为JSON
+public final class MySseEvent {
+
+    private final String id;
+    private final String event;
+    private final Object data;
+
+    // id和event为null时不写出；客户端重连时在Last-Event-ID头中带回最后收到的id
+    public MySseEvent(String id, String event, Object data) {
+        this.id = id;
+        this.event = event;
+        this.data = data;
+    }
+
+    public static MySseEvent of(Object data) {
+        return new MySseEvent(null, null, data);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public Object getData() {
+        return data;
+    }
+}
@@ -0,0 +1,10 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+// 参数绑定器，每个Handler的每个形参在init时创建一个，请求时直接取值
+public interface ParamBinder {
+
+    Object bind(HttpServletRequest req, HttpServletResponse resp, PathVariables pathVariables) throws Exception;
+}
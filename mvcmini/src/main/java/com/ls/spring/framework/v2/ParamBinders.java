@@ -0,0 +1,222 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.annotation.MyPathVariable;
+import com.ls.spring.framework.annotation.MyRequestBody;
+import com.ls.spring.framework.annotation.MyRequestParam;
+import com.ls.spring.framework.annotation.MyRequestPart;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 根据形参类型和注解创建参数绑定器
+public final class ParamBinders {
+
+    private static final ParamBinder REQUEST = (req, resp, vars) -> req;
+    private static final ParamBinder RESPONSE = (req, resp, vars) -> resp;
+    private static final ParamBinder NULL = (req, resp, vars) -> null;
+
+    private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS;
+
+    static {
+        Map<Class<?>, Object> defaults = new HashMap<>();
+        defaults.put(int.class, 0);
+        defaults.put(long.class, 0L);
+        defaults.put(boolean.class, false);
+        defaults.put(double.class, 0d);
+        defaults.put(float.class, 0f);
+        defaults.put(short.class, (short) 0);
+        defaults.put(byte.class, (byte) 0);
+        defaults.put(char.class, (char) 0);
+        PRIMITIVE_DEFAULTS = Collections.unmodifiableMap(defaults);
+    }
+
+    // 字符串到目标类型的转换
+    interface Parser {
+        Object parse(String value);
+    }
+
+    private ParamBinders() {
+    }
+
+    // 为一个形参创建绑定器，pathVariableNames为路由模板中按顺序出现的变量名
+    public static ParamBinder create(Class<?> paramType, Type genericType, Annotation[] annos, List<String> pathVariableNames) {
+        return create(paramType, genericType, annos, pathVariableNames, MultipartParser.DEFAULT, JsonInput.DEFAULT_MAX_DEPTH);
+    }
+
+    // multipart的各项上限和JSON请求体的最大嵌套层数取自servlet的配置
+    static ParamBinder create(Class<?> paramType, Type genericType, Annotation[] annos, List<String> pathVariableNames,
+                              MultipartParser multipartParser, int jsonMaxDepth) {
+        if (paramType == HttpServletRequest.class) {
+            return REQUEST;
+        }
+        if (paramType == HttpServletResponse.class) {
+            return RESPONSE;
+        }
+        for (Annotation a : annos) {
+            if (a instanceof MyRequestParam) {
+                return requestParam(((MyRequestParam) a).value(), paramType, genericType);
+            }
+            if (a instanceof MyPathVariable) {
+                return pathVariable(((MyPathVariable) a).value(), paramType, pathVariableNames);
+            }
+            if (a instanceof MyRequestBody) {
+                return RequestBodyBinder.create(paramType, genericType, ((MyRequestBody) a).required(), jsonMaxDepth);
+            }
+            if (a instanceof MyRequestPart) {
+                MyRequestPart part = (MyRequestPart) a;
+                return RequestPartBinder.create(paramType, genericType, part.value(), part.required(), multipartParser);
+            }
+        }
+        return defaultValue(paramType);
+    }
+
+    // @MyRequestParam绑定
+    private static ParamBinder requestParam(String name, Class<?> paramType, Type genericType) {
+        // 数组：每个值单独转换
+        if (paramType.isArray()) {
+            Class<?> componentType = paramType.getComponentType();
+            Parser parser = parser(componentType);
+            return (req, resp, vars) -> {
+                String[] values = req.getParameterValues(name);
+                if (values == null) {
+                    return null;
+                }
+                Object array = Array.newInstance(componentType, values.length);
+                for (int i = 0; i < values.length; i++) {
+                    Array.set(array, i, parser.parse(values[i]));
+                }
+                return array;
+            };
+        }
+        // List/Collection：元素类型取自泛型参数
+        if (paramType == List.class || paramType == java.util.Collection.class) {
+            Parser parser = parser(elementType(genericType));
+            return (req, resp, vars) -> {
+                String[] values = req.getParameterValues(name);
+                if (values == null) {
+                    return null;
+                }
+                List<Object> list = new ArrayList<>(values.length);
+                for (String value : values) {
+                    list.add(parser.parse(value));
+                }
+                return list;
+            };
+        }
+        // 字符串：多值时与原先一样用逗号拼接
+        if (paramType == String.class || paramType == Object.class) {
+            return (req, resp, vars) -> {
+                String[] values = req.getParameterValues(name);
+                if (values == null) {
+                    return null;
+                }
+                return values.length == 1 ? values[0] : String.join(",", values);
+            };
+        }
+        Parser parser = parser(paramType);
+        Object missing = primitiveDefault(paramType);
+        return (req, resp, vars) -> {
+            String value = req.getParameter(name);
+            return value == null ? missing : parser.parse(value);
+        };
+    }
+
+    // @MyPathVariable绑定：变量下标在init时确定，请求时按下标截取
+    private static ParamBinder pathVariable(String name, Class<?> paramType, List<String> pathVariableNames) {
+        int index = pathVariableNames.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("路由中没有路径变量：" + name);
+        }
+        Parser parser = parser(paramType);
+        return (req, resp, vars) -> parser.parse(vars.get(index));
+    }
+
+    // 没有注解的形参，基本类型给默认值，避免调用时空指针
+    private static ParamBinder defaultValue(Class<?> paramType) {
+        Object value = primitiveDefault(paramType);
+        return value == null ? NULL : (req, resp, vars) -> value;
+    }
+
+    // 按类型选择转换器，数字类型先去掉首尾空白（无空白时trim不会产生新字符串）；值的格式不对时抛出MyBadRequestException
+    static Parser parser(Class<?> type) {
+        if (type == String.class || type == Object.class) {
+            return value -> value;
+        }
+        Parser parser = converter(type);
+        return value -> {
+            try {
+                return parser.parse(value);
+            } catch (MyBadRequestException e) {
+                throw e;
+            } catch (IllegalArgumentException e) {
+                throw new MyBadRequestException("参数值无法转换为" + type.getSimpleName() + "：" + value, e);
+            }
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Parser converter(Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return value -> Integer.parseInt(value.trim());
+        }
+        if (type == long.class || type == Long.class) {
+            return value -> Long.parseLong(value.trim());
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return value -> Boolean.parseBoolean(value.trim());
+        }
+        if (type == double.class || type == Double.class) {
+            return value -> Double.parseDouble(value.trim());
+        }
+        if (type == float.class || type == Float.class) {
+            return value -> Float.parseFloat(value.trim());
+        }
+        if (type == short.class || type == Short.class) {
+            return value -> Short.parseShort(value.trim());
+        }
+        if (type == byte.class || type == Byte.class) {
+            return value -> Byte.parseByte(value.trim());
+        }
+        if (type == char.class || type == Character.class) {
+            return value -> value.isEmpty() ? null : value.charAt(0);
+        }
+        if (type.isEnum()) {
+            // 预先建立名称到枚举常量的映射，不用每次Enum.valueOf
+            Map<String, Object> constants = new HashMap<>();
+            for (Object constant : type.getEnumConstants()) {
+                constants.put(((Enum) constant).name(), constant);
+            }
+            return value -> {
+                Object constant = constants.get(value);
+                if (constant == null) {
+                    throw new MyBadRequestException("No enum constant " + type.getName() + "." + value);
+                }
+                return constant;
+            };
+        }
+        throw new IllegalArgumentException("不支持的参数类型：" + type.getName());
+    }
+
+    private static Class<?> elementType(Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            Type arg = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (arg instanceof Class) {
+                return (Class<?>) arg;
+            }
+        }
+        return String.class;
+    }
+
+    private static Object primitiveDefault(Class<?> type) {
+        return PRIMITIVE_DEFAULTS.get(type);
+    }
+}
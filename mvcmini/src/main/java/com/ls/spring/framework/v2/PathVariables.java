@@ -0,0 +1,39 @@
+package com.ls.spring.framework.v2;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+
+// 一次请求匹配到的路径变量，只保存uri和各变量的起止下标，取值时才截取字符串
+// 由DispatchContext复用，只在绑定参数期间有效，绑定器不能保存引用
+public final class PathVariables {
+
+    static final PathVariables NONE = new PathVariables("", new int[0]);
+
+    private String uri;
+    private int[] offsets;
+
+    PathVariables(String uri, int[] offsets) {
+        this.uri = uri;
+        this.offsets = offsets;
+    }
+
+    PathVariables reset(String uri, int[] offsets) {
+        this.uri = uri;
+        this.offsets = offsets;
+        return this;
+    }
+
+    // 第index个变量的值，含%编码时解码
+    public String get(int index) {
+        String value = uri.substring(offsets[index * 2], offsets[index * 2 + 1]);
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        try {
+            // 路径中的+不是空格
+            return URLDecoder.decode(value.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// @MyRequestBody绑定：JSON从输入流直接解析为形参类型，表单提交按字段名写入
+// 解析器和字段映射都在init时按类型创建，请求时只做查表和写入
+final class RequestBodyBinder {
+
+    private static final String FORM = "application/x-www-form-urlencoded";
+
+    private RequestBodyBinder() {
+    }
+
+    static ParamBinder create(Class<?> paramType, Type genericType, boolean required, int jsonMaxDepth) {
+        JsonDeserializers.Deserializer json = JsonDeserializers.forType(genericType);
+        FormReader form = FormReader.create(paramType);
+        return (req, resp, vars) -> {
+            Object value;
+            if (form != null && isForm(req.getContentType())) {
+                value = form.read(req);
+            } else {
+                value = readJson(req, json, jsonMaxDepth);
+            }
+            if (value == null && (required || paramType.isPrimitive())) {
+                throw new MyBadRequestException("缺少请求体！");
+            }
+            return value;
+        };
+    }
+
+    // 从输入流分块读入池化缓冲区解析，空请求体返回null
+    private static Object readJson(HttpServletRequest req, JsonDeserializers.Deserializer deserializer, int maxDepth) throws Exception {
+        byte[] buffer = ReturnValueWriters.acquire();
+        try {
+            InputStream in = req.getInputStream();
+            JsonInput input = new JsonInput(in, buffer, maxDepth);
+            if (input.peek() == -1) {
+                return null;
+            }
+            Object value = deserializer.read(input);
+            input.expectEnd();
+            return value;
+        } finally {
+            ReturnValueWriters.release(buffer);
+        }
+    }
+
+    private static boolean isForm(String contentType) {
+        return contentType != null && contentType.regionMatches(true, 0, FORM, 0, FORM.length());
+    }
+
+    // 表单请求体由容器解析为请求参数，这里按预先生成的字段表写入目标对象
+    private static final class FormReader {
+        private final MethodHandle constructor;
+        // 目标为Map时为null
+        private final String[] names;
+        private final MethodHandle[] setters;
+        private final ParamBinder[] converters;
+
+        private FormReader(MethodHandle constructor, String[] names, MethodHandle[] setters, ParamBinder[] converters) {
+            this.constructor = constructor;
+            this.names = names;
+            this.setters = setters;
+            this.converters = converters;
+        }
+
+        // 目标类型为Map或字段都能由字符串转换的普通类时创建，否则返回null，表单请求按JSON处理
+        static FormReader create(Class<?> type) {
+            if (Map.class.isAssignableFrom(type)) {
+                return type.isAssignableFrom(LinkedHashMap.class) ? new FormReader(null, null, null, null) : null;
+            }
+            if (type.isInterface() || type.isArray() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers())
+                    || type.getName().startsWith("java.")) {
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            List<String> names = new ArrayList<>();
+            List<MethodHandle> setters = new ArrayList<>();
+            List<ParamBinder> converters = new ArrayList<>();
+            try {
+                java.lang.reflect.Constructor<?> c = type.getDeclaredConstructor();
+                c.setAccessible(true);
+                MethodHandle constructor = lookup.unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+                for (Class<?> clazz = type; clazz != Object.class; clazz = clazz.getSuperclass()) {
+                    for (Field field : clazz.getDeclaredFields()) {
+                        int modifiers = field.getModifiers();
+                        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || Modifier.isFinal(modifiers)
+                                || field.isSynthetic() || names.contains(field.getName())) {
+                            continue;
+                        }
+                        field.setAccessible(true);
+                        names.add(field.getName());
+                        setters.add(lookup.unreflectSetter(field)
+                                .asType(MethodType.methodType(void.class, Object.class, Object.class)));
+                        converters.add(converter(field.getName(), field.getType()));
+                    }
+                }
+                return new FormReader(constructor, names.toArray(new String[0]),
+                        setters.toArray(new MethodHandle[0]), converters.toArray(new ParamBinder[0]));
+            } catch (ReflectiveOperationException | IllegalArgumentException e) {
+                // 没有无参构造方法或有不支持的字段类型
+                return null;
+            }
+        }
+
+        // 单值字段取第一个值，数组字段逐个转换
+        private static ParamBinder converter(String name, Class<?> type) {
+            if (type.isArray()) {
+                Class<?> componentType = type.getComponentType();
+                ParamBinders.Parser parser = ParamBinders.parser(componentType);
+                return (req, resp, vars) -> {
+                    String[] values = req.getParameterValues(name);
+                    Object array = Array.newInstance(componentType, values.length);
+                    for (int i = 0; i < values.length; i++) {
+                        Array.set(array, i, parser.parse(values[i]));
+                    }
+                    return array;
+                };
+            }
+            ParamBinders.Parser parser = ParamBinders.parser(type);
+            return (req, resp, vars) -> parser.parse(req.getParameter(name));
+        }
+
+        Object read(HttpServletRequest req) throws Exception {
+            Map<String, String[]> parameters = req.getParameterMap();
+            if (names == null) {
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (Map.Entry<String, String[]> entry : parameters.entrySet()) {
+                    String[] values = entry.getValue();
+                    map.put(entry.getKey(), values.length == 1 ? values[0] : String.join(",", values));
+                }
+                return map;
+            }
+            Object bean;
+            try {
+                bean = (Object) constructor.invokeExact();
+                for (int i = 0; i < names.length; i++) {
+                    if (parameters.containsKey(names[i])) {
+                        setters[i].invokeExact(bean, converters[i].bind(req, null, null));
+                    }
+                }
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("绑定表单失败！", t);
+            }
+            return bean;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.ls.spring.framework.v2;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// @MyRequestPart绑定：第一次取值时解析整个multipart请求，同一请求的其他参数直接查表
+// 形参可以是MyPart、MyPart[]、List<MyPart>（同名的多个文件）、byte[]或String（按部分的charset解码，默认UTF-8）
+final class RequestPartBinder {
+
+    private RequestPartBinder() {
+    }
+
+    static ParamBinder create(Class<?> paramType, Type genericType, String name, boolean required, MultipartParser parser) {
+        Converter converter = converter(paramType, genericType);
+        return (req, resp, vars) -> {
+            List<MyPart> parts = Multipart.of(req, parser).get(name);
+            if (parts == null) {
+                if (required) {
+                    throw new MyBadRequestException("缺少请求部分：" + name);
+                }
+                return null;
+            }
+            return converter.convert(parts);
+        };
+    }
+
+    private static Converter converter(Class<?> paramType, Type genericType) {
+        if (paramType == MyPart.class) {
+            return parts -> parts.get(0);
+        }
+        if (paramType == MyPart[].class) {
+            return parts -> parts.toArray(new MyPart[0]);
+        }
+        if ((paramType == List.class || paramType == java.util.Collection.class) && isPartList(genericType)) {
+            return parts -> parts;
+        }
+        if (paramType == byte[].class) {
+            return parts -> parts.get(0).getBytes();
+        }
+        if (paramType == String.class) {
+            return parts -> {
+                MyPart part = parts.get(0);
+                return new String(part.getBytes(), charsetOf(part.getContentType()));
+            };
+        }
+        throw new IllegalStateException("@MyRequestPart不支持的参数类型：" + genericType);
+    }
+
+    private static boolean isPartList(Type genericType) {
+        if (!(genericType instanceof ParameterizedType)) {
+            return true;
+        }
+        return ((ParameterizedType) genericType).getActualTypeArguments()[0] == MyPart.class;
+    }
+
+    private static Charset charsetOf(String contentType) {
+        String charset = contentType == null ? null : MultipartParser.param(contentType, "charset");
+        return charset == null ? StandardCharsets.UTF_8 : ReturnValueWriters.charset(charset);
+    }
+
+    private interface Converter {
+        Object convert(List<MyPart> parts) throws Exception;
+    }
+}
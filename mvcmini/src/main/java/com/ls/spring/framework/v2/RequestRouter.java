@@ -0,0 +1,140 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.annotation.MyRequestMethod;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// 按请求方法分表的路由，在init时构建一次，运行时只读
+// 每个方法一张表，另有一张表存放不限方法的路由；纯字面量的url放在预设容量的HashMap中，一次哈希查找即可，
+// 含路径变量或正则的url放在前缀树中
+public final class RequestRouter<T> {
+
+    // 不限方法的路由表下标
+    private static final int ANY = MyRequestMethod.values().length;
+    private static final int HEAD = MyRequestMethod.HEAD.ordinal();
+    private static final int OPTIONS = MyRequestMethod.OPTIONS.ordinal();
+    private static final Map<String, Integer> METHOD_INDEX = new HashMap<>();
+
+    static {
+        for (MyRequestMethod m : MyRequestMethod.values()) {
+            METHOD_INDEX.put(m.name(), m.ordinal());
+        }
+    }
+
+    private final Table<T>[] tables;
+    private boolean frozen;
+    private int offsetsLength;
+
+    @SuppressWarnings("unchecked")
+    public RequestRouter() {
+        tables = new Table[ANY + 1];
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = new Table<>();
+        }
+    }
+
+    // 注册路由，methods为空时匹配所有方法
+    public void add(MyRequestMethod[] methods, String url, Pattern pattern, T value) {
+        if (frozen) {
+            throw new IllegalStateException("路由表已冻结，不能再注册！");
+        }
+        if (methods.length == 0) {
+            tables[ANY].add(url, pattern, value);
+            return;
+        }
+        for (MyRequestMethod m : methods) {
+            tables[m.ordinal()].add(url, pattern, value);
+        }
+    }
+
+    // 构建完成后调用，字面量表按实际条目数重新建为预设容量的HashMap
+    public void freeze() {
+        for (Table<T> table : tables) {
+            table.freeze();
+            offsetsLength = Math.max(offsetsLength, table.trie.offsetsLength());
+        }
+        frozen = true;
+    }
+
+    // 匹配时需要的变量下标数组长度
+    public int offsetsLength() {
+        return offsetsLength;
+    }
+
+    // 按方法和url查找，未找到返回null；先查该方法的表，再查不限方法的表
+    // HEAD和OPTIONS只匹配显式声明了该方法的路由，其余由分发器自动应答
+    public T match(String method, String uri, int[] offsets) {
+        Integer index = METHOD_INDEX.get(method);
+        if (index != null) {
+            T value = tables[index].match(uri, offsets);
+            if (value != null || index == HEAD || index == OPTIONS) {
+                return value;
+            }
+        }
+        return tables[ANY].match(uri, offsets);
+    }
+
+    // 该url允许的请求方法，用于OPTIONS和405响应；url不存在时返回空集合
+    public Set<String> allowedMethods(String uri, int[] offsets) {
+        Set<String> allowed = new LinkedHashSet<>();
+        if (tables[ANY].match(uri, offsets) != null) {
+            for (MyRequestMethod m : MyRequestMethod.values()) {
+                allowed.add(m.name());
+            }
+            return allowed;
+        }
+        for (MyRequestMethod m : MyRequestMethod.values()) {
+            if (tables[m.ordinal()].match(uri, offsets) != null) {
+                allowed.add(m.name());
+            }
+        }
+        // 有GET时自动支持HEAD，有任何方法时自动支持OPTIONS
+        if (allowed.contains(MyRequestMethod.GET.name())) {
+            allowed.add(MyRequestMethod.HEAD.name());
+        }
+        if (!allowed.isEmpty()) {
+            allowed.add(MyRequestMethod.OPTIONS.name());
+        }
+        return allowed;
+    }
+
+    // 一个方法的路由表
+    private static final class Table<T> {
+        private Map<String, T> literals = new HashMap<>();
+        private final List<String> order = new ArrayList<>();
+        private final RouteTrie<T> trie = new RouteTrie<>();
+
+        void add(String url, Pattern pattern, T value) {
+            if (RouteTrie.literalPrefixLength(url) == url.length()) {
+                // 与原先List的行为一致，先注册的优先
+                if (!literals.containsKey(url)) {
+                    literals.put(url, value);
+                    order.add(url);
+                }
+            } else {
+                trie.add(url, pattern, value);
+            }
+        }
+
+        void freeze() {
+            // 按负载因子0.75预设容量，避免扩容，也让链表尽量短
+            Map<String, T> sized = new HashMap<>(Math.max(16, (int) (order.size() / 0.75f) + 1));
+            for (String url : order) {
+                sized.put(url, literals.get(url));
+            }
+            literals = sized;
+            trie.freeze();
+        }
+
+        T match(String uri, int[] offsets) {
+            T value = literals.get(uri);
+            return value != null ? value : trie.match(uri, offsets);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// 响应缓存：按字节数限制大小的分段LRU（SLRU），新条目进入试用段，再次命中后晋升到保护段，淘汰时先淘汰试用段
+// 同一个key并发未命中时只有一个请求调用控制器，其他请求等待其结果
+final class ResponseCache {
+
+    // 保护段最多占总容量的比例
+    private static final double PROTECTED_RATIO = 0.8;
+    // 每个条目除内容外的估算开销
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final long maxBytes;
+    private final long maxProtectedBytes;
+
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationBytes;
+    private long protectedBytes;
+
+    // 正在加载的key
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // 缓存的响应：控制器设置的状态码和头，命中时原样重放
+    static final class Entry {
+        final int status;
+        // 没有设置头时为null
+        private final Map<String, List<String>> headers;
+        final byte[] body;
+        final String contentType;
+        private final long expiresAt;
+        private final long size;
+
+        Entry(String key, int status, Map<String, List<String>> headers, byte[] body, String contentType, long ttlMillis) {
+            this.status = status;
+            this.headers = withoutCookies(headers);
+            this.body = body;
+            this.contentType = contentType;
+            this.expiresAt = System.currentTimeMillis() + ttlMillis;
+            long headerBytes = 0;
+            if (this.headers != null) {
+                for (Map.Entry<String, List<String>> header : this.headers.entrySet()) {
+                    for (String value : header.getValue()) {
+                        headerBytes += (header.getKey().length() + value.length()) * 2L;
+                    }
+                }
+            }
+            this.size = body.length + key.length() * 2L + headerBytes + ENTRY_OVERHEAD;
+        }
+
+        // 把缓存的状态码和头设置到响应上
+        void replay(HttpServletResponse resp) {
+            resp.setStatus(status);
+            if (headers == null) {
+                return;
+            }
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                List<String> values = header.getValue();
+                resp.setHeader(header.getKey(), values.get(0));
+                for (int i = 1; i < values.size(); i++) {
+                    resp.addHeader(header.getKey(), values.get(i));
+                }
+            }
+        }
+
+        // Set-Cookie属于发出请求的客户端，不缓存也不重放给其他客户端
+        private static Map<String, List<String>> withoutCookies(Map<String, List<String>> headers) {
+            if (headers == null || !headers.containsKey("Set-Cookie")) {
+                return headers;
+            }
+            Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            copy.putAll(headers);
+            copy.remove("Set-Cookie");
+            return copy.isEmpty() ? null : copy;
+        }
+
+        private boolean expired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    // 未命中时的加载逻辑，结果不可缓存时返回null
+    interface Loader {
+        Entry load() throws Exception;
+    }
+
+    ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.maxProtectedBytes = (long) (maxBytes * PROTECTED_RATIO);
+    }
+
+    // 查询缓存，未命中时由第一个请求调用loader，并发的其他请求等待同一个结果
+    // loader返回null表示结果不可缓存；等待的结果加载失败或不可缓存时返回null，由调用方自己处理请求
+    Entry get(String key, Loader loader) throws Exception {
+        Entry entry = lookup(key);
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> other = loading.putIfAbsent(key, future);
+        if (other != null) {
+            try {
+                return other.get();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        try {
+            entry = loader.load();
+            if (entry != null) {
+                put(key, entry);
+            }
+            future.complete(entry);
+            return entry;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    synchronized void clear() {
+        probation.clear();
+        protectedSegment.clear();
+        probationBytes = 0;
+        protectedBytes = 0;
+    }
+
+    private synchronized Entry lookup(String key) {
+        long now = System.currentTimeMillis();
+        Entry entry = protectedSegment.get(key);
+        if (entry != null) {
+            if (entry.expired(now)) {
+                protectedSegment.remove(key);
+                protectedBytes -= entry.size;
+                return null;
+            }
+            return entry;
+        }
+        entry = probation.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        probationBytes -= entry.size;
+        if (entry.expired(now)) {
+            return null;
+        }
+        // 再次命中，晋升到保护段；保护段超出容量时把最久未访问的降级回试用段
+        protectedSegment.put(key, entry);
+        protectedBytes += entry.size;
+        Iterator<Map.Entry<String, Entry>> it = protectedSegment.entrySet().iterator();
+        while (protectedBytes > maxProtectedBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            protectedBytes -= eldest.getValue().size;
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationBytes += eldest.getValue().size;
+        }
+        return entry;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        if (entry.size > maxBytes) {
+            return;
+        }
+        Entry old = protectedSegment.remove(key);
+        if (old != null) {
+            protectedBytes -= old.size;
+        }
+        old = probation.put(key, entry);
+        if (old != null) {
+            probationBytes -= old.size;
+        }
+        probationBytes += entry.size;
+        evict();
+    }
+
+    // 超出容量时先淘汰试用段中最久未访问的，试用段为空时再淘汰保护段
+    private void evict() {
+        while (probationBytes + protectedBytes > maxBytes) {
+            if (!probation.isEmpty()) {
+                Iterator<Entry> it = probation.values().iterator();
+                probationBytes -= it.next().size;
+                it.remove();
+            } else {
+                Iterator<Entry> it = protectedSegment.values().iterator();
+                protectedBytes -= it.next().size;
+                it.remove();
+            }
+            evictions.increment();
+        }
+    }
+
+    // 以Prometheus文本格式输出命中、未命中和淘汰次数
+    void writePrometheus(Appendable out) throws IOException {
+        out.append("# TYPE mymvc_response_cache_hits_total counter\n");
+        out.append("mymvc_response_cache_hits_total ").append(Long.toString(hits.sum())).append('\n');
+        out.append("# TYPE mymvc_response_cache_misses_total counter\n");
+        out.append("mymvc_response_cache_misses_total ").append(Long.toString(misses.sum())).append('\n');
+        out.append("# TYPE mymvc_response_cache_evictions_total counter\n");
+        out.append("mymvc_response_cache_evictions_total ").append(Long.toString(evictions.sum())).append('\n');
+    }
+}
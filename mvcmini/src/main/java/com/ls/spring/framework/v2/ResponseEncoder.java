@@ -0,0 +1,234 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// 响应编码：响应体先写到CapturingResponse中，写完后生成ETag、按Accept-Encoding压缩，再写到原响应
+// ETag为响应体长度和64位FNV-1a哈希组成的弱校验值，If-None-Match匹配时返回304，不写响应体
+// 压缩只对文本类内容且不小于最小长度的响应生效，优先gzip，其次deflate；Deflater放在池中复用
+final class ResponseEncoder {
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    // gzip头：魔数、deflate算法、无标志、无时间戳、无额外标志、未知系统
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_LENGTH = 8;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final boolean etag;
+    private final boolean compression;
+    private final int minBytes;
+    private final int level;
+    // 最多在内存中缓存的响应体字节数，超出后直接写出，不压缩、不生成ETag
+    private final int maxBytes;
+    // gzip使用不带zlib头的原始deflate流，HTTP的deflate为zlib格式
+    private final BlockingQueue<Deflater> gzipPool = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Deflater> deflatePool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private ResponseEncoder(boolean etag, boolean compression, int minBytes, int level, int maxBytes) {
+        this.etag = etag;
+        this.compression = compression;
+        this.minBytes = minBytes;
+        this.level = level;
+        this.maxBytes = maxBytes;
+    }
+
+    // 压缩和ETag都没有开启时返回null，不做额外处理
+    static ResponseEncoder create(Properties config) {
+        boolean etag = Boolean.parseBoolean(config.getProperty("response-etag", "false"));
+        boolean compression = Boolean.parseBoolean(config.getProperty("response-compression", "false"));
+        if (!etag && !compression) {
+            return null;
+        }
+        int minBytes = Integer.parseInt(config.getProperty("response-compression-min-bytes", "1024"));
+        int level = Integer.parseInt(config.getProperty("response-compression-level", Integer.toString(Deflater.DEFAULT_COMPRESSION)));
+        int maxBytes = Integer.parseInt(config.getProperty("response-capture-max-bytes", "1048576"));
+        return new ResponseEncoder(etag, compression, minBytes, level, maxBytes);
+    }
+
+    // 是否需要先把响应体写到内存中：GET请求要生成ETag，或者客户端接受压缩
+    boolean accepts(HttpServletRequest req) {
+        return etag && "GET".equals(req.getMethod()) || compression && req.getHeader("Accept-Encoding") != null;
+    }
+
+    // 包装原响应，响应体先写到内存中
+    CapturingResponse capture(HttpServletResponse resp) {
+        return new CapturingResponse(resp, maxBytes);
+    }
+
+    // 把内存中的响应体编码后写到原响应
+    void write(HttpServletRequest req, CapturingResponse capturing) throws IOException {
+        if (capturing.sent()) {
+            // 错误页或重定向已经写到原响应
+            return;
+        }
+        if (capturing.passedThrough()) {
+            // 超出上限或流式的响应体已经直接写到原响应，写出PrintWriter中剩余的内容
+            capturing.flushWriter();
+            return;
+        }
+        HttpServletResponse resp = (HttpServletResponse) capturing.getResponse();
+        byte[] body = capturing.buffer();
+        int length = capturing.size();
+        int status = resp.getStatus();
+        if (etag && status == HttpServletResponse.SC_OK && "GET".equals(req.getMethod())) {
+            // 控制器自己设置了ETag时只做比较
+            String tag = resp.getHeader("ETag");
+            if (tag == null) {
+                tag = etagOf(body, length);
+                resp.setHeader("ETag", tag);
+            }
+            if (matches(req.getHeader("If-None-Match"), tag)) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+        if (compression && status != HttpServletResponse.SC_NO_CONTENT && status != HttpServletResponse.SC_NOT_MODIFIED
+                && compressible(resp.getContentType()) && resp.getHeader("Content-Encoding") == null) {
+            resp.addHeader("Vary", "Accept-Encoding");
+            String encoding = length >= minBytes ? negotiate(req.getHeader("Accept-Encoding")) : null;
+            if (encoding != null && write(resp, encoding, body, length)) {
+                return;
+            }
+        }
+        resp.setContentLength(length);
+        resp.getOutputStream().write(body, 0, length);
+    }
+
+    // 压缩后写出，压缩后没有变小时返回false，由调用方写出原内容
+    private boolean write(HttpServletResponse resp, String encoding, byte[] body, int length) throws IOException {
+        boolean gzip = GZIP.equals(encoding);
+        BlockingQueue<Deflater> pool = gzip ? gzipPool : deflatePool;
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, gzip);
+        }
+        // zlib的压缩上界，加上gzip的头和尾
+        byte[] out = new byte[length + (length >> 12) + (length >> 14) + (length >> 25) + 13
+                + GZIP_HEADER.length + GZIP_TRAILER_LENGTH];
+        int n = 0;
+        try {
+            if (gzip) {
+                System.arraycopy(GZIP_HEADER, 0, out, 0, GZIP_HEADER.length);
+                n = GZIP_HEADER.length;
+            }
+            deflater.setInput(body, 0, length);
+            deflater.finish();
+            while (!deflater.finished() && n < out.length) {
+                n += deflater.deflate(out, n, out.length - n);
+            }
+        } finally {
+            deflater.reset();
+            if (!pool.offer(deflater)) {
+                deflater.end();
+            }
+        }
+        if (gzip) {
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, length);
+            n = putIntLE(out, n, (int) crc.getValue());
+            n = putIntLE(out, n, length);
+        }
+        if (n >= length) {
+            return false;
+        }
+        resp.setHeader("Content-Encoding", encoding);
+        resp.setContentLength(n);
+        resp.getOutputStream().write(out, 0, n);
+        return true;
+    }
+
+    private static int putIntLE(byte[] out, int offset, int value) {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >>> 8);
+        out[offset + 2] = (byte) (value >>> 16);
+        out[offset + 3] = (byte) (value >>> 24);
+        return offset + 4;
+    }
+
+    // 文本、JSON、XML和脚本值得压缩，图片、压缩包等已压缩过的内容不再压缩
+    private static boolean compressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        return contentType.startsWith("text/") || contentType.contains("json") || contentType.contains("xml")
+                || contentType.contains("javascript");
+    }
+
+    // 按Accept-Encoding选择编码，q=0表示不接受；gzip优先
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean deflate = false;
+        boolean any = false;
+        for (String part : acceptEncoding.split(",")) {
+            int semicolon = part.indexOf(';');
+            String coding = (semicolon < 0 ? part : part.substring(0, semicolon)).trim();
+            if (semicolon >= 0 && rejected(part.substring(semicolon + 1))) {
+                continue;
+            }
+            if (GZIP.equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+                return GZIP;
+            }
+            if (DEFLATE.equalsIgnoreCase(coding)) {
+                deflate = true;
+            } else if ("*".equals(coding)) {
+                any = true;
+            }
+        }
+        return any ? GZIP : deflate ? DEFLATE : null;
+    }
+
+    // 参数为q=0（或0.0、0.00…）时表示不接受
+    private static boolean rejected(String params) {
+        for (String param : params.split(";")) {
+            String p = param.trim();
+            if (p.length() > 2 && (p.charAt(0) == 'q' || p.charAt(0) == 'Q') && p.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(p.substring(2).trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    // 弱校验值：同一内容gzip、deflate和原文的表示都对应同一个ETag
+    static String etagOf(byte[] body, int length) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            hash ^= body[i] & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return "W/\"" + Integer.toHexString(length) + '-' + Long.toHexString(hash) + '"';
+    }
+
+    // If-None-Match按弱比较，可以是*或逗号分隔的多个ETag
+    static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = opaque(tag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if ("*".equals(c) || opaque(c).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
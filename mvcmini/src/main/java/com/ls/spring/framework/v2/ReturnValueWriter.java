@@ -0,0 +1,10 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// 返回值写出器，每个Handler在init时按返回类型创建一个，请求时直接写出到响应流
+public interface ReturnValueWriter {
+
+    void write(Object returnValue, HttpServletResponse resp) throws IOException;
+}
@@ -0,0 +1,277 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 根据返回类型创建返回值写出器，直接写出到getOutputStream()，不再整体转成String后经Writer重新编码
+public final class ReturnValueWriters {
+
+    private static final String OCTET_STREAM = "application/octet-stream";
+    private static final String JSON = "application/json;charset=UTF-8";
+
+    // 复制缓冲区大小及池中最多保留的缓冲区个数
+    static final int BUFFER_SIZE = 8192;
+    private static final int POOL_SIZE = 64;
+
+    private static final BlockingQueue<byte[]> BUFFER_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final Map<String, Charset> CHARSETS = new ConcurrentHashMap<>();
+    // CharsetEncoder不是线程安全的，每个线程按字符集缓存一个
+    private static final ThreadLocal<Map<Charset, CharsetEncoder>> ENCODERS = ThreadLocal.withInitial(HashMap::new);
+
+    private static final ReturnValueWriter VOID = (value, resp) -> {
+    };
+    private static final ReturnValueWriter BYTES = (value, resp) -> writeBytes((byte[]) value, resp);
+    private static final ReturnValueWriter BYTE_BUFFER = (value, resp) -> writeByteBuffer((ByteBuffer) value, resp);
+    private static final ReturnValueWriter INPUT_STREAM = (value, resp) -> writeInputStream((InputStream) value, resp);
+    private static final ReturnValueWriter PATH = (value, resp) -> writePath((Path) value, resp);
+    private static final ReturnValueWriter FILE = (value, resp) -> writePath(((File) value).toPath(), resp);
+    private static final ReturnValueWriter CHARS = (value, resp) -> writeChars((CharSequence) value, resp);
+    // 不能异步时的流式返回值，返回501；能异步时由MyDispacherServlet非阻塞写出，不经过这里
+    private static final ReturnValueWriter STREAM = (value, resp) -> StreamWriter.reject((MyPublisher<?>) value, resp);
+    // 返回类型无法确定时（Object、CompletionStage等）按运行时类型选择
+    private static final ReturnValueWriter ANY = (value, resp) -> forValue(value).write(value, resp);
+
+    private ReturnValueWriters() {
+    }
+
+    // 为一个返回类型创建写出器，null值一律不写出
+    public static ReturnValueWriter create(Class<?> returnType) {
+        ReturnValueWriter writer = forType(returnType);
+        if (writer == VOID || writer == ANY) {
+            return writer;
+        }
+        return (value, resp) -> {
+            if (value != null) {
+                writer.write(value, resp);
+            }
+        };
+    }
+
+    // 流和文件返回值边读边写，不应整体缓存到内存中；MyPublisher由MyDispacherServlet直接写到原响应，不在此列
+    static boolean streaming(Class<?> returnType) {
+        return InputStream.class.isAssignableFrom(returnType) || Path.class.isAssignableFrom(returnType)
+                || returnType == File.class;
+    }
+
+    // 返回值序列化为JSON，在init时按返回类型预先生成序列化器
+    public static ReturnValueWriter json(Class<?> returnType) {
+        if (returnType == void.class || returnType == Void.class) {
+            return VOID;
+        }
+        // 流式返回值的元素逐个序列化，不把发布者本身当作对象序列化
+        if (MyPublisher.class.isAssignableFrom(returnType)) {
+            return STREAM;
+        }
+        JsonSerializers.Serializer serializer = JsonSerializers.forType(returnType);
+        return (value, resp) -> writeJson(serializer, value, resp);
+    }
+
+    // 按运行时类型写出，用于CompletionStage完成后的结果
+    public static ReturnValueWriter any() {
+        return ANY;
+    }
+
+    private static ReturnValueWriter forType(Class<?> type) {
+        if (type == void.class || type == Void.class) {
+            return VOID;
+        }
+        if (type == byte[].class) {
+            return BYTES;
+        }
+        if (ByteBuffer.class.isAssignableFrom(type)) {
+            return BYTE_BUFFER;
+        }
+        if (InputStream.class.isAssignableFrom(type)) {
+            return INPUT_STREAM;
+        }
+        if (Path.class.isAssignableFrom(type)) {
+            return PATH;
+        }
+        if (type == File.class) {
+            return FILE;
+        }
+        if (CharSequence.class.isAssignableFrom(type)) {
+            return CHARS;
+        }
+        if (MyPublisher.class.isAssignableFrom(type)) {
+            return STREAM;
+        }
+        if (type == Object.class || type.isInterface() || CompletionStage.class.isAssignableFrom(type)) {
+            return ANY;
+        }
+        // 其他类型与原先一致，写出toString()
+        return (value, resp) -> writeChars(value.toString(), resp);
+    }
+
+    private static ReturnValueWriter forValue(Object value) {
+        if (value == null || value instanceof Void) {
+            return VOID;
+        }
+        ReturnValueWriter writer = forType(value.getClass());
+        return writer == ANY ? (v, resp) -> writeChars(v.toString(), resp) : writer;
+    }
+
+    private static void writeBytes(byte[] bytes, HttpServletResponse resp) throws IOException {
+        defaultContentType(resp);
+        resp.setContentLength(bytes.length);
+        resp.getOutputStream().write(bytes);
+    }
+
+    private static void writeByteBuffer(ByteBuffer buffer, HttpServletResponse resp) throws IOException {
+        defaultContentType(resp);
+        resp.setContentLength(buffer.remaining());
+        ServletOutputStream out = resp.getOutputStream();
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+        // 直接内存分块复制，不改变调用方buffer的position
+        ByteBuffer source = buffer.duplicate();
+        byte[] chunk = acquire();
+        try {
+            while (source.hasRemaining()) {
+                int n = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+        } finally {
+            release(chunk);
+        }
+    }
+
+    private static void writeInputStream(InputStream in, HttpServletResponse resp) throws IOException {
+        defaultContentType(resp);
+        try (InputStream source = in) {
+            copy(source, resp.getOutputStream());
+        }
+    }
+
+    // 文件：容器的输出流是WritableByteChannel时用transferTo，否则经缓冲池分块复制
+    // transferTo一次没有传输任何字节时（非阻塞的通道暂时写不进去，或文件被截短），剩余部分也改为分块复制
+    private static void writePath(Path path, HttpServletResponse resp) throws IOException {
+        defaultContentType(resp);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= Integer.MAX_VALUE) {
+                resp.setContentLength((int) size);
+            }
+            ServletOutputStream out = resp.getOutputStream();
+            long position = 0;
+            if (out instanceof WritableByteChannel) {
+                while (position < size) {
+                    long n = channel.transferTo(position, size - position, (WritableByteChannel) out);
+                    if (n <= 0) {
+                        break;
+                    }
+                    position += n;
+                }
+            }
+            if (position < size) {
+                channel.position(position);
+                copy(Channels.newInputStream(channel), out);
+            }
+        }
+    }
+
+    private static void writeJson(JsonSerializers.Serializer serializer, Object value, HttpServletResponse resp) throws IOException {
+        if (resp.getContentType() == null) {
+            resp.setContentType(JSON);
+        }
+        byte[] chunk = acquire();
+        try {
+            JsonOutput out = new JsonOutput(resp.getOutputStream(), chunk);
+            serializer.write(value, out);
+            out.flush();
+        } finally {
+            release(chunk);
+        }
+    }
+
+    // 字符：按响应的字符集分块编码，编码结果直接写出，不生成完整的byte[]
+    private static void writeChars(CharSequence chars, HttpServletResponse resp) throws IOException {
+        Charset charset = charset(resp.getCharacterEncoding());
+        CharsetEncoder encoder = ENCODERS.get().computeIfAbsent(charset, c -> c.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE));
+        encoder.reset();
+
+        ServletOutputStream out = resp.getOutputStream();
+        CharBuffer source = CharBuffer.wrap(chars);
+        byte[] chunk = acquire();
+        try {
+            ByteBuffer target = ByteBuffer.wrap(chunk);
+            CoderResult result;
+            do {
+                result = encoder.encode(source, target, true);
+                drain(target, out);
+            } while (result.isOverflow());
+            do {
+                result = encoder.flush(target);
+                drain(target, out);
+            } while (result.isOverflow());
+        } finally {
+            release(chunk);
+        }
+    }
+
+    private static void drain(ByteBuffer target, ServletOutputStream out) throws IOException {
+        out.write(target.array(), 0, target.position());
+        target.clear();
+    }
+
+    private static void copy(InputStream in, ServletOutputStream out) throws IOException {
+        byte[] chunk = acquire();
+        try {
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                out.write(chunk, 0, n);
+            }
+        } finally {
+            release(chunk);
+        }
+    }
+
+    private static void defaultContentType(HttpServletResponse resp) {
+        if (resp.getContentType() == null) {
+            resp.setContentType(OCTET_STREAM);
+        }
+    }
+
+    static Charset charset(String name) {
+        if (name == null) {
+            return StandardCharsets.ISO_8859_1;
+        }
+        return CHARSETS.computeIfAbsent(name, Charset::forName);
+    }
+
+    // 借出缓冲区，用完后必须release归还
+    static byte[] acquire() {
+        byte[] buffer = BUFFER_POOL.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    static void release(byte[] buffer) {
+        BUFFER_POOL.offer(buffer);
+    }
+}
@@ -0,0 +1,74 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.annotation.MyBulkhead;
+import com.ls.spring.framework.annotation.MyRateLimit;
+
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+
+// 路由的准入控制：令牌桶限流和并发数舱壁，在绑定参数之前检查，超出时直接拒绝
+// 在init时按注解和配置为每个路由创建，没有限制的路由为null
+final class RouteLimiter {
+
+    // Servlet 3.1中没有429的常量
+    static final int SC_TOO_MANY_REQUESTS = 429;
+    static final int ACCEPTED = 0;
+
+    private final TokenBucket bucket;
+    private final Semaphore bulkhead;
+
+    private RouteLimiter(TokenBucket bucket, Semaphore bulkhead) {
+        this.bucket = bucket;
+        this.bulkhead = bulkhead;
+    }
+
+    // 配置优先于注解：rate-limit.<url>=每秒请求数[,突发数]，bulkhead.<url>=最大并发数，值为0表示不限制
+    static RouteLimiter create(Method method, String url, Properties config) {
+        TokenBucket bucket = null;
+        String rate = config.getProperty("rate-limit." + url);
+        if (rate != null) {
+            String[] parts = rate.split(",");
+            double permits = Double.parseDouble(parts[0].trim());
+            if (permits > 0) {
+                bucket = new TokenBucket(permits, parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 0);
+            }
+        } else if (method.isAnnotationPresent(MyRateLimit.class)) {
+            MyRateLimit limit = method.getAnnotation(MyRateLimit.class);
+            bucket = new TokenBucket(limit.value(), limit.burst());
+        }
+
+        int maxConcurrent = 0;
+        String bulkhead = config.getProperty("bulkhead." + url);
+        if (bulkhead != null) {
+            maxConcurrent = Integer.parseInt(bulkhead.trim());
+        } else if (method.isAnnotationPresent(MyBulkhead.class)) {
+            maxConcurrent = method.getAnnotation(MyBulkhead.class).value();
+        }
+
+        if (bucket == null && maxConcurrent <= 0) {
+            return null;
+        }
+        return new RouteLimiter(bucket, maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null);
+    }
+
+    // 放行时返回ACCEPTED，请求结束后需要调用release；拒绝时返回响应状态码
+    int tryAcquire() {
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            return HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+        }
+        if (bucket != null && !bucket.tryAcquire()) {
+            // 没有拿到令牌的请求不占用并发数
+            release();
+            return SC_TOO_MANY_REQUESTS;
+        }
+        return ACCEPTED;
+    }
+
+    void release() {
+        if (bulkhead != null) {
+            bulkhead.release();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.ls.spring.framework.v2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// 路由前缀树（radix tree），在init时构建一次，运行时只读
+// 纯字面量的url按字符逐个匹配，时间复杂度只和url长度有关；
+// 路径变量{name}占一整段，作为节点的变量子节点，匹配时只记录变量所在段的起止下标；
+// 含正则的url挂在其字面量前缀对应的节点上，只有走到该节点时才做正则匹配
+public final class RouteTrie<T> {
+
+    // 正则元字符
+    private static final String REGEX_META = "\\^$.|?*+()[]{}";
+    // 路径变量，与正则的{n,m}量词区分，变量名必须以字母或下划线开头
+    private static final Pattern VARIABLE = Pattern.compile("\\{([A-Za-z_][A-Za-z0-9_]*)}");
+
+    private final Node<T> root = new Node<>("");
+    private boolean frozen;
+    // 所有路由中路径变量个数的最大值
+    private int maxVariables;
+
+    // 注册路由，url为未编译的正则字符串或含{name}的路径模板
+    public void add(String url, Pattern pattern, T value) {
+        if (frozen) {
+            throw new IllegalStateException("路由树已冻结，不能再注册！");
+        }
+        if (VARIABLE.matcher(url).find()) {
+            addTemplate(url, value);
+            return;
+        }
+        int literalLength = literalPrefixLength(url);
+        if (literalLength == url.length()) {
+            Node<T> node = insert(url);
+            // 与原先List的行为一致，先注册的优先
+            if (node.value == null) {
+                node.value = value;
+            }
+        } else {
+            Node<T> node = insert(url.substring(0, literalLength));
+            node.patterns.add(new PatternRoute<>(pattern, value));
+        }
+    }
+
+    // 路径模板：字面量部分按字符插入，每个变量走到变量子节点
+    private void addTemplate(String url, T value) {
+        Node<T> node = root;
+        int variables = 0;
+        int pos = 0;
+        Matcher m = VARIABLE.matcher(url);
+        while (m.find()) {
+            if (m.start() == 0 || url.charAt(m.start() - 1) != '/'
+                    || (m.end() < url.length() && url.charAt(m.end()) != '/')) {
+                throw new IllegalArgumentException("路径变量必须占一整段：" + url);
+            }
+            node = insert(node, url.substring(pos, m.start()));
+            if (node.variable == null) {
+                node.variable = new Node<>("");
+            }
+            node = node.variable;
+            variables++;
+            pos = m.end();
+        }
+        node = insert(node, url.substring(pos));
+        if (node.value == null) {
+            node.value = value;
+        }
+        maxVariables = Math.max(maxVariables, variables);
+    }
+
+    // 按出现顺序返回路径模板中的变量名，不是模板时返回空列表
+    public static List<String> variableNames(String url) {
+        List<String> names = new ArrayList<>();
+        Matcher m = VARIABLE.matcher(url);
+        while (m.find()) {
+            names.add(m.group(1));
+        }
+        return names;
+    }
+
+    // 把路径模板转换为等价的正则，变量匹配一整段
+    public static String templateRegex(String url) {
+        StringBuilder regex = new StringBuilder();
+        int pos = 0;
+        Matcher m = VARIABLE.matcher(url);
+        while (m.find()) {
+            regex.append(Pattern.quote(url.substring(pos, m.start()))).append("([^/]+)");
+            pos = m.end();
+        }
+        if (pos < url.length()) {
+            regex.append(Pattern.quote(url.substring(pos)));
+        }
+        return regex.toString();
+    }
+
+    // 匹配时需要的变量下标数组长度，每个变量记录起止两个下标
+    public int offsetsLength() {
+        return maxVariables * 2;
+    }
+
+    // 构建完成后调用，预先计算每个节点可尝试的正则路由（自身优先，其次祖先节点）
+    public void freeze() {
+        freeze(root, new ArrayList<>());
+        frozen = true;
+    }
+
+    // 根据url查找，未找到返回null
+    public T match(String uri) {
+        return match(uri, null);
+    }
+
+    // 根据url查找，未找到返回null；匹配到路径模板时，第i个变量的起止下标写入offsets[2i]和offsets[2i+1]
+    // 优先级：字面量完全匹配 > 路径模板 > 正则
+    public T match(String uri, int[] offsets) {
+        Node<T> node = root;
+        Node<T> lastPatternNode = root.inherited.length > 0 ? root : null;
+        int pos = 0;
+        int length = uri.length();
+        while (pos < length) {
+            Node<T> child = node.child(uri.charAt(pos));
+            if (child == null || !uri.regionMatches(pos, child.label, 0, child.label.length())) {
+                break;
+            }
+            pos += child.label.length();
+            node = child;
+            if (node.inherited.length > 0) {
+                lastPatternNode = node;
+            }
+        }
+        if (pos == length && node.value != null) {
+            return node.value;
+        }
+        if (maxVariables > 0 && offsets != null) {
+            T value = matchTemplate(root, uri, 0, offsets, 0);
+            if (value != null) {
+                return value;
+            }
+        }
+        if (lastPatternNode == null) {
+            return null;
+        }
+        for (PatternRoute<T> route : lastPatternNode.inherited) {
+            if (route.pattern.matcher(uri).matches()) {
+                return route.value;
+            }
+        }
+        return null;
+    }
+
+    // 回溯匹配：先走字面量子节点，失败后再把当前段作为变量
+    private T matchTemplate(Node<T> node, String uri, int pos, int[] offsets, int variable) {
+        int length = uri.length();
+        if (pos == length && node.value != null) {
+            return node.value;
+        }
+        if (pos < length) {
+            Node<T> child = node.child(uri.charAt(pos));
+            if (child != null && uri.regionMatches(pos, child.label, 0, child.label.length())) {
+                T value = matchTemplate(child, uri, pos + child.label.length(), offsets, variable);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        if (node.variable != null && pos < length && uri.charAt(pos) != '/') {
+            int end = uri.indexOf('/', pos);
+            if (end < 0) {
+                end = length;
+            }
+            T value = matchTemplate(node.variable, uri, end, offsets, variable + 1);
+            if (value != null) {
+                offsets[variable * 2] = pos;
+                offsets[variable * 2 + 1] = end;
+                return value;
+            }
+        }
+        return null;
+    }
+
+    // 计算url开头纯字面量部分的长度，遇到元字符即停止；被量词修饰的字符也不算字面量
+    // 顶层有选择符'|'时，各分支的开头不同，没有公共的字面量前缀，返回0
+    static int literalPrefixLength(String url) {
+        if (hasTopLevelAlternation(url)) {
+            return 0;
+        }
+        int length = url.length();
+        for (int i = 0; i < length; i++) {
+            char c = url.charAt(i);
+            if (REGEX_META.indexOf(c) >= 0) {
+                if ((c == '?' || c == '*' || c == '+' || c == '{') && i > 0) {
+                    return i - 1;
+                }
+                return i;
+            }
+        }
+        return length;
+    }
+
+    // 在字符类和分组之外是否有未转义的'|'
+    private static boolean hasTopLevelAlternation(String url) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                }
+            } else if (c == '[') {
+                inClass = true;
+                // 紧跟在'['或'[^'后的']'是字面量
+                if (i + 1 < url.length() && url.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < url.length() && url.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 插入字面量路径，必要时拆分已有的边，返回路径对应的节点
+    private Node<T> insert(String path) {
+        return insert(root, path);
+    }
+
+    // 从指定节点开始插入字面量路径
+    private Node<T> insert(Node<T> node, String path) {
+        int pos = 0;
+        while (pos < path.length()) {
+            char c = path.charAt(pos);
+            Node<T> child = node.child(c);
+            if (child == null) {
+                child = new Node<>(path.substring(pos));
+                node.addChild(child);
+                return child;
+            }
+            // 计算与已有边的公共前缀长度
+            String label = child.label;
+            int common = 0;
+            int max = Math.min(label.length(), path.length() - pos);
+            while (common < max && label.charAt(common) == path.charAt(pos + common)) {
+                common++;
+            }
+            if (common < label.length()) {
+                // 拆分边：node -> middle -> child
+                Node<T> middle = new Node<>(label.substring(0, common));
+                child.label = label.substring(common);
+                node.replaceChild(c, middle);
+                middle.addChild(child);
+                child = middle;
+            }
+            pos += common;
+            node = child;
+        }
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void freeze(Node<T> node, List<PatternRoute<T>> ancestors) {
+        List<PatternRoute<T>> inherited = new ArrayList<>(node.patterns);
+        inherited.addAll(ancestors);
+        node.inherited = inherited.toArray(new PatternRoute[0]);
+        for (Node<T> child : node.children) {
+            freeze(child, inherited);
+        }
+        if (node.variable != null) {
+            freeze(node.variable, inherited);
+        }
+    }
+
+    private static final class PatternRoute<T> {
+        private final Pattern pattern;
+        private final T value;
+
+        PatternRoute(Pattern pattern, T value) {
+            this.pattern = pattern;
+            this.value = value;
+        }
+    }
+
+    private static final class Node<T> {
+        private String label;
+        private T value;
+        // 子节点按首字符排序，便于二分查找
+        private char[] firstChars = new char[0];
+        @SuppressWarnings("unchecked")
+        private Node<T>[] children = new Node[0];
+        // 路径变量子节点，匹配一整段
+        private Node<T> variable;
+        private List<PatternRoute<T>> patterns = new ArrayList<>();
+        @SuppressWarnings("unchecked")
+        private PatternRoute<T>[] inherited = new PatternRoute[0];
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node<T> child(char c) {
+            int i = Arrays.binarySearch(firstChars, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        void addChild(Node<T> child) {
+            char c = child.label.charAt(0);
+            int i = -Arrays.binarySearch(firstChars, c) - 1;
+            char[] chars = new char[firstChars.length + 1];
+            Node<T>[] nodes = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(firstChars, 0, chars, 0, i);
+            System.arraycopy(firstChars, i, chars, i + 1, firstChars.length - i);
+            System.arraycopy(children, i, nodes, i + 1, children.length - i);
+            chars[i] = c;
+            nodes[i] = child;
+            firstChars = chars;
+            children = nodes;
+        }
+
+        void replaceChild(char c, Node<T> child) {
+            children[Arrays.binarySearch(firstChars, c)] = child;
+        }
+    }
+}
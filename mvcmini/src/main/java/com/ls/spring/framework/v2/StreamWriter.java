@@ -0,0 +1,317 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 把MyPublisher写到响应：订阅后只在输出流isReady时写出，写不动时停止，等onWritePossible再继续，
+// 已写出的个数达到一半时再向发布者请求，客户端慢时发布者自然停下，等待中的连接不占用容器线程
+// 格式按Content-Type：没有设置或为text/event-stream时写成Server-Sent Events，否则为分块输出，
+// byte[]和字符串原样写出，其他对象序列化为JSON后加换行（NDJSON）
+final class StreamWriter implements MyPublisher.Subscriber<Object> {
+
+    static final String EVENT_STREAM = "text/event-stream";
+    private static final byte[] DATA = "data: ".getBytes(StandardCharsets.US_ASCII);
+
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream out;
+    private final boolean sse;
+    private final Charset charset;
+    private final int prefetch;
+    private final Callback callback;
+    // 已编码、等待写出的数据，最多prefetch个
+    private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile MyPublisher.Subscription subscription;
+    private volatile boolean done;
+    private volatile Throwable failure;
+    // 以下只在drain中访问：上次请求后已写出的个数、是否有未flush的内容
+    private int consumed;
+    private boolean dirty;
+
+    // 流结束时调用一次，error为null表示正常结束或客户端已断开
+    interface Callback {
+        void finished(Exception error);
+    }
+
+    private StreamWriter(AsyncContext asyncContext, HttpServletResponse resp, int prefetch, Callback callback) throws IOException {
+        this.asyncContext = asyncContext;
+        this.sse = prepare(resp);
+        this.charset = sse ? StandardCharsets.UTF_8 : ReturnValueWriters.charset(resp.getCharacterEncoding());
+        this.prefetch = prefetch;
+        this.callback = callback;
+        this.out = resp.getOutputStream();
+    }
+
+    // 非阻塞写出：注册监听器后订阅，之后由监听器和发布者的回调驱动；timeoutMillis为0时不超时
+    static void start(MyPublisher<?> publisher, AsyncContext asyncContext, HttpServletResponse resp,
+                      long timeoutMillis, int prefetch, Callback callback) throws IOException {
+        StreamWriter writer = new StreamWriter(asyncContext, resp, prefetch, callback);
+        Listener listener = writer.new Listener();
+        asyncContext.setTimeout(timeoutMillis);
+        asyncContext.addListener(listener);
+        writer.out.setWriteListener(listener);
+        publisher.subscribe(writer);
+    }
+
+    // 不支持异步的请求（内嵌服务器、批量子请求、缓存的响应等）：响应只在处理结束后整体写出，流式数据会在内存中无限积累，
+    // 不写出，返回501；订阅后立即取消，让发布者释放资源（如停止定时任务）
+    static void reject(MyPublisher<?> publisher, HttpServletResponse resp) {
+        publisher.subscribe(new MyPublisher.Subscriber<Object>() {
+            @Override
+            public void onSubscribe(MyPublisher.Subscription subscription) {
+                subscription.cancel();
+            }
+
+            @Override
+            public void onNext(Object item) {
+            }
+
+            @Override
+            public void onError(Throwable error) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        ErrorResponses.write(resp, HttpServletResponse.SC_NOT_IMPLEMENTED);
+    }
+
+    // 按Content-Type确定格式，SSE时设置不缓存的头；返回是否为SSE
+    private static boolean prepare(HttpServletResponse resp) {
+        String contentType = resp.getContentType();
+        if (contentType == null) {
+            resp.setContentType(EVENT_STREAM + ";charset=UTF-8");
+        } else if (!contentType.startsWith(EVENT_STREAM)) {
+            return false;
+        }
+        resp.setHeader("Cache-Control", "no-cache");
+        // 反向代理（nginx）不缓冲事件流
+        resp.setHeader("X-Accel-Buffering", "no");
+        return true;
+    }
+
+    @Override
+    public void onSubscribe(MyPublisher.Subscription s) {
+        subscription = s;
+        if (finished.get()) {
+            s.cancel();
+            return;
+        }
+        s.request(prefetch);
+    }
+
+    // 在发布者的线程中编码，写出时只复制字节
+    @Override
+    public void onNext(Object item) {
+        if (finished.get()) {
+            return;
+        }
+        try {
+            pending.offer(encode(item, sse, charset));
+        } catch (IOException | RuntimeException e) {
+            subscription.cancel();
+            onError(e);
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        failure = error;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    // 写出可以写的数据；同一时刻只有一个线程执行，其他线程的调用由它多循环一次处理
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            try {
+                while (!finished.get() && out.isReady()) {
+                    byte[] next = pending.poll();
+                    if (next == null) {
+                        if (dirty) {
+                            // 一批写完后flush，事件及时到达客户端
+                            dirty = false;
+                            out.flush();
+                            continue;
+                        }
+                        if (done) {
+                            end(failure);
+                        }
+                        break;
+                    }
+                    out.write(next);
+                    dirty = true;
+                    // 写出一半后补充请求，最多有prefetch个在途
+                    if (++consumed >= (prefetch + 1) / 2) {
+                        int n = consumed;
+                        consumed = 0;
+                        subscription.request(n);
+                    }
+                }
+            } catch (IOException e) {
+                cancel(null);
+            } catch (RuntimeException e) {
+                cancel(e);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    // 客户端断开、超时或写出异常：取消订阅并结束
+    private void cancel(Exception error) {
+        MyPublisher.Subscription s = subscription;
+        if (s != null && !finished.get()) {
+            s.cancel();
+        }
+        end(error);
+    }
+
+    // 只结束一次；发布者出错且还没有写出任何内容时返回500，已经开始写出时直接结束
+    private void end(Throwable error) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        pending.clear();
+        Exception failure = null;
+        if (error != null) {
+            failure = error instanceof Exception ? (Exception) error : new RuntimeException(error);
+            ErrorResponses.log(error);
+            HttpServletResponse resp = (HttpServletResponse) asyncContext.getResponse();
+            if (!resp.isCommitted()) {
+                resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+        callback.finished(failure);
+    }
+
+    // 一个数据编码为要写出的字节
+    static byte[] encode(Object item, boolean sse, Charset charset) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        if (!sse) {
+            if (item instanceof byte[]) {
+                return (byte[]) item;
+            }
+            if (item instanceof CharSequence) {
+                return item.toString().getBytes(charset);
+            }
+            writeJson(item, bytes);
+            bytes.write('\n');
+            return bytes.toByteArray();
+        }
+        Object data = item;
+        if (item instanceof MySseEvent) {
+            MySseEvent event = (MySseEvent) item;
+            writeField(bytes, "id: ", event.getId());
+            writeField(bytes, "event: ", event.getEvent());
+            data = event.getData();
+        }
+        if (data instanceof CharSequence || data instanceof byte[]) {
+            String text = data instanceof byte[] ? new String((byte[]) data, StandardCharsets.UTF_8) : data.toString();
+            // 每行一个data字段，客户端按换行拼接
+            int start = 0;
+            int newline;
+            while ((newline = text.indexOf('\n', start)) >= 0) {
+                writeDataLine(bytes, text, start, newline);
+                start = newline + 1;
+            }
+            writeDataLine(bytes, text, start, text.length());
+        } else {
+            // JSON中的换行都已转义，只有一行
+            bytes.write(DATA);
+            writeJson(data, bytes);
+            bytes.write('\n');
+        }
+        bytes.write('\n');
+        return bytes.toByteArray();
+    }
+
+    private static void writeDataLine(ByteArrayOutputStream bytes, String text, int start, int end) throws IOException {
+        if (end > start && text.charAt(end - 1) == '\r') {
+            end--;
+        }
+        bytes.write(DATA);
+        bytes.write(text.substring(start, end).getBytes(StandardCharsets.UTF_8));
+        bytes.write('\n');
+    }
+
+    // id和事件名中的换行会破坏事件格式，替换为空格
+    private static void writeField(ByteArrayOutputStream bytes, String name, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        bytes.write(name.getBytes(StandardCharsets.US_ASCII));
+        bytes.write(value.replace('\r', ' ').replace('\n', ' ').getBytes(StandardCharsets.UTF_8));
+        bytes.write('\n');
+    }
+
+    private static void writeJson(Object value, ByteArrayOutputStream bytes) throws IOException {
+        byte[] chunk = ReturnValueWriters.acquire();
+        try {
+            JsonOutput out = new JsonOutput(bytes, chunk);
+            JsonSerializers.forType(Object.class).write(value, out);
+            out.flush();
+        } finally {
+            ReturnValueWriters.release(chunk);
+        }
+    }
+
+    // 输出流和AsyncContext的监听器：可写时继续写出，客户端断开或超时时取消订阅
+    // 与Subscriber.onError签名相同，单独成类
+    private final class Listener implements WriteListener, AsyncListener {
+
+        @Override
+        public void onWritePossible() {
+            drain();
+        }
+
+        // 写出失败，通常是客户端已断开
+        @Override
+        public void onError(Throwable t) {
+            cancel(null);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            cancel(null);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            cancel(null);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
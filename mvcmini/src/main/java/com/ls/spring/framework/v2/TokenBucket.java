@@ -0,0 +1,40 @@
+package com.ls.spring.framework.v2;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// 无锁令牌桶：只保存“下一个令牌的理论发放时间”，取令牌是一次CAS；
+// 桶满时该时间不晚于当前时间，每取一个令牌往后推一个发放间隔，超出突发容量时拒绝
+final class TokenBucket {
+
+    // 发放一个令牌的间隔
+    private final long intervalNanos;
+    // 理论发放时间最多领先当前时间多久，即突发容量
+    private final long burstNanos;
+    private final AtomicLong next;
+
+    TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("每秒请求数必须大于0：" + permitsPerSecond);
+        }
+        this.intervalNanos = Math.max(1, (long) (1e9 / permitsPerSecond));
+        int capacity = burst > 0 ? burst : Math.max(1, (int) Math.ceil(permitsPerSecond));
+        this.burstNanos = intervalNanos * capacity;
+        this.next = new AtomicLong(System.nanoTime());
+    }
+
+    boolean tryAcquire() {
+        long now = System.nanoTime();
+        for (;;) {
+            long current = next.get();
+            // 理论发放时间已过去，说明桶是满的，从当前时间开始算
+            long base = current - now > 0 ? current : now;
+            long updated = base + intervalNanos;
+            if (updated - now > burstNanos) {
+                return false;
+            }
+            if (next.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.ls.spring.demo.extra;
+
+import com.ls.spring.demo.service.IHelloServie;
+import com.ls.spring.framework.annotation.MyAutowired;
+import com.ls.spring.framework.annotation.MyController;
+import com.ls.spring.framework.annotation.MyResquestMapping;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// 测试代码编译时不运行注解处理器，没有生成的注册表，只能扫描得到；注入生成的注册表中登记的服务
+@MyController
+@MyResquestMapping("/extra")
+public class ExtraController {
+
+    @MyAutowired
+    private IHelloServie helloService;
+
+    @MyResquestMapping("/ping")
+    public void ping(HttpServletResponse response) throws IOException {
+        response.getWriter().write(helloService != null ? "pong" : "no service");
+    }
+}
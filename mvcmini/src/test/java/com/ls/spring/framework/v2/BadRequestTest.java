@@ -0,0 +1,77 @@
+package com.ls.spring.framework.v2;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+// 请求内容不合法时，没有@MyExceptionHandler也返回400
+public class BadRequestTest {
+
+    private static final String JSON = "application/json";
+    private static final String FORM = "application/x-www-form-urlencoded";
+    private static final String MULTIPART = "multipart/form-data; boundary=XyZ";
+
+    private static MyDispacherServlet servlet;
+
+    @BeforeClass
+    public static void init() {
+        servlet = TestSupport.servlet("bad-request-test.properties");
+    }
+
+    @AfterClass
+    public static void destroy() {
+        servlet.destroy();
+    }
+
+    @Test
+    public void wellFormedRequestsAreBound() throws Exception {
+        assertEquals(200, post("/bind/json", JSON, "{\"a\":{\"b\":[1]}}").getStatus());
+        assertEquals("7", TestSupport.service(servlet, TestSupport.get("/bind/int?n=7")).bodyAsString());
+        assertEquals("3", post("/bind/form", FORM, "count=3").bodyAsString());
+        assertEquals("2", post("/bind/upload", MULTIPART,
+                "--XyZ\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a\"\r\n\r\nhi\r\n--XyZ--\r\n").bodyAsString());
+    }
+
+    @Test
+    public void malformedJson() throws Exception {
+        assertEquals(400, post("/bind/json", JSON, "{\"a\":").getStatus());
+        assertEquals(400, post("/bind/json", JSON, "{\"a\":1} trailing").getStatus());
+    }
+
+    @Test
+    public void jsonOverMaxDepth() throws Exception {
+        assertEquals(200, post("/bind/json", JSON, "{\"a\":[[[1]]]}").getStatus());
+        EmbeddedResponse resp = post("/bind/json", JSON, "{\"a\":[[[[1]]]]}");
+        assertEquals(400, resp.getStatus());
+        assertEquals("400 Bad Request!", resp.bodyAsString());
+    }
+
+    @Test
+    public void missingBody() throws Exception {
+        assertEquals(400, post("/bind/json", JSON, "").getStatus());
+    }
+
+    @Test
+    public void badParameterValues() throws Exception {
+        assertEquals(400, TestSupport.service(servlet, TestSupport.get("/bind/int?n=abc")).getStatus());
+        assertEquals(400, post("/bind/form", FORM, "count=x").getStatus());
+    }
+
+    @Test
+    public void malformedMultipart() throws Exception {
+        // 没有结束分隔符
+        assertEquals(400, post("/bind/upload", MULTIPART,
+                "--XyZ\r\nContent-Disposition: form-data; name=\"file\"\r\n\r\nhi").getStatus());
+        // 缺少必需的部分
+        assertEquals(400, post("/bind/upload", MULTIPART,
+                "--XyZ\r\nContent-Disposition: form-data; name=\"other\"\r\n\r\nhi\r\n--XyZ--\r\n").getStatus());
+        // 缺少boundary
+        assertEquals(400, post("/bind/upload", "multipart/form-data", "x").getStatus());
+    }
+
+    private static EmbeddedResponse post(String target, String contentType, String body) throws Exception {
+        return TestSupport.service(servlet, TestSupport.request("POST", target, contentType, body));
+    }
+}
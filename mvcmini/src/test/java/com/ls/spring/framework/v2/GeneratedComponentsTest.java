@@ -0,0 +1,29 @@
+package com.ls.spring.framework.v2;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+// 有生成的注册表时，没有注册表的classpath根（测试代码）仍然扫描，组件合并到同一个容器中
+public class GeneratedComponentsTest {
+
+    private static MyDispacherServlet servlet;
+
+    @BeforeClass
+    public static void init() {
+        servlet = TestSupport.servlet("generated-test.properties");
+    }
+
+    @AfterClass
+    public static void destroy() {
+        servlet.destroy();
+    }
+
+    @Test
+    public void generatedAndScannedComponentsAreMerged() throws Exception {
+        assertEquals("a + b = 3", TestSupport.service(servlet, TestSupport.get("/hello/add?a=1&b=2")).bodyAsString());
+        assertEquals("pong", TestSupport.service(servlet, TestSupport.get("/extra/ping")).bodyAsString());
+    }
+}
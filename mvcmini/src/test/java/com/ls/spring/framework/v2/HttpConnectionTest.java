@@ -0,0 +1,180 @@
+package com.ls.spring.framework.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+// 连接上的请求解析：分多次到达的请求头、管线化、100 Continue以及各种不合法的请求
+// 服务端通道为阻塞模式，只在poll()数据不完整时才读，测试不依赖数据到达的时机
+public class HttpConnectionTest {
+
+    private static final int MAX_BODY_BYTES = 1024;
+
+    private ServerSocketChannel server;
+    private SocketChannel client;
+    private SocketChannel accepted;
+    private HttpConnection connection;
+
+    @Before
+    public void connect() throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = SocketChannel.open(server.getLocalAddress());
+        accepted = server.accept();
+        // 只测试解析，不经过选择器
+        connection = new HttpConnection(accepted, null, MAX_BODY_BYTES);
+    }
+
+    @After
+    public void close() throws IOException {
+        client.close();
+        accepted.close();
+        server.close();
+    }
+
+    @Test
+    public void headerEndSplitAcrossReads() throws IOException {
+        send("GET /a?x=1 HTTP/1.1\r\nHost: localhost\r\n\r");
+        connection.read();
+        assertNull(connection.poll());
+        send("\n");
+        EmbeddedRequest req = next();
+        assertEquals("GET", req.getMethod());
+        assertEquals("/a", req.getRequestURI());
+        assertEquals("1", req.getParameter("x"));
+        assertEquals("localhost", req.getHeader("host"));
+    }
+
+    @Test
+    public void bodySplitAcrossReads() throws IOException {
+        send("POST /b HTTP/1.1\r\nContent-Length: 10\r\n\r\n01234");
+        connection.read();
+        assertNull(connection.poll());
+        send("56789");
+        assertEquals("0123456789", body(next()));
+    }
+
+    @Test
+    public void pipelinedRequests() throws IOException {
+        send("GET /1 HTTP/1.1\r\n\r\nPOST /2 HTTP/1.1\r\nContent-Length: 3\r\n\r\nabc\r\n\r\nGET /3 HTTP/1.0\r\n\r\n");
+        assertEquals("/1", next().getRequestURI());
+        assertEquals(true, connection.keepAlive);
+        EmbeddedRequest second = next();
+        assertEquals("/2", second.getRequestURI());
+        assertEquals("abc", body(second));
+        // 请求之间多余的空行被跳过
+        assertEquals("/3", next().getRequestURI());
+        assertEquals(false, connection.keepAlive);
+    }
+
+    @Test
+    public void expectContinue() throws IOException {
+        send("POST /c HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 2\r\n\r\n");
+        connection.read();
+        assertNull(connection.poll());
+        assertEquals("HTTP/1.1 100 Continue\r\n\r\n", receive(25));
+        send("ok");
+        assertEquals("ok", body(next()));
+    }
+
+    @Test
+    public void headersTooLarge() throws IOException {
+        char[] value = new char[9000];
+        Arrays.fill(value, 'a');
+        send("GET / HTTP/1.1\r\nX-Large: " + new String(value));
+        assertStatus(431);
+    }
+
+    @Test
+    public void bodyTooLarge() throws IOException {
+        send("POST / HTTP/1.1\r\nContent-Length: " + (MAX_BODY_BYTES + 1) + "\r\n\r\n");
+        assertStatus(413);
+    }
+
+    @Test
+    public void chunkedBodyNotImplemented() throws IOException {
+        send("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n");
+        assertStatus(501);
+    }
+
+    @Test
+    public void malformedRequestLine() throws IOException {
+        send("GET /\r\n\r\n");
+        assertStatus(400);
+    }
+
+    @Test
+    public void malformedHeader() throws IOException {
+        send("GET / HTTP/1.1\r\nno colon\r\n\r\n");
+        assertStatus(400);
+    }
+
+    @Test
+    public void malformedContentLength() throws IOException {
+        send("POST / HTTP/1.1\r\nContent-Length: -1\r\n\r\n");
+        assertStatus(400);
+    }
+
+    private void send(String s) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+        while (buffer.hasRemaining()) {
+            client.write(buffer);
+        }
+    }
+
+    private String receive(int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                throw new IOException("连接已关闭");
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.ISO_8859_1);
+    }
+
+    // 数据不完整时才继续读，已到达的数据足够时不会阻塞
+    private EmbeddedRequest next() throws IOException {
+        EmbeddedRequest req;
+        while ((req = connection.poll()) == null) {
+            if (!connection.read()) {
+                throw new IOException("连接已关闭");
+            }
+        }
+        return req;
+    }
+
+    private void assertStatus(int status) throws IOException {
+        try {
+            next();
+            fail();
+        } catch (HttpConnection.BadRequest e) {
+            assertEquals(status, e.status);
+        }
+    }
+
+    private static String body(EmbeddedRequest req) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = req.getInputStream()) {
+            int b;
+            while ((b = in.read()) != -1) {
+                out.write(b);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,94 @@
+package com.ls.spring.framework.v2;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+// JSON解析：缓冲区只有几个字节，字符串、数字和多字节字符跨多次读取；嵌套上限和各种格式错误
+public class JsonInputTest {
+
+    @Test
+    public void valuesSplitAcrossReads() throws IOException {
+        String json = " {\"name\" : \"a\\\"b\\u4e2d\u6587\uD83D\uDE00\", \"list\":[1, -20, 3.5e2, true, false, null], \"empty\":{}} ";
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("name", "a\"b\u4e2d\u6587\uD83D\uDE00");
+        expected.put("list", Arrays.asList(1L, -20L, 350.0, true, false, null));
+        expected.put("empty", Collections.emptyMap());
+        for (int size = 1; size <= 8; size++) {
+            JsonInput in = input(json, size, JsonInput.DEFAULT_MAX_DEPTH);
+            assertEquals(expected, JsonDeserializers.forType(Object.class).read(in));
+            in.expectEnd();
+        }
+    }
+
+    @Test
+    public void longRange() throws IOException {
+        assertEquals(Long.MAX_VALUE, input("9223372036854775807", 3, 8).readLong());
+        assertEquals(Long.MIN_VALUE, input("-9223372036854775808", 3, 8).readLong());
+        assertMalformed("9223372036854775808", JsonInput::readLong);
+        assertMalformed("1.5", JsonInput::readLong);
+        assertMalformed("-", JsonInput::readLong);
+    }
+
+    @Test
+    public void depthLimit() throws IOException {
+        assertEquals(Collections.singletonList(Collections.singletonList(Collections.singletonList(1L))),
+                JsonDeserializers.forType(Object.class).read(input("[[[1]]]", 2, 3)));
+        assertMalformed("[[[[1]]]]", in -> JsonDeserializers.forType(Object.class).read(in));
+        assertMalformed("{\"a\":{\"b\":{\"c\":[1]}}}", in -> JsonDeserializers.forType(Object.class).read(in));
+        // 跳过的值同样受限
+        input("{\"a\":[[1]]}", 2, 3).skipValue();
+        assertMalformed("{\"a\":[[[1]]]}", JsonInput::skipValue);
+    }
+
+    @Test
+    public void malformed() throws IOException {
+        Reader value = in -> JsonDeserializers.forType(Object.class).read(in);
+        assertMalformed("{\"a\":", value);
+        assertMalformed("{\"a\" 1}", value);
+        assertMalformed("[1 2]", value);
+        assertMalformed("tru", value);
+        assertMalformed("\"abc", value);
+        assertMalformed("\"a\nb\"", value);
+        assertMalformed("\"\\x\"", value);
+        assertMalformed("\"\\u12g4\"", value);
+        assertMalformed("[1] 2", in -> {
+            value.read(in);
+            in.expectEnd();
+        });
+        // 不完整的多字节UTF-8序列
+        byte[] bytes = {'"', (byte) 0xE4, (byte) 0xB8, '"'};
+        try {
+            new JsonInput(new ByteArrayInputStream(bytes), new byte[2]).readString();
+            fail();
+        } catch (MyBadRequestException expected) {
+            // 格式错误
+        }
+    }
+
+    private interface Reader {
+        void read(JsonInput in) throws IOException;
+    }
+
+    private static void assertMalformed(String json, Reader reader) throws IOException {
+        try {
+            reader.read(input(json, 3, 3));
+            fail(json);
+        } catch (MyBadRequestException expected) {
+            // 格式错误或超出嵌套上限
+        }
+    }
+
+    private static JsonInput input(String json, int bufferSize, int maxDepth) {
+        return new JsonInput(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), new byte[bufferSize], maxDepth);
+    }
+}
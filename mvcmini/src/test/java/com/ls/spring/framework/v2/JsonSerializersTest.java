@@ -0,0 +1,64 @@
+package com.ls.spring.framework.v2;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+// 互相引用的类的序列化器，以及对象图中有循环引用时的嵌套上限
+public class JsonSerializersTest {
+
+    @Test
+    public void mutuallyRecursiveTypes() throws Exception {
+        Parent parent = new Parent();
+        parent.name = "p";
+        parent.child = new Child();
+        parent.child.parent = new Parent();
+        parent.child.parent.name = "q";
+        assertEquals("{\"name\":\"p\",\"child\":{\"parent\":{\"name\":\"q\",\"child\":null}}}", write(parent));
+        assertEquals("{\"parent\":null}", write(new Child()));
+    }
+
+    @Test
+    public void selfReferenceFailsInsteadOfOverflowing() throws Exception {
+        Parent parent = new Parent();
+        parent.child = new Child();
+        parent.child.parent = parent;
+        try {
+            write(parent);
+            fail();
+        } catch (IllegalStateException expected) {
+            // 超出嵌套上限
+        }
+        List<Object> list = new ArrayList<>();
+        list.add(list);
+        try {
+            write(list);
+            fail();
+        } catch (IllegalStateException expected) {
+            // 超出嵌套上限
+        }
+    }
+
+    private static String write(Object value) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonOutput out = new JsonOutput(bytes, new byte[64]);
+        JsonSerializers.forClass(value.getClass()).write(value, out);
+        out.flush();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    static final class Parent {
+        String name;
+        Child child;
+    }
+
+    static final class Child {
+        Parent parent;
+    }
+}
@@ -0,0 +1,151 @@
+package com.ls.spring.framework.v2;
+
+import org.junit.Test;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+// multipart解析：输入流每次只返回几个字节，分隔符和头被拆到多次读取中；超出上限和格式错误
+public class MultipartParserTest {
+
+    private static final String CONTENT_TYPE = "multipart/form-data; boundary=XyZ";
+
+    @Test
+    public void delimiterSplitAcrossReads() throws IOException {
+        // 内容中有分隔符的前缀，不能被当作分隔符
+        String text = "line1\r\n--Xy\r\n-\r\n--XyQ";
+        String body = "preamble\r\n--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"text\"\r\n\r\n" + text + "\r\n--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\nContent-Type: text/plain\r\n\r\n"
+                + "hello\r\n--XyZ\r\n"
+                + "Content-Disposition: form-data\r\n\r\nno name\r\n--XyZ--\r\nepilogue";
+        for (int chunk = 1; chunk <= 8; chunk++) {
+            try (Multipart multipart = parse(MultipartParser.DEFAULT, body, chunk)) {
+                assertEquals(text, content(multipart.get("text").get(0)));
+                MyPart file = multipart.get("file").get(0);
+                assertNull(multipart.get("text").get(0).getFilename());
+                assertEquals("a.txt", file.getFilename());
+                assertEquals("text/plain", file.getContentType());
+                assertEquals("hello", content(file));
+            }
+        }
+    }
+
+    @Test
+    public void largePartSpillsToFile() throws IOException {
+        MultipartParser parser = parser("multipart-memory-threshold", "1024");
+        char[] data = new char[20000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (char) ('a' + i % 26);
+        }
+        String text = new String(data);
+        try (Multipart multipart = parse(parser, part("big", text) + "--XyZ--\r\n", 4096)) {
+            MyPart part = multipart.get("big").get(0);
+            assertFalse(part.isInMemory());
+            assertEquals(text.length(), part.getSize());
+            assertEquals(text, content(part));
+        }
+    }
+
+    @Test
+    public void limits() throws IOException {
+        assertTooLarge(parser("multipart-max-part-bytes", "4"), part("a", "12345") + "--XyZ--\r\n");
+        assertTooLarge(parser("multipart-max-parts", "1"), part("a", "1") + part("b", "2") + "--XyZ--\r\n");
+        assertTooLarge(parser("multipart-max-request-bytes", "16"), part("a", "12345") + "--XyZ--\r\n");
+    }
+
+    @Test
+    public void malformed() throws IOException {
+        assertMalformed(part("a", "1"));
+        assertMalformed("--XyZ\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\nno delimiter");
+        assertMalformed("--XyZ\r\nno colon\r\n\r\n1\r\n--XyZ--\r\n");
+        assertMalformed("--XyZ garbage\r\n\r\n1\r\n--XyZ--\r\n");
+    }
+
+    // 一个部分：分隔符、头和内容，内容后的\r\n属于下一个分隔符
+    private static String part(String name, String content) {
+        return "--XyZ\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + content + "\r\n";
+    }
+
+    private static MultipartParser parser(String key, String value) {
+        Properties config = new Properties();
+        config.setProperty(key, value);
+        return MultipartParser.create(config);
+    }
+
+    private static void assertTooLarge(MultipartParser parser, String body) throws IOException {
+        try {
+            parse(parser, body, 3).close();
+            fail();
+        } catch (Multipart.TooLarge expected) {
+            // 超出上限
+        }
+    }
+
+    private static void assertMalformed(String body) throws IOException {
+        try {
+            parse(MultipartParser.DEFAULT, body, 3).close();
+            fail();
+        } catch (MyBadRequestException expected) {
+            // 格式错误
+        }
+    }
+
+    private static String content(MyPart part) throws IOException {
+        return new String(part.getBytes(), StandardCharsets.UTF_8);
+    }
+
+    // 请求体的输入流每次最多返回chunk个字节
+    private static Multipart parse(MultipartParser parser, String body, int chunk) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ByteArrayInputStream source = new ByteArrayInputStream(bytes);
+        ServletInputStream in = new ServletInputStream() {
+            @Override
+            public int read() {
+                return source.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return source.read(b, off, Math.min(len, chunk));
+            }
+
+            @Override
+            public boolean isFinished() {
+                return source.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        EmbeddedRequest req = TestSupport.request("POST", "/", CONTENT_TYPE, "");
+        return parser.parse(new HttpServletRequestWrapper(req) {
+            @Override
+            public ServletInputStream getInputStream() {
+                return in;
+            }
+
+            @Override
+            public int getContentLength() {
+                return bytes.length;
+            }
+        });
+    }
+}
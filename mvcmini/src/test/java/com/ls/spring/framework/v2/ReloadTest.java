@@ -0,0 +1,47 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.v2.fixture.reload.ReloadController;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ReloadTest {
+
+    @After
+    public void repair() {
+        ReloadController.broken = false;
+    }
+
+    @Test
+    public void failedReloadKeepsPreviousSnapshot() throws Exception {
+        MyDispacherServlet servlet = TestSupport.servlet("reload-test.properties");
+        try {
+            assertEquals("pong", TestSupport.service(servlet, TestSupport.get("/reload/ping")).bodyAsString());
+
+            ReloadController.broken = true;
+            servlet.reload();
+            EmbeddedResponse resp = TestSupport.service(servlet, TestSupport.get("/reload/ping"));
+            assertEquals(200, resp.getStatus());
+            assertEquals("pong", resp.bodyAsString());
+
+            ReloadController.broken = false;
+            servlet.reload();
+            assertEquals("pong", TestSupport.service(servlet, TestSupport.get("/reload/ping")).bodyAsString());
+        } finally {
+            servlet.destroy();
+        }
+    }
+
+    @Test
+    public void initFailsWhenComponentCannotBeCreated() {
+        ReloadController.broken = true;
+        try {
+            TestSupport.servlet("reload-test.properties");
+            fail("组件创建失败时init应当失败");
+        } catch (IllegalStateException expected) {
+            // 创建组件失败
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.ls.spring.framework.v2;
+
+import com.ls.spring.framework.v2.fixture.cache.CacheController;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// @MyCacheable方法只缓存2xx响应，缓存中不保存Set-Cookie
+public class ResponseCacheTest {
+
+    private static MyDispacherServlet servlet;
+
+    @BeforeClass
+    public static void init() {
+        servlet = TestSupport.servlet("cache-test.properties");
+    }
+
+    @AfterClass
+    public static void destroy() {
+        servlet.destroy();
+    }
+
+    @Test
+    public void errorResponsesAreNotCached() throws Exception {
+        int calls = CacheController.CALLS.get();
+        for (int i = 0; i < 2; i++) {
+            EmbeddedResponse resp = TestSupport.service(servlet, TestSupport.get("/cache/item?id=missing"));
+            assertEquals(404, resp.getStatus());
+        }
+        assertEquals(calls + 2, CacheController.CALLS.get());
+    }
+
+    @Test
+    public void cookiesAreNotReplayed() throws Exception {
+        int calls = CacheController.CALLS.get();
+        EmbeddedResponse first = TestSupport.service(servlet, TestSupport.get("/cache/item?id=a"));
+        assertEquals(200, first.getStatus());
+        assertEquals("item:a", first.bodyAsString());
+        assertEquals("session=a", first.getHeader("Set-Cookie"));
+
+        EmbeddedResponse second = TestSupport.service(servlet, TestSupport.get("/cache/item?id=a"));
+        assertEquals(calls + 1, CacheController.CALLS.get());
+        assertEquals(200, second.getStatus());
+        assertEquals("item:a", second.bodyAsString());
+        assertEquals("a", second.getHeader("X-Item"));
+        assertNull(second.getHeader("Set-Cookie"));
+    }
+}
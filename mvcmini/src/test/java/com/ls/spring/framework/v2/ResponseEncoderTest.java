@@ -0,0 +1,51 @@
+package com.ls.spring.framework.v2;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// 压缩只对缓存在内存中的响应体生效：流式返回值和超出上限的响应体直接写出
+public class ResponseEncoderTest {
+
+    private static MyDispacherServlet servlet;
+
+    @BeforeClass
+    public static void init() {
+        servlet = TestSupport.servlet("encode-test.properties");
+    }
+
+    @AfterClass
+    public static void destroy() {
+        servlet.destroy();
+    }
+
+    @Test
+    public void capturedBodyIsCompressed() throws Exception {
+        EmbeddedResponse resp = service("/encode/text?n=2000");
+        assertEquals(200, resp.getStatus());
+        assertEquals("gzip", resp.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void bodyOverCaptureLimitPassesThrough() throws Exception {
+        EmbeddedResponse resp = service("/encode/text?n=10000");
+        assertEquals(200, resp.getStatus());
+        assertNull(resp.getHeader("Content-Encoding"));
+        assertEquals(10000, resp.bodyAsString().length());
+    }
+
+    @Test
+    public void streamingReturnValuePassesThrough() throws Exception {
+        EmbeddedResponse resp = service("/encode/stream?n=2000");
+        assertEquals(200, resp.getStatus());
+        assertNull(resp.getHeader("Content-Encoding"));
+        assertEquals(2000, resp.bodyAsString().length());
+    }
+
+    private static EmbeddedResponse service(String target) throws Exception {
+        return TestSupport.service(servlet, TestSupport.request("GET", target, "", "Accept-Encoding", "gzip"));
+    }
+}
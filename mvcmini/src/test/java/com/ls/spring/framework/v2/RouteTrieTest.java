@@ -0,0 +1,32 @@
+package com.ls.spring.framework.v2;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+// 正则路由挂在字面量前缀对应的节点上，顶层选择符的各分支没有公共前缀
+public class RouteTrieTest {
+
+    @Test
+    public void literalPrefix() {
+        assertEquals(6, RouteTrie.literalPrefixLength("/user/.*"));
+        assertEquals(5, RouteTrie.literalPrefixLength("/a/b/c?"));
+        assertEquals(0, RouteTrie.literalPrefixLength("/a|/b"));
+        assertEquals(2, RouteTrie.literalPrefixLength("/x(a|b)"));
+        assertEquals(2, RouteTrie.literalPrefixLength("/x[|]"));
+        assertEquals(2, RouteTrie.literalPrefixLength("/x\\|y"));
+    }
+
+    @Test
+    public void alternationMatchesEveryBranch() {
+        RouteTrie<String> trie = new RouteTrie<>();
+        trie.add("/a|/b", Pattern.compile("/a|/b"), "ab");
+        trie.add("/c", Pattern.compile("/c"), "c");
+        trie.freeze();
+        assertEquals("ab", trie.match("/a"));
+        assertEquals("ab", trie.match("/b"));
+        assertEquals("c", trie.match("/c"));
+    }
+}
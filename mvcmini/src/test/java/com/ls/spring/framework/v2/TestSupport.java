@@ -0,0 +1,70 @@
+package com.ls.spring.framework.v2;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeMap;
+
+// 测试共用：按配置文件初始化servlet，构造不经过网络的请求和响应
+final class TestSupport {
+
+    private TestSupport() {
+    }
+
+    static MyDispacherServlet servlet(String configLocation) {
+        MyDispacherServlet servlet = new MyDispacherServlet();
+        servlet.init(config(configLocation));
+        return servlet;
+    }
+
+    static ServletConfig config(String configLocation) {
+        return new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "test";
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return null;
+            }
+
+            @Override
+            public String getInitParameter(String name) {
+                return "contextConfigLocation".equals(name) ? configLocation : null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return Collections.enumeration(Collections.singletonList("contextConfigLocation"));
+            }
+        };
+    }
+
+    static EmbeddedRequest get(String target) {
+        return request("GET", target, null, "");
+    }
+
+    static EmbeddedRequest request(String method, String target, String contentType, String body) {
+        return contentType == null ? request(method, target, body) : request(method, target, body, "Content-Type", contentType);
+    }
+
+    // headers为交替的头名和值
+    static EmbeddedRequest request(String method, String target, String body, String... headers) {
+        TreeMap<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            map.put(headers[i], Collections.singletonList(headers[i + 1]));
+        }
+        return new EmbeddedRequest(method, target, "HTTP/1.1", map, body.getBytes(StandardCharsets.UTF_8), "127.0.0.1");
+    }
+
+    // 经过service分发，返回写到内存中的响应
+    static EmbeddedResponse service(MyDispacherServlet servlet, EmbeddedRequest req) throws Exception {
+        EmbeddedResponse resp = new EmbeddedResponse();
+        servlet.service(req, resp);
+        return resp;
+    }
+}
@@ -0,0 +1,43 @@
+package com.ls.spring.framework.v2.fixture.bad;
+
+import com.ls.spring.framework.annotation.MyController;
+import com.ls.spring.framework.annotation.MyRequestBody;
+import com.ls.spring.framework.annotation.MyRequestMethod;
+import com.ls.spring.framework.annotation.MyRequestParam;
+import com.ls.spring.framework.annotation.MyRequestPart;
+import com.ls.spring.framework.annotation.MyResponseBody;
+import com.ls.spring.framework.annotation.MyResquestMapping;
+import com.ls.spring.framework.v2.MyPart;
+
+import java.util.Map;
+
+// 没有@MyExceptionHandler的控制器，绑定失败由框架应答
+@MyController
+@MyResponseBody
+@MyResquestMapping("/bind")
+public class BindingController {
+
+    @MyResquestMapping(value = "/json", method = MyRequestMethod.POST)
+    public int json(@MyRequestBody Map<String, Object> body) {
+        return body.size();
+    }
+
+    @MyResquestMapping("/int")
+    public int number(@MyRequestParam("n") int n) {
+        return n;
+    }
+
+    @MyResquestMapping(value = "/form", method = MyRequestMethod.POST)
+    public int form(@MyRequestBody Counter counter) {
+        return counter.count;
+    }
+
+    @MyResquestMapping(value = "/upload", method = MyRequestMethod.POST)
+    public long upload(@MyRequestPart("file") MyPart file) {
+        return file.getSize();
+    }
+
+    public static class Counter {
+        int count;
+    }
+}
@@ -0,0 +1,32 @@
+package com.ls.spring.framework.v2.fixture.cache;
+
+import com.ls.spring.framework.annotation.MyCacheable;
+import com.ls.spring.framework.annotation.MyController;
+import com.ls.spring.framework.annotation.MyRequestParam;
+import com.ls.spring.framework.annotation.MyResquestMapping;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@MyController
+@MyResquestMapping("/cache")
+public class CacheController {
+
+    // 方法实际被调用的次数
+    public static final AtomicInteger CALLS = new AtomicInteger();
+
+    // id为missing时按404应答，其余返回内容并设置Cookie
+    @MyCacheable
+    @MyResquestMapping("/item")
+    public void item(@MyRequestParam("id") String id, HttpServletResponse response) throws IOException {
+        CALLS.incrementAndGet();
+        if ("missing".equals(id)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setHeader("Set-Cookie", "session=" + id);
+        response.setHeader("X-Item", id);
+        response.getWriter().write("item:" + id);
+    }
+}
@@ -0,0 +1,36 @@
+package com.ls.spring.framework.v2.fixture.encode;
+
+import com.ls.spring.framework.annotation.MyController;
+import com.ls.spring.framework.annotation.MyRequestParam;
+import com.ls.spring.framework.annotation.MyResquestMapping;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+@MyController
+@MyResquestMapping("/encode")
+public class EncodeController {
+
+    // n个字符的文本
+    @MyResquestMapping("/text")
+    public void text(@MyRequestParam("n") int n, HttpServletResponse response) throws IOException {
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(repeat(n));
+    }
+
+    // n个字节的文本流
+    @MyResquestMapping("/stream")
+    public InputStream stream(@MyRequestParam("n") int n, HttpServletResponse response) {
+        response.setContentType("text/plain;charset=UTF-8");
+        return new ByteArrayInputStream(repeat(n).getBytes());
+    }
+
+    private static String repeat(int n) {
+        char[] chars = new char[n];
+        Arrays.fill(chars, 'a');
+        return new String(chars);
+    }
+}
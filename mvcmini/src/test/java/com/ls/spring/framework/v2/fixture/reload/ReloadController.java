@@ -0,0 +1,26 @@
+package com.ls.spring.framework.v2.fixture.reload;
+
+import com.ls.spring.framework.annotation.MyController;
+import com.ls.spring.framework.annotation.MyResquestMapping;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@MyController
+@MyResquestMapping("/reload")
+public class ReloadController {
+
+    // 为true时构造失败，模拟热加载时组件创建出错
+    public static volatile boolean broken;
+
+    public ReloadController() {
+        if (broken) {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    @MyResquestMapping("/ping")
+    public void ping(HttpServletResponse response) throws IOException {
+        response.getWriter().write("pong");
+    }
+}